@@ -0,0 +1,220 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.datastorage.ConnectionPool;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.utils.SetUpDB;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A file-backed SQLite database filled with a given number of treatments, shared by the benchmarks of a trial. <br>
+ * <br>
+ * The data is created from a fixed seed, so every run measures the same database. As filling a million treatments
+ * takes a while, the filled database is kept as a template in the directory given by the system property
+ * <code>nhplus.benchmark.directory</code>, by default <code>nhplus-benchmarks</code> in the temporary directory, and
+ * reused by later runs. Delete the directory after changing the schema or the data. Every trial works on a fresh copy
+ * of the template, so writing benchmarks do not change the data of the following ones. <br>
+ * <br>
+ * There are {@value #TREATMENTS_PER_PATIENT} treatments per patient, one caregiver per {@value #PATIENTS_PER_CAREGIVER}
+ * patients and {@value #USERS} users. The treatments are spread over the {@value #YEARS_OF_HISTORY} years before
+ * {@link #LAST_DAY}.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    public static final int TREATMENTS_PER_PATIENT = 200;
+    public static final int PATIENTS_PER_CAREGIVER = 10;
+    public static final int USERS = 100;
+    public static final int YEARS_OF_HISTORY = 3;
+    public static final LocalDate LAST_DAY = LocalDate.of(2024, 6, 30);
+
+    /**
+     * The number of rows inserted per transaction while filling a template.
+     */
+    private static final int BATCH_SIZE = 10_000;
+
+    private static final String[] FIRST_NAMES = {"Anna", "Ben", "Clara", "David", "Emma", "Felix", "Greta", "Hans",
+            "Ida", "Jonas", "Karin", "Lukas", "Maria", "Noah", "Olga", "Paul", "Rosa", "Stefan", "Theresa", "Uwe"};
+    private static final String[] SURNAMES = {"Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer",
+            "Wagner", "Becker", "Schulz", "Hoffmann", "Koch", "Richter", "Klein", "Wolf", "Neumann", "Schwarz"};
+    private static final String[] DESCRIPTIONS = {"Waschen", "Gespräch", "Spaziergang", "Physiotherapie", "KG",
+            "Toilettengang", "Medikamentengabe", "Verbandswechsel", "Essen reichen", "Lagerung"};
+    private static final String[] REMARKS = {"Patient ist heute lebhafter und hat klare Momente.",
+            "Patientin klagt über Schmerzen, Gabe von Iberogast.", "Übungen zur Mobilisierung der Rückenmuskulatur.",
+            "Spaziergang im Park, Patient döst im Rollstuhl ein.", "Waschen per Dusche auf einem Stuhl; gewendet.",
+            "Massage der Extremitäten zur Verbesserung der Durchblutung.", "Keine Auffälligkeiten."};
+
+    /**
+     * The number of treatments in the database.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int treatments;
+
+    private Path file;
+    private ConnectionPool connectionPool;
+
+    /**
+     * Copies the template with the configured number of treatments, creating it first if necessary, and opens a
+     * connection pool on the copy.
+     *
+     * @throws Exception if the database cannot be created or opened
+     */
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        Path template = template(this.treatments);
+        this.file = Files.createTempFile("nhplus-benchmark", ".db");
+        Files.copy(template, this.file, StandardCopyOption.REPLACE_EXISTING);
+        this.connectionPool = new ConnectionPool("jdbc:sqlite:" + this.file);
+    }
+
+    /**
+     * Closes the connection pool and deletes the copy.
+     *
+     * @throws IOException if the copy cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        this.connectionPool.close();
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(Path.of(this.file + "-wal"));
+        Files.deleteIfExists(Path.of(this.file + "-shm"));
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return this.connectionPool;
+    }
+
+    public int getPatientCount() {
+        return patientCount(this.treatments);
+    }
+
+    public int getCaregiverCount() {
+        return caregiverCount(this.treatments);
+    }
+
+    /**
+     * Returns the template with the given number of treatments and creates it if it does not exist yet.
+     *
+     * @param treatments the number of treatments
+     * @return the path of the template
+     * @throws Exception if the template cannot be created
+     */
+    public static synchronized Path template(int treatments) throws Exception {
+        Path directory = Path.of(System.getProperty("nhplus.benchmark.directory",
+                Path.of(System.getProperty("java.io.tmpdir"), "nhplus-benchmarks").toString()));
+        Path template = directory.resolve("treatments-" + treatments + ".db");
+        if (Files.exists(template)) {
+            return template;
+        }
+        Files.createDirectories(directory);
+        // filled under another name, so an interrupted run does not leave a partial template behind
+        Path partial = directory.resolve("treatments-" + treatments + ".db.partial");
+        Files.deleteIfExists(partial);
+        long start = System.nanoTime();
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + partial)) {
+            fill(pool, treatments);
+        }
+        Files.deleteIfExists(Path.of(partial + "-wal"));
+        Files.deleteIfExists(Path.of(partial + "-shm"));
+        Files.move(partial, template, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Benchmark-Datenbank " + template + " in " + (System.nanoTime() - start) / 1_000_000
+                + " ms erstellt");
+        return template;
+    }
+
+    /**
+     * Creates the schema and inserts the data through the DAOs of the application.
+     *
+     * @param pool the connection pool of the new database
+     * @param treatments the number of treatments
+     * @throws SQLException if the data cannot be inserted
+     */
+    private static void fill(ConnectionPool pool, int treatments) throws SQLException {
+        SetUpDB.setUpTables(pool.getWriterConnection());
+        new SchemaMigrator(pool).migrate();
+        Random random = new Random(42);
+
+        int patientCount = patientCount(treatments);
+        List<Patient> patients = new ArrayList<>();
+        for (int index = 0; index < patientCount; index++) {
+            patients.add(new Patient(pick(random, FIRST_NAMES), pick(random, SURNAMES),
+                    LocalDate.of(1930, 1, 1).plusDays(random.nextInt(12_000)),
+                    String.valueOf(1 + random.nextInt(5)), String.format("%03d", random.nextInt(300))));
+        }
+        new PatientDao(pool).createAll(patients);
+
+        int caregiverCount = caregiverCount(treatments);
+        List<Caregiver> caregivers = new ArrayList<>();
+        for (int index = 0; index < caregiverCount; index++) {
+            caregivers.add(new Caregiver(pick(random, SURNAMES), pick(random, FIRST_NAMES),
+                    String.format("0151 %08d", random.nextInt(100_000_000)), true));
+        }
+        new CaregiverDao(pool).createAll(caregivers);
+
+        List<User> users = new ArrayList<>();
+        for (int index = 0; index < USERS; index++) {
+            users.add(new User(username(index), "passwort" + index));
+        }
+        new UserDao(pool).createAll(users);
+
+        TreatmentDao treatmentDao = new TreatmentDao(pool);
+        int days = YEARS_OF_HISTORY * 365;
+        List<Treatment> batch = new ArrayList<>(BATCH_SIZE);
+        for (int index = 0; index < treatments; index++) {
+            LocalTime begin = LocalTime.of(6 + random.nextInt(14), random.nextInt(4) * 15);
+            batch.add(new Treatment(1 + random.nextInt(patientCount), 1 + random.nextInt(caregiverCount),
+                    LAST_DAY.minusDays(random.nextInt(days)), begin, begin.plusMinutes(15 + random.nextInt(6) * 15),
+                    pick(random, DESCRIPTIONS), pick(random, REMARKS)));
+            if (batch.size() == BATCH_SIZE) {
+                treatmentDao.createAll(batch);
+                batch.clear();
+            }
+        }
+        treatmentDao.createAll(batch);
+    }
+
+    /**
+     * Returns the username of the user with the given index.
+     *
+     * @param index the index of the user, from <code>0</code> to {@value #USERS} - 1
+     * @return the username
+     */
+    public static String username(int index) {
+        return "pflege" + index;
+    }
+
+    private static int patientCount(int treatments) {
+        return Math.max(1, treatments / TREATMENTS_PER_PATIENT);
+    }
+
+    private static int caregiverCount(int treatments) {
+        return Math.max(1, patientCount(treatments) / PATIENTS_PER_CAREGIVER);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
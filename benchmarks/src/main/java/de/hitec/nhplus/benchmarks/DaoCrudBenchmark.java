@@ -0,0 +1,117 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the single row operations of <code>DaoImp</code>: reading by id, updating, creating and deleting, on
+ * databases of different sizes. <br>
+ * <br>
+ * The DAOs are created without a cache, so every read goes to the database. Created treatments are deleted in the
+ * same operation, which keeps the size of the database constant; the batch benchmarks do the same with
+ * {@value #BATCH_SIZE} treatments in one transaction each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DaoCrudBenchmark {
+
+    /**
+     * The number of treatments created and deleted per batch operation.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    private PatientDao patientDao;
+    private TreatmentDao treatmentDao;
+    private Random random;
+    private List<Treatment> treatments;
+    private long updates;
+
+    /**
+     * Creates the DAOs and reads treatments to update.
+     *
+     * @param database the database of the trial
+     * @throws SQLException if the treatments cannot be read
+     */
+    @Setup
+    public void setUp(BenchmarkDatabase database) throws SQLException {
+        this.patientDao = new PatientDao(database.getConnectionPool());
+        this.treatmentDao = new TreatmentDao(database.getConnectionPool());
+        this.random = new Random(42);
+        this.treatments = new ArrayList<>();
+        for (int index = 0; index < BATCH_SIZE; index++) {
+            this.treatments.add(this.treatmentDao.read(1 + this.random.nextInt(database.treatments)));
+        }
+    }
+
+    @Benchmark
+    public Treatment readTreatment(BenchmarkDatabase database) throws SQLException {
+        return this.treatmentDao.read(1 + this.random.nextInt(database.treatments));
+    }
+
+    @Benchmark
+    public Patient readPatient(BenchmarkDatabase database) throws SQLException {
+        return this.patientDao.read(1 + this.random.nextInt(database.getPatientCount()));
+    }
+
+    @Benchmark
+    public void updateTreatment() throws SQLException {
+        Treatment treatment = this.treatments.get(this.random.nextInt(this.treatments.size()));
+        // an unchanged treatment would not be written at all
+        treatment.setRemarks("Bemerkung " + this.updates++);
+        this.treatmentDao.update(treatment);
+    }
+
+    @Benchmark
+    public void createAndDeleteTreatment(BenchmarkDatabase database) throws SQLException {
+        Treatment treatment = this.treatmentDao.create(newTreatment(database));
+        this.treatmentDao.deleteById(treatment.getTid());
+    }
+
+    @Benchmark
+    public void createAllAndDeleteAllTreatments(BenchmarkDatabase database) throws SQLException {
+        List<Treatment> batch = new ArrayList<>(BATCH_SIZE);
+        for (int index = 0; index < BATCH_SIZE; index++) {
+            batch.add(newTreatment(database));
+        }
+        this.treatmentDao.deleteAllById(this.treatmentDao.createAll(batch));
+    }
+
+    @Benchmark
+    public void updateAllTreatments() throws SQLException {
+        String remarks = "Bemerkung " + this.updates++;
+        for (Treatment treatment : this.treatments) {
+            treatment.setRemarks(remarks);
+        }
+        this.treatmentDao.updateAll(this.treatments);
+    }
+
+    private Treatment newTreatment(BenchmarkDatabase database) {
+        LocalTime begin = LocalTime.of(8 + this.random.nextInt(10), 0);
+        return new Treatment(1 + this.random.nextInt(database.getPatientCount()),
+                1 + this.random.nextInt(database.getCaregiverCount()), BenchmarkDatabase.LAST_DAY, begin,
+                begin.plusMinutes(30), "Waschen", "Neue Behandlung");
+    }
+}
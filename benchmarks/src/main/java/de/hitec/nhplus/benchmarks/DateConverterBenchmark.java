@@ -0,0 +1,121 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.utils.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the conversions of {@link DateConverter} with the former implementation, which created a new
+ * <code>DateTimeFormatter</code> on every call. <br>
+ * <br>
+ * Each benchmark converts a batch of {@value #BATCH_SIZE} values, like mapping the rows of a treatment list. Run with
+ * <code>-prof gc</code> to compare the allocations per operation as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateConverterBenchmark {
+
+    /**
+     * The number of values converted per benchmark operation.
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    private String[] dates;
+    private String[] times;
+    private LocalDate[] localDates;
+    private LocalTime[] localTimes;
+
+    /**
+     * Creates reproducible dates and times in the formats stored in the database.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        this.dates = new String[BATCH_SIZE];
+        this.times = new String[BATCH_SIZE];
+        this.localDates = new LocalDate[BATCH_SIZE];
+        this.localTimes = new LocalTime[BATCH_SIZE];
+        LocalDate firstDate = LocalDate.of(1940, 1, 1);
+        for (int index = 0; index < BATCH_SIZE; index++) {
+            this.localDates[index] = firstDate.plusDays(random.nextInt(30_000));
+            this.localTimes[index] = LocalTime.of(random.nextInt(24), random.nextInt(60));
+            this.dates[index] = this.localDates[index].toString();
+            this.times[index] = this.localTimes[index].toString();
+        }
+    }
+
+    @Benchmark
+    public void parseDateWithFormatterPerCall(Blackhole blackhole) {
+        for (String date : this.dates) {
+            blackhole.consume(LocalDate.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+        }
+    }
+
+    @Benchmark
+    public void parseDate(Blackhole blackhole) {
+        for (String date : this.dates) {
+            blackhole.consume(DateConverter.convertStringToLocalDate(date));
+        }
+    }
+
+    @Benchmark
+    public void parseTimeWithFormatterPerCall(Blackhole blackhole) {
+        for (String time : this.times) {
+            blackhole.consume(LocalTime.parse(time, DateTimeFormatter.ofPattern("HH:mm")));
+        }
+    }
+
+    @Benchmark
+    public void parseTime(Blackhole blackhole) {
+        for (String time : this.times) {
+            blackhole.consume(DateConverter.convertStringToLocalTime(time));
+        }
+    }
+
+    @Benchmark
+    public void formatDateWithFormatterPerCall(Blackhole blackhole) {
+        for (LocalDate date : this.localDates) {
+            blackhole.consume(date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+        }
+    }
+
+    @Benchmark
+    public void formatDate(Blackhole blackhole) {
+        for (LocalDate date : this.localDates) {
+            blackhole.consume(DateConverter.convertLocalDateToString(date));
+        }
+    }
+
+    @Benchmark
+    public void formatTimeWithFormatterPerCall(Blackhole blackhole) {
+        for (LocalTime time : this.localTimes) {
+            blackhole.consume(time.format(DateTimeFormatter.ofPattern("HH:mm")));
+        }
+    }
+
+    @Benchmark
+    public void formatTime(Blackhole blackhole) {
+        for (LocalTime time : this.localTimes) {
+            blackhole.consume(DateConverter.convertLocalTimeToString(time));
+        }
+    }
+}
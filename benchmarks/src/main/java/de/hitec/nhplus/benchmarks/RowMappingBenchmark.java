@@ -0,0 +1,205 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.datastorage.ConnectionPool;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mapping of rows to objects by <code>getListFromResultSet</code> of every DAO. <br>
+ * <br>
+ * Each pair of benchmarks runs the read-all statement of a DAO: the <code>scan</code> benchmark only steps through the
+ * rows, the <code>map</code> benchmark maps them to objects. The difference of both is the cost of the mapping. The
+ * treatments are read with the names of patient and caregiver, like in the treatment view, so at a million treatments
+ * one operation takes seconds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMappingBenchmark {
+
+    private MappingPatientDao patientDao;
+    private MappingCaregiverDao caregiverDao;
+    private MappingTreatmentDao treatmentDao;
+    private MappingUserDao userDao;
+
+    /**
+     * Creates the DAOs on the database of the trial.
+     *
+     * @param database the database of the trial
+     */
+    @Setup
+    public void setUp(BenchmarkDatabase database) {
+        ConnectionPool pool = database.getConnectionPool();
+        this.patientDao = new MappingPatientDao(pool);
+        this.caregiverDao = new MappingCaregiverDao(pool);
+        this.treatmentDao = new MappingTreatmentDao(pool);
+        this.userDao = new MappingUserDao(pool);
+    }
+
+    @Benchmark
+    public int scanPatients() throws SQLException {
+        return this.patientDao.scan();
+    }
+
+    @Benchmark
+    public List<Patient> mapPatients() throws SQLException {
+        return this.patientDao.map();
+    }
+
+    @Benchmark
+    public int scanCaregivers() throws SQLException {
+        return this.caregiverDao.scan();
+    }
+
+    @Benchmark
+    public List<Caregiver> mapCaregivers() throws SQLException {
+        return this.caregiverDao.map();
+    }
+
+    @Benchmark
+    public int scanTreatments() throws SQLException {
+        return this.treatmentDao.scan();
+    }
+
+    @Benchmark
+    public List<Treatment> mapTreatments() throws SQLException {
+        return this.treatmentDao.map();
+    }
+
+    @Benchmark
+    public int scanUsers() throws SQLException {
+        return this.userDao.scan();
+    }
+
+    @Benchmark
+    public List<User> mapUsers() throws SQLException {
+        return this.userDao.map();
+    }
+
+    /**
+     * Steps through all rows of the result without reading a column.
+     *
+     * @param result the result to step through
+     * @return the number of rows
+     * @throws SQLException if the rows cannot be read
+     */
+    private static int count(ResultSet result) throws SQLException {
+        int rows = 0;
+        while (result.next()) {
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Opens the protected read-all statement and row mapping of the patient DAO to the benchmark.
+     */
+    private static class MappingPatientDao extends PatientDao {
+
+        private MappingPatientDao(ConnectionPool connectionPool) {
+            super(connectionPool);
+        }
+
+        private int scan() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return count(result);
+            }
+        }
+
+        private List<Patient> map() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        }
+    }
+
+    /**
+     * Opens the protected read-all statement and row mapping of the caregiver DAO to the benchmark.
+     */
+    private static class MappingCaregiverDao extends CaregiverDao {
+
+        private MappingCaregiverDao(ConnectionPool connectionPool) {
+            super(connectionPool);
+        }
+
+        private int scan() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return count(result);
+            }
+        }
+
+        private List<Caregiver> map() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        }
+    }
+
+    /**
+     * Opens the protected read-all statement and row mapping of the treatment DAO to the benchmark.
+     */
+    private static class MappingTreatmentDao extends TreatmentDao {
+
+        private MappingTreatmentDao(ConnectionPool connectionPool) {
+            super(connectionPool);
+        }
+
+        private int scan() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return count(result);
+            }
+        }
+
+        private List<Treatment> map() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        }
+    }
+
+    /**
+     * Opens the protected read-all statement and row mapping of the user DAO to the benchmark.
+     */
+    private static class MappingUserDao extends UserDao {
+
+        private MappingUserDao(ConnectionPool connectionPool) {
+            super(connectionPool);
+        }
+
+        private int scan() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return count(result);
+            }
+        }
+
+        private List<User> map() throws SQLException {
+            try (ConnectionPool.Lease lease = leaseReader(); ResultSet result = getReadAllStatement().executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        }
+    }
+}
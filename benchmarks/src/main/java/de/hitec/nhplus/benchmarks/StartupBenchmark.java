@@ -0,0 +1,159 @@
+package de.hitec.nhplus.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the cold start of the jlink image with and without its AppCDS archive. <br>
+ * <br>
+ * The archive is built by the <code>appcds</code> profile of the application: <code>mvn -P appcds package</code>.
+ * Every run starts the image as a training run, which shows the login window, loads all views and exits, on a fresh
+ * copy of the database. The runs with and without the archive alternate, so both suffer equally from other load on
+ * the machine. The times are read from the startup log of the application and measured from the start of the
+ * process. This is no JMH benchmark, because every sample is a new process; run it with
+ * <pre>
+ * java -cp target/benchmarks.jar de.hitec.nhplus.benchmarks.StartupBenchmark [image] [database] [runs]
+ * </pre>
+ * The image defaults to <code>../target/app</code>, the database to <code>../db/nursingHome.db</code> and the number
+ * of runs per variant to {@value #DEFAULT_RUNS}. It needs a desktop session, like the application.
+ */
+public class StartupBenchmark {
+
+    /**
+     * The default number of runs per variant.
+     */
+    public static final int DEFAULT_RUNS = 10;
+
+    private static final Pattern LOGIN_SHOWN = Pattern.compile("Anmeldefenster angezeigt nach (\\d+) ms");
+    private static final Pattern STARTED = Pattern.compile("Start abgeschlossen nach (\\d+) ms");
+
+    private final Path java;
+    private final Path database;
+    private final Path workDirectory;
+
+    /**
+     * Constructs a new benchmark of the given image.
+     *
+     * @param image the directory of the jlink image
+     * @param database the database to copy for every run
+     * @throws IOException if the work directory cannot be created
+     */
+    public StartupBenchmark(Path image, Path database) throws IOException {
+        boolean windows = System.getProperty("os.name").startsWith("Windows");
+        this.java = image.resolve("bin").resolve(windows ? "java.exe" : "java");
+        this.database = database;
+        this.workDirectory = Files.createTempDirectory("nhplus-startup");
+    }
+
+    /**
+     * Runs the benchmark and prints the median and minimum times of both variants.
+     *
+     * @param args the image directory, the database and the number of runs per variant, all optional
+     * @throws Exception if the application cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        Path image = Path.of(args.length > 0 ? args[0] : "../target/app");
+        Path database = Path.of(args.length > 1 ? args[1] : "../db/nursingHome.db");
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUNS;
+        StartupBenchmark benchmark = new StartupBenchmark(image, database);
+
+        // the first start fills the cache of the operating system and is not measured
+        benchmark.run(true);
+        List<Sample> withArchive = new ArrayList<>();
+        List<Sample> withoutArchive = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            withArchive.add(benchmark.run(true));
+            withoutArchive.add(benchmark.run(false));
+        }
+        print("Mit AppCDS-Archiv", withArchive);
+        print("Ohne AppCDS-Archiv", withoutArchive);
+    }
+
+    /**
+     * Starts the image once as a training run and waits until it exits.
+     *
+     * @param useArchive <code>true</code> to require the archive, <code>false</code> to disable class data sharing
+     * @return the times read from the startup log
+     * @throws IOException if the application cannot be started or does not log its startup
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Sample run(boolean useArchive) throws IOException, InterruptedException {
+        Path runDatabase = this.workDirectory.resolve("nursingHome.db");
+        Files.copy(this.database, runDatabase, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(this.workDirectory.resolve("nursingHome.db-wal"));
+        Files.deleteIfExists(this.workDirectory.resolve("nursingHome.db-shm"));
+
+        // -Xshare:on fails instead of silently starting without an unusable archive
+        Process process = new ProcessBuilder(this.java.toString(), useArchive ? "-Xshare:on" : "-Xshare:off",
+                "-Dnhplus.trainingRun=true", "-Dnhplus.db.url=jdbc:sqlite:" + runDatabase,
+                "-m", "de.hitec.nhplus/de.hitec.nhplus.Main")
+                .redirectErrorStream(true)
+                .start();
+        long loginShown = -1;
+        long started = -1;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                loginShown = loginShown < 0 ? find(LOGIN_SHOWN, line) : loginShown;
+                started = started < 0 ? find(STARTED, line) : started;
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || loginShown < 0 || started < 0) {
+            throw new IOException("Training run failed with exit code " + exitCode);
+        }
+        return new Sample(loginShown, started);
+    }
+
+    /**
+     * Returns the milliseconds of a log line matching the pattern.
+     *
+     * @param pattern the pattern with the milliseconds as first group
+     * @param line the log line
+     * @return the milliseconds, or <code>-1</code> if the line does not match
+     */
+    private static long find(Pattern pattern, String line) {
+        Matcher matcher = pattern.matcher(line);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Prints the median and minimum times of one variant.
+     *
+     * @param name the name of the variant
+     * @param samples the samples of the variant
+     */
+    private static void print(String name, List<Sample> samples) {
+        List<Long> loginShown = new ArrayList<>();
+        List<Long> started = new ArrayList<>();
+        for (Sample sample : samples) {
+            loginShown.add(sample.loginShownMillis());
+            started.add(sample.startedMillis());
+        }
+        Collections.sort(loginShown);
+        Collections.sort(started);
+        System.out.printf("%-20s Anmeldefenster: Median %5d ms, Minimum %5d ms | Start abgeschlossen: Median %5d ms, "
+                        + "Minimum %5d ms%n", name, loginShown.get(loginShown.size() / 2), loginShown.get(0),
+                started.get(started.size() / 2), started.get(0));
+    }
+
+    /**
+     * The times of one start, measured from the start of the process.
+     *
+     * @param loginShownMillis when the login window was shown
+     * @param startedMillis when all startup phases were finished
+     */
+    public record Sample(long loginShownMillis, long startedMillis) {
+    }
+}
@@ -0,0 +1,118 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.TreatmentDetails;
+import de.hitec.nhplus.model.TreatmentSearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the filter queries of the <code>TreatmentDao</code> used by the treatment view: by patient, by caregiver,
+ * by date range, the pages of the table and the full-text search. <br>
+ * <br>
+ * Patients and caregivers are chosen at random with a fixed seed. The date ranges cover the last
+ * {@value #RANGE_DAYS} days of the data, the pages have {@value #PAGE_SIZE} rows like the table of the view.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TreatmentQueryBenchmark {
+
+    public static final int RANGE_DAYS = 30;
+    public static final int PAGE_SIZE = 100;
+
+    private static final LocalDate RANGE_START = BenchmarkDatabase.LAST_DAY.minusDays(RANGE_DAYS - 1);
+
+    private TreatmentDao treatmentDao;
+    private Random random;
+    private int patients;
+    private int caregivers;
+
+    /**
+     * Creates the DAO on the database of the trial.
+     *
+     * @param database the database of the trial
+     */
+    @Setup
+    public void setUp(BenchmarkDatabase database) {
+        this.treatmentDao = new TreatmentDao(database.getConnectionPool());
+        this.random = new Random(42);
+        this.patients = database.getPatientCount();
+        this.caregivers = database.getCaregiverCount();
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readTreatmentsByPid() throws SQLException {
+        return this.treatmentDao.readTreatmentsByPid(randomPid());
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readTreatmentsByCgID() throws SQLException {
+        return this.treatmentDao.readTreatmentsByCgID(randomCgID());
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readTreatmentsByPidAndCgID() throws SQLException {
+        return this.treatmentDao.readTreatmentsByPidAndCgID(randomPid(), randomCgID());
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readTreatmentsBetween() throws SQLException {
+        return this.treatmentDao.readTreatmentsBetween(RANGE_START, BenchmarkDatabase.LAST_DAY);
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readTreatmentsByPidBetween() throws SQLException {
+        return this.treatmentDao.readTreatmentsByPidBetween(randomPid(), RANGE_START, BenchmarkDatabase.LAST_DAY);
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readTreatmentsByCgIDBetween() throws SQLException {
+        return this.treatmentDao.readTreatmentsByCgIDBetween(randomCgID(), RANGE_START, BenchmarkDatabase.LAST_DAY);
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readFirstPage() throws SQLException {
+        return this.treatmentDao.readPage(0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readFirstPageByPid() throws SQLException {
+        return this.treatmentDao.readPageByPid(randomPid(), 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<TreatmentDetails> readFirstPageByCgID() throws SQLException {
+        return this.treatmentDao.readPageByCgID(randomCgID(), 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<TreatmentSearchResult> search() throws SQLException {
+        return this.treatmentDao.search("Spaziergang Park", PAGE_SIZE);
+    }
+
+    private long randomPid() {
+        return 1 + this.random.nextInt(this.patients);
+    }
+
+    private long randomCgID() {
+        return 1 + this.random.nextInt(this.caregivers);
+    }
+}
@@ -0,0 +1,51 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup of a user by name, which the login does. <br>
+ * <br>
+ * Only existing users are looked up, because <code>readByUsername</code> prints a stack trace for unknown names, which
+ * would be measured instead of the query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UserDaoBenchmark {
+
+    private UserDao userDao;
+    private Random random;
+
+    /**
+     * Creates the DAO on the database of the trial.
+     *
+     * @param database the database of the trial
+     */
+    @Setup
+    public void setUp(BenchmarkDatabase database) {
+        this.userDao = new UserDao(database.getConnectionPool());
+        this.random = new Random(42);
+    }
+
+    @Benchmark
+    public User readByUsername() {
+        return this.userDao.readByUsername(BenchmarkDatabase.username(this.random.nextInt(BenchmarkDatabase.USERS)));
+    }
+}
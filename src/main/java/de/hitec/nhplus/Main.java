@@ -1,8 +1,19 @@
 package de.hitec.nhplus;
 
 import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.ConnectionPool;
+import de.hitec.nhplus.datastorage.DaoExecutor;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DaoMetrics;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
 
+import de.hitec.nhplus.presenter.FxAsync;
+import de.hitec.nhplus.presenter.MainWindowPresenter;
+import de.hitec.nhplus.presenter.PagedTableLoader;
 import de.hitec.nhplus.presenter.UserLoginPresenter;
+import de.hitec.nhplus.presenter.ViewRegistry;
+import de.hitec.nhplus.utils.StartupPhases;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
@@ -12,6 +23,10 @@ import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -26,6 +41,33 @@ public class Main extends Application {
      */
     private Stage primaryStage;
 
+    /**
+     * Whether the application runs without user interaction and exits after every view was shown once, set with the
+     * system property <code>nhplus.trainingRun</code>. The <code>appcds</code> build profile records the loaded
+     * classes of such a run, and the startup benchmark measures it.
+     */
+    private static final boolean TRAINING_RUN = Boolean.getBoolean("nhplus.trainingRun");
+
+    /**
+     * How long a training run waits for the views to show their data before it exits, in milliseconds.
+     */
+    private static final long TRAINING_RUN_EXIT_DELAY_MILLIS = 2_000;
+
+    /**
+     * Measures the phases of the startup.
+     */
+    private final StartupPhases startupPhases = new StartupPhases();
+
+    /**
+     * The views of the main window, preloaded while the login window is shown.
+     */
+    private final ViewRegistry viewRegistry = new ViewRegistry();
+
+    /**
+     * Completed when the database is opened and migrated, whether this succeeded or not.
+     */
+    private CompletableFuture<Void> databaseReady = CompletableFuture.completedFuture(null);
+
     /**
     * The application's entry point. Launches the JavaFX framework.
     */
@@ -35,7 +77,8 @@ public class Main extends Application {
 
     /**
      * Called by the JavaFX framework when the application is ready to start.
-     * Initializes the primary stage and shows the login window.
+     * Initializes the primary stage, starts opening the database in the background and shows the login window
+     * meanwhile.
      *
      * @param primaryStage the primary window (stage) of the JavaFX application
      */
@@ -43,7 +86,84 @@ public class Main extends Application {
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         startUpMessage();
+        startBackgroundPhases();
         loginWindow();
+        this.startupPhases.mark("Anmeldefenster angezeigt");
+    }
+
+    /**
+     * Starts the startup phases that do not need to finish before the login window is shown. The database is opened
+     * and migrated first, while the login window is loaded; then the queries are warmed up in the background while the views of the main window are
+     * preloaded on the JavaFX application thread. Every phase is logged with its duration.
+     */
+    private void startBackgroundPhases() {
+        Executor background = DaoExecutor.getExecutor();
+        CompletableFuture<Void> opened = this.startupPhases.run("Datenbank öffnen", () -> {
+            if (ConnectionBuilder.getConnectionPool() == null) {
+                throw new SQLException("Verbindung zur Datenbank konnte nicht aufgebaut werden");
+            }
+        }, background);
+        this.databaseReady = this.startupPhases.after(opened, "Schema-Migration", this::migrateDatabase, background);
+        this.startupPhases.run("Überwachung registrieren", DaoMetrics::register, background);
+        CompletableFuture<Void> warmedUp = this.startupPhases.after(this.databaseReady, "Abfragen vorbereiten",
+                Main::warmUpQueries, background);
+        CompletableFuture<Void> preloaded = this.databaseReady.thenComposeAsync(ready ->
+                this.startupPhases.measure("Ansichten vorladen", this.viewRegistry.preload()), FxAsync.FX_THREAD);
+        CompletableFuture<Void> started = CompletableFuture.allOf(warmedUp, preloaded)
+                .thenRun(() -> this.startupPhases.mark("Start abgeschlossen"));
+        if (TRAINING_RUN) {
+            started.thenRunAsync(this::completeTrainingRun, FxAsync.FX_THREAD);
+        }
+    }
+
+    /**
+     * Completes a training run: loads the main window without showing it, shows every view once and exits shortly
+     * afterwards, when the views have read their data. No login is needed, as nothing is shown to the user.
+     */
+    private void completeTrainingRun() {
+        try {
+            FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/MainWindowView.fxml"));
+            loader.load();
+            MainWindowPresenter presenter = loader.getController();
+            presenter.setViewRegistry(this.viewRegistry);
+            for (ViewRegistry.View view : ViewRegistry.View.values()) {
+                this.viewRegistry.show(view);
+            }
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+        CompletableFuture.runAsync(() -> {
+            this.startupPhases.mark("Trainingslauf beendet");
+            shutDown();
+        }, CompletableFuture.delayedExecutor(TRAINING_RUN_EXIT_DELAY_MILLIS, TimeUnit.MILLISECONDS,
+                FxAsync.FX_THREAD));
+    }
+
+    /**
+     * Applies all pending schema migrations before any DAO works with the database.
+     *
+     * @throws SQLException if a migration fails
+     */
+    private void migrateDatabase() throws SQLException {
+        ConnectionPool connectionPool = ConnectionBuilder.getConnectionPool();
+        if (connectionPool == null) {
+            throw new SQLException("Datenbank konnte nicht migriert werden, keine Verbindung");
+        }
+        new SchemaMigrator(connectionPool).migrate();
+    }
+
+    /**
+     * Runs the queries needed right after the login once, so their statements are prepared, the database file is
+     * read into the cache of the operating system and patients and caregivers are in the entity caches. The users
+     * are already read by the login window.
+     *
+     * @throws SQLException if a query fails
+     */
+    private static void warmUpQueries() throws SQLException {
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        factory.createPatientDAO().readAll();
+        factory.createCaregiverDao().readAll();
+        factory.createTreatmentDao().readPage(0, PagedTableLoader.DEFAULT_PAGE_SIZE);
     }
 
     /**
@@ -64,23 +184,29 @@ public class Main extends Application {
             this.primaryStage.setResizable(false);
             this.primaryStage.show();
 
-            this.primaryStage.setOnCloseRequest(event -> {
-                ConnectionBuilder.closeConnection();
-                Platform.exit();
-                System.exit(0);
-            });
+            this.primaryStage.setOnCloseRequest(event -> shutDown());
         } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
 
     /**
-     * Displays the main application window using the <code>MainWindowView.fxml</code> layout.
+     * Displays the main application window using the <code>MainWindowView.fxml</code> layout, as soon as the database
+     * is opened and migrated.
+     */
+    public void mainWindow() {
+        FxAsync.onFxThread(this.databaseReady, ready -> showMainWindow());
+    }
+
+    /**
+     * Displays the main application window and hands it the preloaded views.
      */
-    public void mainWindow(){
+    private void showMainWindow() {
         try {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/MainWindowView.fxml"));
             BorderPane pane = loader.load();
+            MainWindowPresenter presenter = loader.getController();
+            presenter.setViewRegistry(this.viewRegistry);
 
             Scene scene = new Scene(pane);
             this.primaryStage.setTitle("NHPlus");
@@ -90,15 +216,24 @@ public class Main extends Application {
 
             this.primaryStage.setOnCloseRequest(event -> {
                 closeMessage();
-                ConnectionBuilder.closeConnection();
-                Platform.exit();
-                System.exit(0);
+                shutDown();
             });
         } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
 
+    /**
+     * Writes pending changes, closes the database and exits the application.
+     */
+    private static void shutDown() {
+        WriteBehindQueue.flushAll();
+        DaoExecutor.shutdown();
+        ConnectionBuilder.closeConnection();
+        Platform.exit();
+        System.exit(0);
+    }
+
     /**
      * Prints a startup ASCII message to the console when the application starts.
      */
@@ -0,0 +1,189 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous facade of a {@link Dao}. <br>
+ * <br>
+ * Every method runs the corresponding DAO method on the executor of the {@link DaoExecutor} and returns a
+ * <code>CompletableFuture</code> of its result. A {@link SQLException} completes the future exceptionally with an
+ * {@link UncheckedSQLException}. Methods specific to one DAO, e.g. {@link TreatmentDao#readPage(long, int)}, are run
+ * with {@link #call(DaoCall)}. <br>
+ * <br>
+ * The futures complete on a background thread; presenters hand their results to the JavaFX application thread,
+ * e.g. with <code>thenAcceptAsync(action, Platform::runLater)</code>.
+ *
+ * @param <T> Type of the entity.
+ * @param <D> Type of the wrapped DAO.
+ */
+public class AsyncDao<T, D extends Dao<T>> {
+
+    /**
+     * Database work on a DAO returning a result.
+     *
+     * @param <D> Type of the DAO.
+     * @param <R> Type of the result.
+     */
+    @FunctionalInterface
+    public interface DaoCall<D, R> {
+        /**
+         * Runs the work on the given DAO.
+         *
+         * @param dao the DAO to run the work on
+         * @return the result of the work
+         * @throws SQLException if a database access error occurs
+         */
+        R call(D dao) throws SQLException;
+    }
+
+    private final D dao;
+    private final Executor executor;
+
+    /**
+     * Constructs a new facade running the work on the shared executor of the {@link DaoExecutor}.
+     *
+     * @param dao the DAO to wrap
+     */
+    public AsyncDao(D dao) {
+        this(dao, DaoExecutor.getExecutor());
+    }
+
+    /**
+     * Constructs a new facade running the work on the given executor.
+     *
+     * @param dao the DAO to wrap
+     * @param executor the executor to run the database work on
+     */
+    public AsyncDao(D dao, Executor executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the wrapped DAO for synchronous use, e.g. from a thread that is already in the background.
+     *
+     * @return the wrapped DAO
+     */
+    public D getDao() {
+        return this.dao;
+    }
+
+    /**
+     * Runs the given work on the wrapped DAO in the background.
+     *
+     * @param call the work to run
+     * @param <R> Type of the result.
+     * @return a future of the result of the work
+     */
+    public <R> CompletableFuture<R> call(DaoCall<D, R> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call(this.dao);
+            } catch (SQLException exception) {
+                throw new UncheckedSQLException(exception);
+            }
+        }, this.executor);
+    }
+
+    /**
+     * Persists the given object in the background.
+     *
+     * @param t the object to be created
+     * @return a future of the given object with its generated ID
+     * @see Dao#create(Object)
+     */
+    public CompletableFuture<T> create(T t) {
+        return call(dao -> dao.create(t));
+    }
+
+    /**
+     * Persists all given objects within a single transaction in the background.
+     *
+     * @param list the objects to be created
+     * @return a future of the generated IDs in the order of the given objects
+     * @see Dao#createAll(List)
+     */
+    public CompletableFuture<List<Long>> createAll(List<T> list) {
+        return call(dao -> dao.createAll(list));
+    }
+
+    /**
+     * Reads an object by its ID in the background.
+     *
+     * @param key the ID of the object to retrieve
+     * @return a future of the object, completed with <code>null</code> if not found
+     * @see Dao#read(long)
+     */
+    public CompletableFuture<T> read(long key) {
+        return call(dao -> dao.read(key));
+    }
+
+    /**
+     * Reads all objects in the background.
+     *
+     * @return a future of the list of all objects
+     * @see Dao#readAll()
+     */
+    public CompletableFuture<List<T>> readAll() {
+        return call(Dao::readAll);
+    }
+
+    /**
+     * Updates the given object in the background.
+     *
+     * @param t the object with updated data
+     * @return a future completed when the object is updated
+     * @see Dao#update(Object)
+     */
+    public CompletableFuture<Void> update(T t) {
+        return call(dao -> {
+            dao.update(t);
+            return null;
+        });
+    }
+
+    /**
+     * Updates all given objects within a single transaction in the background.
+     *
+     * @param list the objects with updated data
+     * @return a future completed when the objects are updated
+     * @see Dao#updateAll(List)
+     */
+    public CompletableFuture<Void> updateAll(List<T> list) {
+        return call(dao -> {
+            dao.updateAll(list);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes the object with the given ID in the background.
+     *
+     * @param key the ID of the object to delete
+     * @return a future completed when the object is deleted
+     * @see Dao#deleteById(long)
+     */
+    public CompletableFuture<Void> deleteById(long key) {
+        return call(dao -> {
+            dao.deleteById(key);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes the objects with the given IDs within a single transaction in the background.
+     *
+     * @param keys the IDs of the objects to delete
+     * @return a future completed when the objects are deleted
+     * @see Dao#deleteAllById(List)
+     */
+    public CompletableFuture<Void> deleteAllById(List<Long> keys) {
+        return call(dao -> {
+            dao.deleteAllById(keys);
+            return null;
+        });
+    }
+}
@@ -1,12 +1,14 @@
 package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Person;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
@@ -23,6 +25,27 @@ public class CaregiverDao extends DaoImp<Caregiver> {
         super(connection);
     }
 
+    /**
+     * The constructor initiates an object of <code>CaregiverDao</code> that leases a connection from the given pool for
+     * every operation.
+     *
+     * @param connectionPool Object of <code>ConnectionPool</code> to lease the connections from.
+     */
+    public CaregiverDao(ConnectionPool connectionPool) {
+        super(connectionPool);
+    }
+
+    /**
+     * The constructor initiates an object of <code>CaregiverDao</code> that leases a connection from the given pool for
+     * every operation and reads caregivers through the given cache.
+     *
+     * @param connectionPool Object of <code>ConnectionPool</code> to lease the connections from.
+     * @param cache Object of <code>EntityCache</code> shared by all DAOs of caregivers.
+     */
+    public CaregiverDao(ConnectionPool connectionPool, EntityCache<Caregiver> cache) {
+        super(connectionPool, cache);
+    }
+
     /**
      * Maps a <code>ResultSet</code> of one caregiver to an object of <code>Caregiver</code>.
      *
@@ -73,7 +96,7 @@ public class CaregiverDao extends DaoImp<Caregiver> {
         try {
             final String sqlStatement = "INSERT INTO caregiver (firstname, surname, telNumber, active) " +
                     "VALUES (?,?,?,?)";
-            preparedStatement = this.connection.prepareStatement(sqlStatement);
+            preparedStatement = this.prepareStatement(sqlStatement);
             preparedStatement.setString(1, caregiver.getFirstName());
             preparedStatement.setString(2, caregiver.getSurname());
             preparedStatement.setString(3, caregiver.getTelephone());
@@ -85,6 +108,17 @@ public class CaregiverDao extends DaoImp<Caregiver> {
         return preparedStatement;
     }
 
+    /**
+     * Sets the caregiver id generated for a newly created <code>Caregiver</code>.
+     *
+     * @param caregiver Object of <code>Caregiver</code> that was persisted.
+     * @param key Generated id of the caregiver.
+     */
+    @Override
+    protected void setGeneratedKey(Caregiver caregiver, long key) {
+        caregiver.setCgID(key);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query a caregiver by a given caregiver id (cgID).
      *
@@ -97,7 +131,7 @@ public class CaregiverDao extends DaoImp<Caregiver> {
 
         try{
             final String sqlStatement = "SELECT * FROM caregiver WHERE cgID = ?";
-            preparedStatement = this.connection.prepareStatement(sqlStatement);
+            preparedStatement = this.prepareStatement(sqlStatement);
             preparedStatement.setLong(1, cgID);
         }catch (SQLException exception){
             exception.printStackTrace();
@@ -117,8 +151,42 @@ public class CaregiverDao extends DaoImp<Caregiver> {
 
         try {
             final String sqlStatement = "SELECT * FROM caregiver WHERE active = ?";
-            preparedStatement = this.connection.prepareStatement(sqlStatement);
+            preparedStatement = this.prepareStatement(sqlStatement);
+            preparedStatement.setBoolean(1, true);
+        }catch (SQLException exception){
+            exception.printStackTrace();
+        }
+
+        return preparedStatement;
+    }
+
+    /**
+     * Returns the name of the caregiver table in the change log.
+     *
+     * @return <code>caregiver</code>
+     */
+    @Override
+    protected String getChangeTable() {
+        return "caregiver";
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all active caregivers changed after the given version of
+     * the change log. Deactivated caregivers are not selected, so they are reported as deleted.
+     *
+     * @param version Version after which the caregivers were changed.
+     * @return <code>PreparedStatement</code> to query the changed caregivers.
+     */
+    @Override
+    protected PreparedStatement getReadChangedStatement(long version) {
+        PreparedStatement preparedStatement = null;
+
+        try {
+            final String sqlStatement = "SELECT * FROM caregiver WHERE active = ? AND cgID IN " +
+                    "(SELECT row_id FROM change_log WHERE table_name = 'caregiver' AND version > ?)";
+            preparedStatement = this.prepareStatement(sqlStatement);
             preparedStatement.setBoolean(1, true);
+            preparedStatement.setLong(2, version);
         }catch (SQLException exception){
             exception.printStackTrace();
         }
@@ -126,9 +194,14 @@ public class CaregiverDao extends DaoImp<Caregiver> {
         return preparedStatement;
     }
 
+    @Override
+    protected long getKey(Caregiver caregiver) {
+        return caregiver.getCgID();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to update the given caregiver, identified
-     * by the id of the caregiver (cgID).
+     * by the id of the caregiver (cgID). Only the columns of the modified fields are written.
      *
      * @param caregiver Caregiver object to update.
      * @return <code>PreparedStatement</code> to update the given caregiver.
@@ -138,18 +211,13 @@ public class CaregiverDao extends DaoImp<Caregiver> {
         PreparedStatement preparedStatement = null;
 
         try {
-            final String sqlStatement = "UPDATE caregiver SET " +
-                    "firstname = ?, " +
-                    "surname = ?, " +
-                    "telNumber = ?, " +
-                    "active = ? " +
-                    "WHERE cgID = ?";
-            preparedStatement = this.connection.prepareStatement(sqlStatement);
-            preparedStatement.setString(1, caregiver.getFirstName());
-            preparedStatement.setString(2, caregiver.getSurname());
-            preparedStatement.setString(3, caregiver.getTelephone());
-            preparedStatement.setBoolean(4, caregiver.isActive());
-            preparedStatement.setLong(5, caregiver.getCgID());
+            Set<String> fields = caregiver.getDirtyFields().beginWrite();
+            preparedStatement = new PartialUpdate("caregiver")
+                    .set(fields.contains(Person.FIRST_NAME), "firstname", caregiver.getFirstName())
+                    .set(fields.contains(Person.SURNAME), "surname", caregiver.getSurname())
+                    .set(fields.contains(Caregiver.TELEPHONE), "telNumber", caregiver.getTelephone())
+                    .set(fields.contains(Caregiver.ACTIVE), "active", caregiver.isActive())
+                    .prepare(this, "cgID", caregiver.getCgID());
         }catch (SQLException exception){
             exception.printStackTrace();
         }
@@ -157,6 +225,27 @@ public class CaregiverDao extends DaoImp<Caregiver> {
         return preparedStatement;
     }
 
+    /**
+     * Returns whether fields of the given caregiver were modified since it was read or written.
+     *
+     * @param caregiver Caregiver object to update.
+     * @return <code>true</code> if the caregiver has to be written, <code>false</code> otherwise
+     */
+    @Override
+    protected boolean hasChanges(Caregiver caregiver) {
+        return caregiver.getDirtyFields().isDirty();
+    }
+
+    /**
+     * Unmarks the written fields of the given caregiver.
+     *
+     * @param caregiver the updated caregiver
+     */
+    @Override
+    protected void updated(Caregiver caregiver) {
+        caregiver.getDirtyFields().endWrite();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to "delete" a caregiver with the given id.
      *
@@ -178,7 +267,7 @@ public class CaregiverDao extends DaoImp<Caregiver> {
                     "telNumber = ?," +
                     "active = ? " +
                     "WHERE cgID = ?";
-            preparedStatement = this.connection.prepareStatement(sqlStatement);
+            preparedStatement = this.prepareStatement(sqlStatement);
             preparedStatement.setString(1, caregiver.getFirstName());
             preparedStatement.setString(2, caregiver.getSurname());
             preparedStatement.setString(3, caregiver.getTelephone());
@@ -200,8 +289,7 @@ public class CaregiverDao extends DaoImp<Caregiver> {
      */
     private Caregiver getCaregiverById(long cgID) {
         Caregiver caregiver = null;
-        try {
-            ResultSet resultSet = getReadByIDStatement(cgID).executeQuery();
+        try (ResultSet resultSet = getReadByIDStatement(cgID).executeQuery()) {
             caregiver = getInstanceFromResultSet(resultSet);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -0,0 +1,160 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * The rows of a table that changed since a version of the change log, read by
+ * {@link DaoImp#readChangesSince(long)}. <br>
+ * <br>
+ * A change set either holds all rows, when it was read by {@link DaoImp#readAllWithChangeVersion()}, or only the
+ * delta: the rows inserted or updated since the given version and the keys of the rows deleted since then. Its
+ * {@link #getVersion() version} is passed to the next call of {@link DaoImp#readChangesSince(long)}. Changes may be
+ * delivered more than once, so applying a change set must be idempotent, as {@link #applyTo(List, ToLongFunction)}
+ * is.
+ *
+ * @param <T> Type of the entity.
+ */
+public class ChangeSet<T> {
+
+    private final List<T> changed;
+    private final Set<Long> deletedKeys;
+    private final long version;
+    private final boolean full;
+
+    /**
+     * Constructs a new change set.
+     *
+     * @param changed the inserted or updated rows, or all rows
+     * @param deletedKeys the keys of the deleted rows
+     * @param version the version of the change log the rows were read at
+     * @param full <code>true</code> if <code>changed</code> holds all rows
+     */
+    private ChangeSet(List<T> changed, Set<Long> deletedKeys, long version, boolean full) {
+        this.changed = List.copyOf(changed);
+        this.deletedKeys = Set.copyOf(deletedKeys);
+        this.version = version;
+        this.full = full;
+    }
+
+    /**
+     * Creates a change set holding all rows.
+     *
+     * @param all all rows of the table
+     * @param version the version of the change log read before the rows
+     * @param <T> Type of the entity.
+     * @return the change set
+     */
+    static <T> ChangeSet<T> full(List<T> all, long version) {
+        return new ChangeSet<>(all, Set.of(), version, true);
+    }
+
+    /**
+     * Creates a change set holding the changes since a version.
+     *
+     * @param changed the inserted or updated rows
+     * @param deletedKeys the keys of the deleted rows
+     * @param version the version of the change log read before the rows
+     * @param <T> Type of the entity.
+     * @return the change set
+     */
+    static <T> ChangeSet<T> delta(List<T> changed, Set<Long> deletedKeys, long version) {
+        return new ChangeSet<>(changed, deletedKeys, version, false);
+    }
+
+    /**
+     * Returns the inserted or updated rows; all rows if this change set is {@link #isFull() full}.
+     *
+     * @return an unmodifiable list of the rows
+     */
+    public List<T> getChanged() {
+        return this.changed;
+    }
+
+    /**
+     * Returns the keys of the rows deleted since the given version. Rows that no longer match the query of all rows,
+     * e.g. deactivated caregivers, count as deleted.
+     *
+     * @return an unmodifiable set of the keys
+     */
+    public Set<Long> getDeletedKeys() {
+        return this.deletedKeys;
+    }
+
+    /**
+     * Returns the version of the change log to read the next changes from.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns whether this change set holds all rows instead of a delta.
+     *
+     * @return <code>true</code> if all rows were read, <code>false</code> otherwise
+     */
+    public boolean isFull() {
+        return this.full;
+    }
+
+    /**
+     * Returns whether nothing changed.
+     *
+     * @return <code>true</code> if this is a delta without changed or deleted rows, <code>false</code> otherwise
+     */
+    public boolean isEmpty() {
+        return !this.full && this.changed.isEmpty() && this.deletedKeys.isEmpty();
+    }
+
+    /**
+     * Applies this change set to a list of rows. A full change set replaces the rows of the list. A delta replaces
+     * rows with the same key as a changed row, appends the other changed rows and removes the deleted rows; the
+     * positions of the remaining rows are kept.
+     *
+     * @param items the rows to update, e.g. the items of a table
+     * @param keyExtractor returns the key of a row
+     */
+    public void applyTo(List<T> items, ToLongFunction<T> keyExtractor) {
+        if (this.full) {
+            items.clear();
+            items.addAll(this.changed);
+            return;
+        }
+        if (isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int index = 0; index < items.size(); index++) {
+            positions.put(keyExtractor.applyAsLong(items.get(index)), index);
+        }
+        for (T row : this.changed) {
+            Integer position = positions.get(keyExtractor.applyAsLong(row));
+            if (position != null) {
+                items.set(position, row);
+            } else {
+                items.add(row);
+            }
+        }
+        if (!this.deletedKeys.isEmpty()) {
+            items.removeIf(row -> this.deletedKeys.contains(keyExtractor.applyAsLong(row)));
+        }
+    }
+
+    /**
+     * Returns a short summary of the change set.
+     *
+     * @return the summary as string
+     */
+    @Override
+    public String toString() {
+        return "ChangeSet" + (this.full ? " (full)" : "") + "\nVersion: " + this.version +
+                "\nChanged: " + this.changed.size() +
+                "\nDeleted: " + this.deletedKeys.size() +
+                "\n";
+    }
+}
@@ -1,17 +1,16 @@
 package de.hitec.nhplus.datastorage;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-
-import org.sqlite.SQLiteConfig;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
- * A class for managing the SQLite database connection. <br>
+ * A class for managing the SQLite database connections. <br>
  * <br>
- * This class provides a singleton-style mechanism to retrieve and close a shared
- * {@link Connection} to the application's SQLite database.
+ * This class provides a singleton-style mechanism to retrieve and close the shared {@link ConnectionPool} of the
+ * application's SQLite database. The pool holds one writer and several read-only reader connections.
  */
 public class ConnectionBuilder {
 
@@ -21,50 +20,88 @@ public class ConnectionBuilder {
     private static final String DB_NAME = "nursingHome.db";
 
     /**
-     * The JDBC URL for connecting to the SQLite database.
+     * The JDBC URL for connecting to the SQLite database. It can be overridden with the system property
+     * <code>nhplus.db.url</code>, for example to work on a copy of the database.
+     */
+    private static final String URL = System.getProperty("nhplus.db.url", "jdbc:sqlite:db/" + DB_NAME);
+
+    /**
+     * The shared connection pool instance.
      */
-    private static final String URL = "jdbc:sqlite:db/" + DB_NAME;
+    private static ConnectionPool connectionPool;
 
     /**
-     * The shared database connection instance.
+     * The statement caches of all connections, which are used by DAOs. Looked up on every statement, so it is not
+     * guarded by the lock of this class; JDBC connections do not override <code>equals</code>, so they are keys by
+     * identity.
      */
-    private static Connection connection;
+    private static final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
 
     /**
-     * Returns the singleton {@link Connection} to the database. <br>
+     * Returns the singleton {@link ConnectionPool} of the database. <br>
      * <br>
-     * If no connection exists yet, a new one will be created with foreign key
-     * constraints enabled.
+     * If no pool exists yet, a new one will be opened. All its connections have foreign key constraints enabled.
      *
-     * @return the active {@link Connection} to the SQLite database, or {@code null} if connection setup fails
+     * @return the connection pool of the SQLite database, or {@code null} if connection setup fails
      */
-    public static synchronized Connection getConnection() {
+    public static synchronized ConnectionPool getConnectionPool() {
         try {
-            if (ConnectionBuilder.connection == null) {
-                SQLiteConfig configuration = new SQLiteConfig();
-                configuration.enforceForeignKeys(true);
-                ConnectionBuilder.connection = DriverManager.getConnection(URL, configuration.toProperties());
+            if (ConnectionBuilder.connectionPool == null) {
+                ConnectionBuilder.connectionPool = new ConnectionPool(URL);
             }
         } catch (SQLException exception) {
             System.out.println("Verbindung zur Datenbank konnte nicht aufgebaut werden!");
             exception.printStackTrace();
         }
-        return ConnectionBuilder.connection;
+        return ConnectionBuilder.connectionPool;
     }
 
     /**
-     * Closes the current database connection if it is open. <br>
+     * Returns the writer {@link Connection} of the connection pool without leasing it. <br>
      * <br>
-     * After closing, the connection will be set to {@code null}.
+     * Only meant for setting up the database schema; DAOs lease their connections from
+     * {@link #getConnectionPool()}.
+     *
+     * @return the writer {@link Connection} to the SQLite database, or {@code null} if connection setup fails
+     */
+    public static synchronized Connection getConnection() {
+        ConnectionPool pool = getConnectionPool();
+        return pool == null ? null : pool.getWriterConnection();
+    }
+
+    /**
+     * Returns the {@link StatementCache} of the given connection. The cache is created on first access and lives
+     * until the connection is closed.
+     *
+     * @param connection the connection the statements are prepared on
+     * @return the statement cache of the connection
+     */
+    public static StatementCache getStatementCache(Connection connection) {
+        return ConnectionBuilder.statementCaches.computeIfAbsent(connection, StatementCache::new);
+    }
+
+    /**
+     * Closes and forgets the cached statements of the given connection. Called before the connection is closed.
+     *
+     * @param connection the connection to release the statement cache for
+     */
+    static void releaseStatementCache(Connection connection) {
+        StatementCache cache = ConnectionBuilder.statementCaches.remove(connection);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Closes all connections of the pool if it is open. <br>
+     * <br>
+     * All cached statements of the connections are closed first. After closing, the pool will be set to
+     * {@code null}.
      */
     public static synchronized void closeConnection() {
-        try {
-            if (ConnectionBuilder.connection != null) {
-                ConnectionBuilder.connection.close();
-                ConnectionBuilder.connection = null;
-            }
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        if (ConnectionBuilder.connectionPool != null) {
+            ConnectionBuilder.connectionPool.close();
+            ConnectionBuilder.connectionPool = null;
         }
     }
 }
@@ -0,0 +1,499 @@
+package de.hitec.nhplus.datastorage;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A small pool of SQLite connections following the single-writer / multi-reader model. <br>
+ * <br>
+ * The database runs in WAL mode, so readers never block the writer and the writer never blocks readers. The pool
+ * therefore holds exactly one writer connection, which is handed out exclusively, and a fixed number of read-only
+ * reader connections. Both kinds of connections are leased with {@link #acquireWriter()} and
+ * {@link #acquireReader()} and returned by closing the {@link Lease}. <br>
+ * <br>
+ * Leases are reentrant per thread: a thread that already holds a lease gets the same connection again, and a thread
+ * holding the writer also reads through the writer, so it sees its own uncommitted changes. A writer lease belongs to
+ * the thread that acquired it and has to be closed by that thread. <br>
+ * <br>
+ * The pool measures how long threads wait for a connection and reports leases that are held longer than the leak
+ * threshold together with the stack trace of the code that acquired them to the log.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * The default number of reader connections.
+     */
+    public static final int DEFAULT_READER_COUNT = 4;
+
+    /**
+     * How long a thread waits for a connection before giving up, in milliseconds.
+     */
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * How long SQLite itself waits for a lock held by another connection, in milliseconds.
+     */
+    private static final int BUSY_TIMEOUT_MILLIS = 5_000;
+
+    /**
+     * How long a lease may be held before it is reported as possible leak, in milliseconds.
+     */
+    private static final long LEAK_THRESHOLD_MILLIS = 30_000;
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final Connection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final List<Connection> readers = new ArrayList<>();
+    private final BlockingQueue<Connection> idleReaders;
+
+    private final ThreadLocal<Lease> writerLease = new ThreadLocal<>();
+    private final ThreadLocal<Lease> readerLease = new ThreadLocal<>();
+    private final Set<Lease> activeLeases = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService leakDetector;
+
+    private final AtomicLong writerCheckouts = new AtomicLong();
+    private final AtomicLong readerCheckouts = new AtomicLong();
+    private final AtomicLong writerWaitNanos = new AtomicLong();
+    private final AtomicLong readerWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Opens a pool with the default number of reader connections.
+     *
+     * @param url the JDBC URL of the SQLite database
+     * @throws SQLException if a connection cannot be opened
+     */
+    public ConnectionPool(String url) throws SQLException {
+        this(url, DEFAULT_READER_COUNT);
+    }
+
+    /**
+     * Opens the writer connection, switches the database to WAL mode and opens the reader connections.
+     *
+     * @param url the JDBC URL of the SQLite database
+     * @param readerCount the number of read-only connections, must be positive
+     * @throws SQLException if a connection cannot be opened
+     */
+    public ConnectionPool(String url, int readerCount) throws SQLException {
+        if (readerCount <= 0) {
+            throw new IllegalArgumentException("readerCount must be positive: " + readerCount);
+        }
+        SQLiteConfig writerConfiguration = new SQLiteConfig();
+        writerConfiguration.enforceForeignKeys(true);
+        writerConfiguration.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        // in WAL mode NORMAL keeps the database consistent and only syncs at checkpoints
+        writerConfiguration.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        writerConfiguration.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        this.writer = DriverManager.getConnection(url, writerConfiguration.toProperties());
+
+        this.idleReaders = new LinkedBlockingQueue<>(readerCount);
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                SQLiteConfig readerConfiguration = new SQLiteConfig();
+                readerConfiguration.enforceForeignKeys(true);
+                readerConfiguration.setReadOnly(true);
+                readerConfiguration.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+                Connection reader = DriverManager.getConnection(url, readerConfiguration.toProperties());
+                this.readers.add(reader);
+                this.idleReaders.add(reader);
+            }
+        } catch (SQLException exception) {
+            closeConnections();
+            throw exception;
+        }
+
+        this.leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-connection-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.leakDetector.scheduleWithFixedDelay(this::detectLeaks, LEAK_THRESHOLD_MILLIS, LEAK_THRESHOLD_MILLIS / 2,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leases the writer connection exclusively. Other threads asking for the writer wait until the lease is
+     * closed.
+     *
+     * @return the lease of the writer connection
+     * @throws SQLException if the pool is closed or the writer is not released in time
+     */
+    public Lease acquireWriter() throws SQLException {
+        Lease current = this.writerLease.get();
+        if (current != null && current.isActive()) {
+            current.holdCount++;
+            return current;
+        }
+        ensureOpen();
+        long start = System.nanoTime();
+        try {
+            if (!this.writerLock.tryLock(ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout while waiting for the writer connection");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection", exception);
+        }
+        recordWait(this.writerCheckouts, this.writerWaitNanos, System.nanoTime() - start);
+        Lease lease = new Lease(this.writer, true);
+        this.writerLease.set(lease);
+        this.activeLeases.add(lease);
+        return lease;
+    }
+
+    /**
+     * Leases a read-only connection. If the current thread holds the writer, the writer is returned instead, so
+     * the thread sees its own changes.
+     *
+     * @return the lease of a reader connection
+     * @throws SQLException if the pool is closed or no reader gets free in time
+     */
+    public Lease acquireReader() throws SQLException {
+        Lease current = this.writerLease.get();
+        if (current == null || !current.isActive()) {
+            current = this.readerLease.get();
+        }
+        if (current != null && current.isActive()) {
+            current.holdCount++;
+            return current;
+        }
+        ensureOpen();
+        long start = System.nanoTime();
+        Connection reader;
+        try {
+            reader = this.idleReaders.poll(ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", exception);
+        }
+        if (reader == null) {
+            throw new SQLException("Timeout while waiting for a reader connection");
+        }
+        recordWait(this.readerCheckouts, this.readerWaitNanos, System.nanoTime() - start);
+        Lease lease = new Lease(reader, false);
+        this.readerLease.set(lease);
+        this.activeLeases.add(lease);
+        return lease;
+    }
+
+    /**
+     * Returns the connection of the innermost lease held by the current thread.
+     *
+     * @return the leased connection, or <code>null</code> if the thread holds no lease
+     */
+    public Connection currentConnection() {
+        Lease lease = this.writerLease.get();
+        if (lease == null || !lease.isActive()) {
+            lease = this.readerLease.get();
+        }
+        return lease != null && lease.isActive() ? lease.getConnection() : null;
+    }
+
+    /**
+     * Returns the writer connection without leasing it. <br>
+     * <br>
+     * Only meant for setting up the schema before any DAO works with the pool; everything else has to use
+     * {@link #acquireWriter()}.
+     *
+     * @return the writer connection
+     */
+    public Connection getWriterConnection() {
+        return this.writer;
+    }
+
+    /**
+     * Returns the number of reader connections.
+     *
+     * @return the number of reader connections
+     */
+    public int getReaderCount() {
+        return this.readers.size();
+    }
+
+    /**
+     * Returns how often the writer was leased.
+     *
+     * @return the number of writer checkouts
+     */
+    public long getWriterCheckoutCount() {
+        return this.writerCheckouts.get();
+    }
+
+    /**
+     * Returns how often a reader was leased.
+     *
+     * @return the number of reader checkouts
+     */
+    public long getReaderCheckoutCount() {
+        return this.readerCheckouts.get();
+    }
+
+    /**
+     * Returns the average time threads waited for the writer.
+     *
+     * @return the average wait time in milliseconds
+     */
+    public double getAverageWriterWaitMillis() {
+        return averageMillis(this.writerWaitNanos, this.writerCheckouts);
+    }
+
+    /**
+     * Returns the average time threads waited for a reader.
+     *
+     * @return the average wait time in milliseconds
+     */
+    public double getAverageReaderWaitMillis() {
+        return averageMillis(this.readerWaitNanos, this.readerCheckouts);
+    }
+
+    /**
+     * Returns the longest time a thread waited for any connection.
+     *
+     * @return the maximum wait time in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return this.maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Returns the number of leases currently held.
+     *
+     * @return the number of active leases
+     */
+    public int getActiveLeaseCount() {
+        return this.activeLeases.size();
+    }
+
+    /**
+     * Returns how many leases were reported as possible leaks.
+     *
+     * @return the number of detected leaks
+     */
+    public long getLeakCount() {
+        return this.leaks.get();
+    }
+
+    /**
+     * Returns a short summary of the pool statistics.
+     *
+     * @return the statistics as string
+     */
+    @Override
+    public String toString() {
+        return "ConnectionPool" + "\nReaders: " + this.readers.size() +
+                "\nActive leases: " + this.activeLeases.size() +
+                "\nWriter checkouts: " + this.writerCheckouts.get() +
+                " (avg wait " + String.format("%.3f", getAverageWriterWaitMillis()) + " ms)" +
+                "\nReader checkouts: " + this.readerCheckouts.get() +
+                " (avg wait " + String.format("%.3f", getAverageReaderWaitMillis()) + " ms)" +
+                "\nMax wait: " + String.format("%.3f", getMaxWaitMillis()) + " ms" +
+                "\nLeaks: " + this.leaks.get() +
+                "\n";
+    }
+
+    /**
+     * Closes all connections of the pool together with their cached statements. Leases still held are reported.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.leakDetector.shutdownNow();
+        for (Lease lease : this.activeLeases) {
+            LOGGER.log(Level.WARNING, "Verbindung beim Schließen des Pools noch in Benutzung!", lease.origin);
+        }
+        closeConnections();
+    }
+
+    /**
+     * Closes the writer and all reader connections.
+     */
+    private void closeConnections() {
+        List<Connection> connections = new ArrayList<>(this.readers);
+        connections.add(this.writer);
+        for (Connection connection : connections) {
+            ConnectionBuilder.releaseStatementCache(connection);
+            try {
+                connection.close();
+            } catch (SQLException exception) {
+                LOGGER.log(Level.WARNING, "Verbindung konnte nicht geschlossen werden!", exception);
+            }
+        }
+    }
+
+    /**
+     * Throws if the pool was already closed.
+     *
+     * @throws SQLException if the pool is closed
+     */
+    private void ensureOpen() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    /**
+     * Adds a measured wait time to the statistics.
+     */
+    private void recordWait(AtomicLong checkouts, AtomicLong waitNanos, long nanos) {
+        checkouts.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        this.maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Calculates an average wait time in milliseconds.
+     */
+    private static double averageMillis(AtomicLong waitNanos, AtomicLong checkouts) {
+        long count = checkouts.get();
+        return count == 0 ? 0 : waitNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Reports every lease that is held longer than the leak threshold. Each lease is reported once.
+     */
+    private void detectLeaks() {
+        long now = System.nanoTime();
+        for (Lease lease : this.activeLeases) {
+            long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - lease.acquiredAt);
+            if (heldMillis > LEAK_THRESHOLD_MILLIS && !lease.reported) {
+                lease.reported = true;
+                this.leaks.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Mögliches Verbindungsleck: " + (lease.writer ? "Schreib" : "Lese") +
+                        "verbindung seit " + heldMillis + " ms von " + lease.owner.getName() + " belegt.",
+                        lease.origin);
+            }
+        }
+    }
+
+    /**
+     * Returns a leased connection to the pool.
+     *
+     * @param lease the lease whose last hold was released
+     */
+    private void release(Lease lease) {
+        this.activeLeases.remove(lease);
+        if (Thread.currentThread() == lease.owner) {
+            (lease.writer ? this.writerLease : this.readerLease).remove();
+        }
+        if (lease.writer) {
+            this.writerLock.unlock();
+        } else if (!this.closed) {
+            this.idleReaders.add(lease.getConnection());
+        }
+    }
+
+    /**
+     * A connection leased from the pool. Closing the lease returns the connection, the connection itself must not
+     * be closed. <br>
+     * <br>
+     * A lease belongs to the thread that acquired it, which gets it again when it acquires the pool once more. The
+     * lock of the writer is held by that thread, so a writer lease has to be closed by the same thread. A reader
+     * lease may be closed by another thread, e.g. when a stream is consumed there.
+     */
+    public class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final boolean writer;
+        private final Thread owner = Thread.currentThread();
+        private final long acquiredAt = System.nanoTime();
+        private final Throwable origin = new Throwable("Connection acquired here");
+        private volatile int holdCount = 1;
+        private volatile boolean reported;
+        private Runnable releaseAction;
+
+        private Lease(Connection connection, boolean writer) {
+            this.connection = connection;
+            this.writer = writer;
+        }
+
+        /**
+         * Returns the leased connection.
+         *
+         * @return the connection
+         */
+        public Connection getConnection() {
+            return this.connection;
+        }
+
+        /**
+         * Returns whether this lease holds the writer connection.
+         *
+         * @return <code>true</code> for the writer, <code>false</code> for a reader
+         */
+        public boolean isWriter() {
+            return this.writer;
+        }
+
+        /**
+         * Returns whether the lease still holds its connection.
+         *
+         * @return <code>true</code> if the lease was not released yet
+         */
+        public boolean isActive() {
+            return this.holdCount > 0;
+        }
+
+        /**
+         * Returns whether the lease was just acquired and is not held by an outer operation as well.
+         *
+         * @return <code>true</code> if the lease is held once
+         */
+        boolean isFirstHold() {
+            return this.holdCount == 1;
+        }
+
+        /**
+         * Sets an action run after the connection went back to the pool, e.g. to measure the leasing operation.
+         *
+         * @param releaseAction the action to run on release
+         */
+        void setReleaseAction(Runnable releaseAction) {
+            this.releaseAction = releaseAction;
+        }
+
+        /**
+         * Releases one hold of the lease. The connection goes back to the pool when the last hold is released.
+         *
+         * @throws IllegalStateException if a writer lease is closed by another thread than the one that acquired it
+         */
+        @Override
+        public void close() {
+            if (this.holdCount <= 0) {
+                return;
+            }
+            if (this.writer && Thread.currentThread() != this.owner) {
+                throw new IllegalStateException("Writer lease acquired by " + this.owner.getName()
+                        + " must not be closed by " + Thread.currentThread().getName());
+            }
+            this.holdCount--;
+            if (this.holdCount == 0) {
+                release(this);
+                if (this.releaseAction != null) {
+                    this.releaseAction.run();
+                }
+            }
+        }
+    }
+}
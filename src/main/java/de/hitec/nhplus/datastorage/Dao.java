@@ -2,6 +2,7 @@ package de.hitec.nhplus.datastorage;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Generic DAO (Data Access Object) interface defining basic CRUD operations
@@ -13,12 +14,23 @@ import java.util.List;
  */
 public interface Dao<T> {
     /**
-     * Persists the given object in the database.
+     * Persists the given object in the database and sets the ID generated for it.
      *
      * @param t the object to be created
+     * @return the given object, now carrying its generated ID
      * @throws SQLException if a database access error occurs
      */
-    void create(T t) throws SQLException;
+    T create(T t) throws SQLException;
+
+    /**
+     * Persists all given objects within a single transaction. Either all objects are stored or none. Each object
+     * gets the ID generated for it.
+     *
+     * @param list the objects to be created
+     * @return the generated IDs in the order of the given objects
+     * @throws SQLException if a database access error occurs
+     */
+    List<Long> createAll(List<T> list) throws SQLException;
 
     /**
      * Retrieves an object by its ID.
@@ -37,15 +49,48 @@ public interface Dao<T> {
      */
     List<T> readAll() throws SQLException;
 
+    /**
+     * Retrieves all objects of type <code>T</code> as a lazily populated stream. Rows are mapped one by one while
+     * the stream is consumed, so the whole table is never held in memory. <br>
+     * <br>
+     * The stream holds an open <code>ResultSet</code> and must be closed after use, preferably with
+     * try-with-resources. Database errors while consuming the stream are thrown as {@link UncheckedSQLException}.
+     *
+     * @return a stream of all stored objects
+     * @throws SQLException if the query cannot be executed
+     */
+    Stream<T> streamAll() throws SQLException;
 
     /**
-     * Updates the existing database record for the given object.
+     * Retrieves all objects of type <code>T</code> as a lazily populated stream, fetching the given number of rows
+     * from the database at once.
+     *
+     * @param fetchSize the number of rows fetched at once
+     * @return a stream of all stored objects
+     * @throws SQLException if the query cannot be executed
+     * @see #streamAll()
+     */
+    Stream<T> streamAll(int fetchSize) throws SQLException;
+
+
+    /**
+     * Updates the existing database record for the given object. Implementations tracking the changes of their
+     * objects write only the modified fields and skip objects without changes.
      *
      * @param t the object to update
      * @throws SQLException if a database access error occurs
      */
     void update(T t) throws SQLException;
 
+    /**
+     * Updates the database records of all given objects within a single transaction. Either all objects are
+     * updated or none. Implementations tracking the changes of their objects skip objects without changes.
+     *
+     * @param list the objects to update
+     * @throws SQLException if a database access error occurs
+     */
+    void updateAll(List<T> list) throws SQLException;
+
     /**
      * Deletes the object with the specified ID from the database.
      *
@@ -53,4 +98,13 @@ public interface Dao<T> {
      * @throws SQLException if a database access error occurs
      */
     void deleteById(long key) throws SQLException;
+
+    /**
+     * Deletes the objects with the specified IDs within a single transaction. Either all objects are deleted or
+     * none.
+     *
+     * @param keys the IDs of the objects to delete
+     * @throws SQLException if a database access error occurs
+     */
+    void deleteAllById(List<Long> keys) throws SQLException;
 }
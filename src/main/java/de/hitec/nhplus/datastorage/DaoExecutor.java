@@ -0,0 +1,88 @@
+package de.hitec.nhplus.datastorage;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the executor running the database work of {@link AsyncDao}s, so it never blocks the JavaFX application
+ * thread. <br>
+ * <br>
+ * On a Java runtime with virtual threads, every task gets its own virtual thread; waiting for a pooled connection
+ * then costs no platform thread. Otherwise a small pool of daemon threads is used, sized to the connections the
+ * {@link ConnectionPool} can hand out at once. Setting the system property <code>nhplus.dao.platformThreads</code>
+ * to <code>true</code> forces the thread pool.
+ */
+public class DaoExecutor {
+
+    /**
+     * The maximum number of seconds {@link #shutdown()} waits for submitted work.
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    /**
+     * The shared executor, created on first use.
+     */
+    private static ExecutorService executor;
+
+    /**
+     * Returns the shared executor for database work. If no executor exists yet, a new one will be created.
+     *
+     * @return the executor for database work
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (DaoExecutor.executor == null || DaoExecutor.executor.isShutdown()) {
+            DaoExecutor.executor = createExecutor();
+        }
+        return DaoExecutor.executor;
+    }
+
+    /**
+     * Shuts the shared executor down and waits up to {@value #SHUTDOWN_TIMEOUT_SECONDS} seconds for submitted work,
+     * so pending writes are finished before the connections are closed. New work is rejected until the next call of
+     * {@link #getExecutor()}.
+     */
+    public static synchronized void shutdown() {
+        if (DaoExecutor.executor != null) {
+            DaoExecutor.executor.shutdown();
+            try {
+                if (!DaoExecutor.executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    System.out.println("Datenbankzugriffe wurden nicht rechtzeitig beendet!");
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            DaoExecutor.executor = null;
+        }
+    }
+
+    /**
+     * Creates an executor with one virtual thread per task if the runtime supports it, a pool of daemon threads
+     * otherwise. <br>
+     * <br>
+     * The virtual thread executor is looked up by reflection, because the project is compiled for a release in
+     * which virtual threads are still a preview feature.
+     *
+     * @return the new executor
+     */
+    private static ExecutorService createExecutor() {
+        if (!Boolean.getBoolean("nhplus.dao.platformThreads")) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException
+                     | UnsupportedOperationException exception) {
+                // no virtual threads available, fall back to platform threads
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-dao-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(ConnectionPool.DEFAULT_READER_COUNT + 1, threadFactory);
+    }
+}
@@ -1,17 +1,39 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.User;
+
 /**
  * Factory class for creating DAO (Data Access Object) instances.<br>
  * <br>
  * This class implements the Singleton pattern to provide a single shared instance
- * for creating DAO objects with managed database connections.
+ * for creating DAO objects with managed database connections. All DAOs share the
+ * {@link ConnectionPool} of the {@link ConnectionBuilder}. Patients and caregivers are read constantly and change
+ * rarely, so their DAOs share one {@link EntityCache} per entity.
  */
 public class DaoFactory {
 
     /**
-     * The single instance of the <code>DaoFactory</code>.
+     * The single instance of the <code>DaoFactory</code>, created eagerly so threads calling
+     * {@link #getDaoFactory()} at the same time can not create factories with separate caches.
+     */
+    private static final DaoFactory INSTANCE = new DaoFactory();
+
+    /**
+     * The cache shared by all <code>PatientDao</code> instances.
+     */
+    private final EntityCache<Patient> patientCache = new EntityCache<>("Patient", Patient::getPid,
+            patient -> EntityCache.estimateWeight(patient.getFirstName(), patient.getSurname(),
+                    patient.getDateOfBirth(), patient.getCareLevel(), patient.getRoomNumber()));
+
+    /**
+     * The cache shared by all <code>CaregiverDao</code> instances.
      */
-    private static DaoFactory instance;
+    private final EntityCache<Caregiver> caregiverCache = new EntityCache<>("Caregiver", Caregiver::getCgID,
+            caregiver -> EntityCache.estimateWeight(caregiver.getFirstName(), caregiver.getSurname(),
+                    caregiver.getTelephone()));
 
     /**
      * Private constructor to prevent instantiation from outside the class.
@@ -26,45 +48,98 @@ public class DaoFactory {
      * @return the single <code>DaoFactory</code> instance
      */
     public static DaoFactory getDaoFactory() {
-        if (DaoFactory.instance == null) {
-            DaoFactory.instance = new DaoFactory();
-        }
-        return DaoFactory.instance;
+        return DaoFactory.INSTANCE;
     }
 
     /**
-     * Creates a new instance of <code>TreatmentDao</code> using a fresh database connection.
+     * Creates a new instance of <code>TreatmentDao</code> leasing its connections from the shared connection pool.
      *
      * @return a new <code>TreatmentDao</code> instance
      */
     public TreatmentDao createTreatmentDao() {
-        return new TreatmentDao(ConnectionBuilder.getConnection());
+        return new TreatmentDao(ConnectionBuilder.getConnectionPool());
     }
 
     /**
-     * Creates a new instance of <code>PatientDao</code> using a fresh database connection.
+     * Creates a new instance of <code>PatientDao</code> leasing its connections from the shared connection pool and
+     * reading through the shared patient cache.
      *
      * @return a new <code>PatientDao</code> instance
      */
     public PatientDao createPatientDAO() {
-        return new PatientDao(ConnectionBuilder.getConnection());
+        return new PatientDao(ConnectionBuilder.getConnectionPool(), this.patientCache);
     }
 
     /**
-     * Creates a new instance of <code>CaregiverDao</code> using a fresh database connection.
+     * Creates a new instance of <code>CaregiverDao</code> leasing its connections from the shared connection pool and
+     * reading through the shared caregiver cache.
      *
      * @return a new <code>CaregiverDao</code> instance
      */
     public CaregiverDao createCaregiverDao() {
-        return new CaregiverDao(ConnectionBuilder.getConnection());
+        return new CaregiverDao(ConnectionBuilder.getConnectionPool(), this.caregiverCache);
     }
 
     /**
-     * Creates a new instance of <code>UserDao</code> using a fresh database connection.
+     * Creates a new instance of <code>UserDao</code> leasing its connections from the shared connection pool.
      *
      * @return a new <code>UserDao</code> instance
      */
     public UserDao createUserDao() {
-        return new UserDao(ConnectionBuilder.getConnection());
+        return new UserDao(ConnectionBuilder.getConnectionPool());
+    }
+
+    /**
+     * Returns the cache shared by all <code>PatientDao</code> instances of this factory, e.g. for its statistics.
+     *
+     * @return the patient cache
+     */
+    public EntityCache<Patient> getPatientCache() {
+        return this.patientCache;
+    }
+
+    /**
+     * Returns the cache shared by all <code>CaregiverDao</code> instances of this factory, e.g. for its statistics.
+     *
+     * @return the caregiver cache
+     */
+    public EntityCache<Caregiver> getCaregiverCache() {
+        return this.caregiverCache;
+    }
+
+    /**
+     * Creates a new asynchronous facade of a <code>TreatmentDao</code>, running its database work in the background.
+     *
+     * @return a new <code>AsyncDao</code> wrapping a <code>TreatmentDao</code>
+     */
+    public AsyncDao<Treatment, TreatmentDao> createAsyncTreatmentDao() {
+        return new AsyncDao<>(createTreatmentDao());
+    }
+
+    /**
+     * Creates a new asynchronous facade of a <code>PatientDao</code>, running its database work in the background.
+     *
+     * @return a new <code>AsyncDao</code> wrapping a <code>PatientDao</code>
+     */
+    public AsyncDao<Patient, PatientDao> createAsyncPatientDao() {
+        return new AsyncDao<>(createPatientDAO());
+    }
+
+    /**
+     * Creates a new asynchronous facade of a <code>CaregiverDao</code>, running its database work in the background.
+     *
+     * @return a new <code>AsyncDao</code> wrapping a <code>CaregiverDao</code>
+     */
+    public AsyncDao<Caregiver, CaregiverDao> createAsyncCaregiverDao() {
+        return new AsyncDao<>(createCaregiverDao());
+    }
+
+    /**
+     * Creates a new asynchronous facade of a <code>UserDao</code>, running its database work in the background.
+     *
+     * @return a new <code>AsyncDao</code> wrapping a <code>UserDao</code>
+     */
+    public AsyncDao<User, UserDao> createAsyncUserDao() {
+        return new AsyncDao<>(createUserDao());
     }
 }
@@ -2,23 +2,59 @@ package de.hitec.nhplus.datastorage;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract base implementation of the <code>Dao</code> interface providing common database operations.<br>
  *<br>
  * This class provides generic CRUD (Create, Read, Update, Delete) functionality for
  * entities of type <code>T</code>. Concrete DAO classes must implement the required abstract
- * methods to provide entity-specific SQL statements and result parsing.
+ * methods to provide entity-specific SQL statements and result parsing. <br>
+ * <br>
+ * A DAO either works on a fixed connection or leases its connections from a {@link ConnectionPool}: reading
+ * operations run on one of the read-only connections, writing operations on the writer connection. Statements are
+ * always prepared on the connection of the current operation via {@link #prepareStatement(String)}. <br>
+ * <br>
+ * A DAO may read through an {@link EntityCache}. Single entities and the list of all entities are then taken from
+ * the cache if possible, and every written entity is invalidated. <br>
+ * <br>
+ * DAOs of tables tracked by the change log let views read only the rows changed since their last read with
+ * {@link #readChangesSince(long)} instead of reading all rows again.
  *
  * @param <T> Type of the entity.
  */
+// the leases in try-with-resources are only held to return the connection, they are never referenced
+@SuppressWarnings("try")
 public abstract class DaoImp<T> implements Dao<T> {
     /**
-     * The field for the database connection user for executing SQL statements.
+     * The number of rows fetched at once by {@link #streamAll()}.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /**
+     * The field for the fixed database connection used for executing SQL statements, <code>null</code> if the
+     * connections are leased from a pool.
      */
     protected Connection connection;
 
+    /**
+     * The pool the connections are leased from, <code>null</code> if a fixed connection is used.
+     */
+    private final ConnectionPool connectionPool;
+
+    /**
+     * The cache read through by {@link #read(long)} and {@link #readAll()}, <code>null</code> if nothing is cached.
+     */
+    private final EntityCache<T> cache;
+
     /**
      * Constructs a new DaoImp using the given database connection.
      *
@@ -26,21 +62,82 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     protected DaoImp(Connection connection) {
         this.connection = connection;
+        this.connectionPool = null;
+        this.cache = null;
     }
 
     /**
-     * Inserts the given object into the database.
+     * Constructs a new DaoImp leasing its connections from the given pool for each operation.
+     *
+     * @param connectionPool the pool to lease connections from
+     */
+    protected DaoImp(ConnectionPool connectionPool) {
+        this(connectionPool, null);
+    }
+
+    /**
+     * Constructs a new DaoImp leasing its connections from the given pool for each operation and reading through
+     * the given cache.
+     *
+     * @param connectionPool the pool to lease connections from
+     * @param cache the cache shared by all DAOs of the entity, <code>null</code> to read every entity from the
+     *              database
+     */
+    protected DaoImp(ConnectionPool connectionPool, EntityCache<T> cache) {
+        this.connection = null;
+        this.connectionPool = connectionPool;
+        this.cache = cache;
+    }
+
+    /**
+     * Inserts the given object into the database and sets the key the database generated for it, so callers can
+     * show the new object without reading it again. The key is read on the same writer connection while it is still
+     * leased, so no other insert can come in between.
      *
      * @param t the object to be created in the database
+     * @return the given object with its generated ID
      * @throws SQLException if a database access error occurs
      */
     @Override
-    public void create(T t) throws SQLException {
-        getCreateStatement(t).executeUpdate();
+    public T create(T t) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseWriter()) {
+            getCreateStatement(t).executeUpdate();
+            setGeneratedKey(t, readLastInsertId());
+        } finally {
+            invalidateList();
+        }
+        return t;
+    }
+
+    /**
+     * Inserts all given objects with one JDBC batch inside a single transaction, so SQLite syncs the database
+     * file only once instead of once per object.
+     *
+     * @param list the objects to be created in the database, each gets its generated ID
+     * @return the generated IDs in the order of the given objects
+     * @throws SQLException if a database access error occurs; no object is stored in this case
+     */
+    @Override
+    public List<Long> createAll(List<T> list) throws SQLException {
+        List<Long> keys = new ArrayList<>(list.size());
+        try {
+            executeInTransaction(() -> executeBatches(list, this::getCreateStatement, (statement, count) -> {
+                long lastKey = readLastInsertId();
+                for (long key = lastKey - count + 1; key <= lastKey; key++) {
+                    keys.add(key);
+                }
+            }));
+        } finally {
+            invalidateList();
+        }
+        for (int index = 0; index < list.size(); index++) {
+            setGeneratedKey(list.get(index), keys.get(index));
+        }
+        return keys;
     }
 
     /**
-     * Retrieves an object from the database by its id.
+     * Retrieves an object by its id, from the cache if this DAO has one and the object is cached.
      *
      * @param key the ID of the object to retrieve
      * @return the object if found; otherwise <code>null</code>
@@ -48,34 +145,232 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public T read(long key) throws SQLException {
+        return this.cache == null ? readFromDatabase(key) : this.cache.get(key, this::readFromDatabase);
+    }
+
+    /**
+     * Retrieves an object from the database by its id, bypassing the cache.
+     *
+     * @param key the ID of the object to retrieve
+     * @return the object if found; otherwise <code>null</code>
+     * @throws SQLException if a database access error occurs
+     */
+    private T readFromDatabase(long key) throws SQLException {
         T object = null;
-        ResultSet result = getReadByIDStatement(key).executeQuery();
-        if (result.next()) {
-            object = getInstanceFromResultSet(result);
+        // closing the result set ends the read transaction, so the connection sees later commits
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadByIDStatement(key).executeQuery()) {
+            if (result.next()) {
+                object = getInstanceFromResultSet(result);
+            }
         }
         return object;
     }
 
     /**
-     * Retrieves all objects of type <code>T</code> from the database.
+     * Retrieves all objects of type <code>T</code>, from the cache if this DAO has one and the list is cached.
      *
-     * @return a list containing all objects retrieved from the database
+     * @return a list containing all objects
      * @throws SQLException if a database access error occurs
      */
     @Override
     public List<T> readAll() throws SQLException {
-        return getListFromResultSet(getReadAllStatement().executeQuery());
+        return this.cache == null ? readAllFromDatabase() : this.cache.getAll(this::readAllFromDatabase);
     }
 
     /**
-     * Updates the database entry of the given object.
+     * Retrieves all objects of type <code>T</code> from the database, bypassing the cache.
+     *
+     * @return a list containing all objects retrieved from the database
+     * @throws SQLException if a database access error occurs
+     */
+    private List<T> readAllFromDatabase() throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadAllStatement().executeQuery()) {
+            return getListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Retrieves all objects of type <code>T</code> from the database together with the current version of the change
+     * log, to read only the changes with {@link #readChangesSince(long)} later on. The version is read before the
+     * objects, so no change gets lost; a change in between is simply delivered again.
+     *
+     * @return a full change set with all objects
+     * @throws SQLException if a database access error occurs
+     * @throws UnsupportedOperationException if the table of this DAO is not tracked by the change log
+     */
+    public ChangeSet<T> readAllWithChangeVersion() throws SQLException {
+        requireChangeTable();
+        long version = readChangeVersion();
+        // the cache may still hold objects written just before the version was read
+        return ChangeSet.full(readAllFromDatabase(), version);
+    }
+
+    /**
+     * Retrieves the objects inserted or updated since the given version of the change log and the IDs of the objects
+     * deleted since then. Objects that no longer match the statement of {@link #getReadAllStatement()} count as
+     * deleted. The changed objects are also removed from the cache, so it sees writes of other connections.
+     *
+     * @param version the version of the last change set read
+     * @return a delta change set, which is empty if nothing changed
+     * @throws SQLException if a database access error occurs
+     * @throws UnsupportedOperationException if the table of this DAO is not tracked by the change log
+     */
+    public ChangeSet<T> readChangesSince(long version) throws SQLException {
+        String table = requireChangeTable();
+        long currentVersion = readChangeVersion();
+        if (currentVersion <= version) {
+            return ChangeSet.delta(List.of(), Set.of(), version);
+        }
+        Set<Long> deletedKeys = new HashSet<>();
+        List<T> changed;
+        try (ConnectionPool.Lease lease = leaseReader()) {
+            PreparedStatement statement = prepareStatement(
+                    "SELECT row_id FROM change_log WHERE table_name = ? AND version > ?");
+            statement.setString(1, table);
+            statement.setLong(2, version);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    deletedKeys.add(result.getLong(1));
+                }
+            }
+            // rows changed again in the meantime have a higher version and are read anyway
+            try (ResultSet result = getReadChangedStatement(version).executeQuery()) {
+                changed = getListFromResultSet(result);
+            }
+        }
+        for (T t : changed) {
+            deletedKeys.remove(getKey(t));
+            invalidate(t);
+        }
+        for (long key : deletedKeys) {
+            invalidate(key);
+        }
+        return ChangeSet.delta(changed, deletedKeys, currentVersion);
+    }
+
+    /**
+     * Returns the current version of the change log, which is increased by every insert, update and delete of a
+     * tracked table.
+     *
+     * @return the current version, <code>0</code> if nothing was changed yet
+     * @throws SQLException if a database access error occurs
+     */
+    public long readChangeVersion() throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = prepareStatement("SELECT version FROM change_counter WHERE id = 1").executeQuery()) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Returns the table of this DAO in the change log.
+     *
+     * @return the name of the table
+     * @throws UnsupportedOperationException if the table of this DAO is not tracked by the change log
+     */
+    private String requireChangeTable() {
+        String table = getChangeTable();
+        if (table == null) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not track changes");
+        }
+        return table;
+    }
+
+    /**
+     * Retrieves all objects of type <code>T</code> as a lazily populated stream with the default fetch size.
+     *
+     * @return a stream of all stored objects, which must be closed after use
+     * @throws SQLException if the query cannot be executed
+     */
+    @Override
+    public Stream<T> streamAll() throws SQLException {
+        return streamAll(DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Retrieves all objects of type <code>T</code> as a lazily populated stream. <br>
+     * <br>
+     * The statement is taken out of the statement cache, so other calls of this DAO can not close the open
+     * <code>ResultSet</code>. The stream keeps its connection leased; statement, result set and lease are released
+     * when the stream is closed or fully consumed.
+     *
+     * @param fetchSize the number of rows fetched at once
+     * @return a stream of all stored objects, which must be closed after use
+     * @throws SQLException if the query cannot be executed
+     */
+    @Override
+    public Stream<T> streamAll(int fetchSize) throws SQLException {
+        ConnectionPool.Lease lease = leaseReader();
+        PreparedStatement statement = null;
+        try {
+            statement = getReadAllStatement();
+            if (statement == null) {
+                throw new SQLException("Statement to read all entries could not be prepared");
+            }
+            ConnectionBuilder.getStatementCache(getConnection()).detach(statement);
+            statement.setFetchSize(fetchSize);
+            ResultSet result = statement.executeQuery();
+            StreamResources resources = new StreamResources(lease, statement, result);
+            return StreamSupport.stream(new ResultSetSpliterator(resources), false).onClose(resources::close);
+        } catch (SQLException | RuntimeException exception) {
+            if (statement != null) {
+                statement.close();
+            }
+            if (lease != null) {
+                lease.close();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Updates the database entry of the given object. Nothing is written if the object has no changes.
      *
      * @param t the object to update
      * @throws SQLException if a database access error occurs
      */
     @Override
     public void update(T t) throws SQLException {
-        getUpdateStatement(t).executeUpdate();
+        if (!hasChanges(t)) {
+            return;
+        }
+        try (ConnectionPool.Lease lease = leaseWriter()) {
+            getUpdateStatement(t).executeUpdate();
+        } finally {
+            invalidate(t);
+        }
+        updated(t);
+    }
+
+    /**
+     * Updates the database entries of all given objects with changes with JDBC batches inside a single transaction.
+     *
+     * @param list the objects to update
+     * @throws SQLException if a database access error occurs; no object is updated in this case
+     */
+    @Override
+    public void updateAll(List<T> list) throws SQLException {
+        List<T> changed = new ArrayList<>();
+        for (T t : list) {
+            if (hasChanges(t)) {
+                changed.add(t);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            executeInTransaction(() -> executeBatches(changed, this::getUpdateStatement, null));
+        } finally {
+            for (T t : changed) {
+                invalidate(t);
+            }
+        }
+        for (T t : changed) {
+            updated(t);
+        }
     }
 
     /**
@@ -86,7 +381,217 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public void deleteById(long key) throws SQLException {
-        getDeleteStatement(key).executeUpdate();
+        try (ConnectionPool.Lease lease = leaseWriter()) {
+            getDeleteStatement(key).executeUpdate();
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Deletes the objects with the given IDs with one JDBC batch inside a single transaction.
+     *
+     * @param keys the IDs of the objects to delete
+     * @throws SQLException if a database access error occurs; no object is deleted in this case
+     */
+    @Override
+    public void deleteAllById(List<Long> keys) throws SQLException {
+        try {
+            executeInTransaction(() -> executeBatches(keys, this::getDeleteStatement, null));
+        } finally {
+            for (long key : keys) {
+                invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the written object from the cache, if this DAO has one. The write may have failed or been rolled back,
+     * so the object in memory no longer necessarily matches the database.
+     *
+     * @param t the written object
+     */
+    private void invalidate(T t) {
+        if (this.cache != null) {
+            this.cache.invalidateEntity(t);
+        }
+    }
+
+    /**
+     * Removes the object with the given ID from the cache, if this DAO has one.
+     *
+     * @param key the ID of the written object
+     */
+    private void invalidate(long key) {
+        if (this.cache != null) {
+            this.cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Removes the cached list of all objects, if this DAO has a cache, because objects were created.
+     */
+    private void invalidateList() {
+        if (this.cache != null) {
+            this.cache.invalidateList();
+        }
+    }
+
+    /**
+     * Runs the given work inside a transaction on the writer connection. The transaction is committed if the work
+     * completes and rolled back if it throws. If the connection is already inside a transaction, the work simply
+     * joins it and the caller stays responsible for committing.
+     *
+     * @param work the database work to run
+     * @throws SQLException if the work or the transaction handling fails
+     */
+    protected void executeInTransaction(SqlWork work) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseWriter()) {
+            Connection transactionConnection = getConnection();
+            if (!transactionConnection.getAutoCommit()) {
+                work.run();
+                return;
+            }
+            transactionConnection.setAutoCommit(false);
+            try {
+                work.run();
+                transactionConnection.commit();
+            } catch (SQLException | RuntimeException exception) {
+                transactionConnection.rollback();
+                throw exception;
+            } finally {
+                transactionConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Leases a read-only connection from the pool for the current operation. Close the lease when the operation is
+     * done, preferably with try-with-resources. Statements prepared in the meantime use the leased connection. The
+     * operation is measured by the {@link DaoMetrics} until the lease is released.
+     *
+     * @return the lease, or <code>null</code> if this DAO works on a fixed connection
+     * @throws SQLException if no connection can be leased
+     */
+    protected ConnectionPool.Lease leaseReader() throws SQLException {
+        return this.connectionPool == null ? null
+                : DaoMetrics.getInstance().begin(this, this.connectionPool.acquireReader());
+    }
+
+    /**
+     * Leases the writer connection from the pool for the current operation. Close the lease when the operation is
+     * done, preferably with try-with-resources. Statements prepared in the meantime use the leased connection. The
+     * operation is measured by the {@link DaoMetrics} until the lease is released.
+     *
+     * @return the lease, or <code>null</code> if this DAO works on a fixed connection
+     * @throws SQLException if the writer cannot be leased
+     */
+    protected ConnectionPool.Lease leaseWriter() throws SQLException {
+        return this.connectionPool == null ? null
+                : DaoMetrics.getInstance().begin(this, this.connectionPool.acquireWriter());
+    }
+
+    /**
+     * Returns the connection of the current operation: either the fixed connection or the connection leased by the
+     * current thread.
+     *
+     * @return the connection to execute statements on
+     * @throws IllegalStateException if this DAO uses a pool and the current thread holds no lease
+     */
+    protected Connection getConnection() {
+        if (this.connectionPool == null) {
+            return this.connection;
+        }
+        Connection leased = this.connectionPool.currentConnection();
+        if (leased == null) {
+            throw new IllegalStateException("No connection leased, call leaseReader() or leaseWriter() first");
+        }
+        return leased;
+    }
+
+    /**
+     * Adds one statement per element to a JDBC batch and executes the batch. As the statements come from the
+     * statement cache, equal SQL yields the same statement and therefore one batch. Whenever an element needs a
+     * different statement, the pending batch is executed first, so the elements are always executed in order. The
+     * statements are compared without their decoration, so a statement measured by the {@link DaoMetrics} is
+     * recognized as well.
+     *
+     * @param elements the elements to execute statements for
+     * @param factory creates the bound statement for one element
+     * @param listener gets notified after each executed batch, may be <code>null</code>
+     * @throws SQLException if a statement cannot be created or a batch fails
+     */
+    private <E> void executeBatches(List<E> elements, StatementFactory<E> factory, BatchListener listener)
+            throws SQLException {
+        PreparedStatement pending = null;
+        int count = 0;
+        try {
+            for (E element : elements) {
+                PreparedStatement statement = factory.create(element);
+                if (statement == null) {
+                    throw new SQLException("Statement for " + element + " could not be prepared");
+                }
+                if (pending != null
+                        && InstrumentedStatement.unwrap(statement) != InstrumentedStatement.unwrap(pending)) {
+                    executeBatch(pending, count, listener);
+                    count = 0;
+                }
+                pending = statement;
+                statement.addBatch();
+                count++;
+            }
+            if (pending != null) {
+                executeBatch(pending, count, listener);
+            }
+        } catch (SQLException | RuntimeException exception) {
+            // the statement is cached, so a half built batch must not survive into the next use
+            if (pending != null) {
+                pending.clearBatch();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Executes the batch of the given statement and notifies the listener.
+     *
+     * @param statement the statement with a pending batch
+     * @param count the number of statements in the batch
+     * @param listener gets notified after the batch was executed, may be <code>null</code>
+     * @throws SQLException if the batch fails
+     */
+    private void executeBatch(PreparedStatement statement, int count, BatchListener listener) throws SQLException {
+        statement.executeBatch();
+        if (listener != null) {
+            listener.batchExecuted(statement, count);
+        }
+    }
+
+    /**
+     * Returns the ID of the last row inserted on this connection.
+     *
+     * @return the last generated ID
+     * @throws SQLException if a database access error occurs
+     */
+    private long readLastInsertId() throws SQLException {
+        try (ResultSet result = prepareStatement("SELECT last_insert_rowid()").executeQuery()) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Returns a <code>PreparedStatement</code> for the given SQL from the statement cache of the connection. <br>
+     * <br>
+     * The statement is shared with every other caller using the same SQL on this connection, so it must not be
+     * closed by the caller and its parameters have to be set completely before each execution. Its executions are
+     * recorded by the {@link DaoMetrics}.
+     *
+     * @param sql the SQL text of the statement
+     * @return the cached or newly prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    protected PreparedStatement prepareStatement(String sql) throws SQLException {
+        return DaoMetrics.getInstance().prepare(ConnectionBuilder.getStatementCache(getConnection()), sql);
     }
 
     /**
@@ -112,8 +617,17 @@ public abstract class DaoImp<T> implements Dao<T> {
      *
      * @param t the object to insert
      * @return the <code>PreparedStatement</code> used for insertion
+     * @throws SQLException if the object has values that can not be stored
      */
-    protected abstract PreparedStatement getCreateStatement(T t);
+    protected abstract PreparedStatement getCreateStatement(T t) throws SQLException;
+
+    /**
+     * Sets the key the database generated for a newly created object.
+     *
+     * @param t the created object
+     * @param key the generated key
+     */
+    protected abstract void setGeneratedKey(T t, long key);
 
     /**
      * Returns a <code>PreparedStatement</code> for retrieving an object by ID.
@@ -131,12 +645,65 @@ public abstract class DaoImp<T> implements Dao<T> {
     protected abstract PreparedStatement getReadAllStatement();
 
     /**
-     * Returns a <code>PreparedStatement</code> for updating the given object.
+     * Returns a <code>PreparedStatement</code> for updating the given object. DAOs tracking modified fields only
+     * write the columns of these fields.
      *
      * @param t the object to update
      * @return the <code>PreparedStatement</code> used for updating
+     * @throws SQLException if the object has values that can not be stored
+     */
+    protected abstract PreparedStatement getUpdateStatement(T t) throws SQLException;
+
+    /**
+     * Returns whether the given object has changes to write. Objects without changes are skipped by
+     * {@link #update(Object)} and {@link #updateAll(List)}. By default every object is written.
+     *
+     * @param t the object to update
+     * @return <code>true</code> if the object has to be written, <code>false</code> otherwise
      */
-    protected abstract PreparedStatement getUpdateStatement(T t);
+    protected boolean hasChanges(T t) {
+        return true;
+    }
+
+    /**
+     * Called after the statement of {@link #getUpdateStatement(Object)} was executed successfully, e.g. to unmark
+     * the written fields. Does nothing by default.
+     *
+     * @param t the updated object
+     */
+    protected void updated(T t) {
+    }
+
+    /**
+     * Returns the name of the table of this DAO in the change log. By default changes are not tracked.
+     *
+     * @return the name of the table, or <code>null</code> if its changes are not tracked
+     */
+    protected String getChangeTable() {
+        return null;
+    }
+
+    /**
+     * Returns a <code>PreparedStatement</code> for retrieving the objects changed after the given version of the
+     * change log. It selects the same objects as {@link #getReadAllStatement()}, restricted to the rows with a higher
+     * version in the <code>change_log</code> table. Only DAOs tracking changes have to override this method.
+     *
+     * @param version the version after which the objects were changed
+     * @return the <code>PreparedStatement</code> used for selecting the changed entries
+     */
+    protected PreparedStatement getReadChangedStatement(long version) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not track changes");
+    }
+
+    /**
+     * Returns the ID of the given object. Only DAOs tracking changes have to override this method.
+     *
+     * @param t the object
+     * @return the ID of the object
+     */
+    protected long getKey(T t) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not track changes");
+    }
 
     /**
      * Returns a <code>PreparedStatement</code> for deleting an object by ID.
@@ -145,4 +712,95 @@ public abstract class DaoImp<T> implements Dao<T> {
      * @return the <code>PreparedStatement</code> used for deletion
      */
     protected abstract PreparedStatement getDeleteStatement(long key);
+
+    /**
+     * The resources held open by a stream returned by {@link #streamAll(int)}. They are released exactly once, no
+     * matter whether the stream is exhausted, closed or both.
+     */
+    private static class StreamResources {
+        private final ConnectionPool.Lease lease;
+        private final PreparedStatement statement;
+        private final ResultSet result;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private StreamResources(ConnectionPool.Lease lease, PreparedStatement statement, ResultSet result) {
+            this.lease = lease;
+            this.statement = statement;
+            this.result = result;
+        }
+
+        private void close() {
+            if (!this.closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                this.result.close();
+                this.statement.close();
+            } catch (SQLException exception) {
+                throw new UncheckedSQLException(exception);
+            } finally {
+                if (this.lease != null) {
+                    this.lease.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the rows of an open <code>ResultSet</code> one at a time while a stream is consumed.
+     */
+    private class ResultSetSpliterator extends Spliterators.AbstractSpliterator<T> {
+        private final StreamResources resources;
+
+        private ResultSetSpliterator(StreamResources resources) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.resources = resources;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if (this.resources.closed.get() || !this.resources.result.next()) {
+                    // release the cursor as soon as the last row was read, even if the stream is never closed
+                    this.resources.close();
+                    return false;
+                }
+                action.accept(getInstanceFromResultSet(this.resources.result));
+                return true;
+            } catch (SQLException exception) {
+                throw new UncheckedSQLException(exception);
+            }
+        }
+    }
+
+    /**
+     * Database work that is executed by {@link #executeInTransaction(SqlWork)}.
+     */
+    @FunctionalInterface
+    protected interface SqlWork {
+        /**
+         * Runs the database work.
+         *
+         * @throws SQLException if a database access error occurs
+         */
+        void run() throws SQLException;
+    }
+
+    /**
+     * Creates the bound statement for one element of a batch.
+     *
+     * @param <E> Type of the element.
+     */
+    @FunctionalInterface
+    private interface StatementFactory<E> {
+        PreparedStatement create(E element) throws SQLException;
+    }
+
+    /**
+     * Gets notified after a batch was executed.
+     */
+    @FunctionalInterface
+    private interface BatchListener {
+        void batchExecuted(PreparedStatement statement, int count) throws SQLException;
+    }
 }
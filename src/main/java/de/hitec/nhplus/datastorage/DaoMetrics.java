@@ -0,0 +1,336 @@
+package de.hitec.nhplus.datastorage;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Records how often the DAO methods and their SQL statements are called, how many rows they read or write and how
+ * long they take. <br>
+ * <br>
+ * A DAO method is measured from leasing its connection until the connection is released, so the mapping of the rows
+ * is included; nested leases of the same thread belong to the outermost method. Reads answered by an
+ * {@link EntityCache} lease no connection and are not recorded. The statements prepared by {@link DaoImp} are
+ * decorated by an {@link InstrumentedStatement}, which measures every execution until its <code>ResultSet</code> is
+ * read completely or closed. The rows of a method are the rows of its statements. The same decorator passes slow
+ * statements to the {@link SlowQueryLog}. <br>
+ * <br>
+ * The latencies are counted in histograms with fixed buckets, so recording takes constant time and memory. The
+ * statistics are available as the MXBean <code>de.hitec.nhplus:type=DaoMetrics</code> after {@link #register()} and
+ * can be written to the log with {@link #dumpToLog()}. Recording walks the stack once per DAO method to name it, so
+ * it is off by default and switched on with the system property <code>nhplus.dao.metrics=true</code> or at runtime,
+ * e.g. with JConsole. All methods are thread-safe.
+ */
+public class DaoMetrics implements DaoMetricsMXBean {
+
+    /**
+     * The name the MXBean is registered with.
+     */
+    public static final String OBJECT_NAME = "de.hitec.nhplus:type=DaoMetrics";
+
+    /**
+     * The upper bounds of the latency buckets in milliseconds.
+     */
+    private static final double[] BUCKET_BOUNDS_MILLIS = {0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500,
+            1_000, 2_500, 5_000};
+
+    private static final DaoMetrics INSTANCE = new DaoMetrics();
+
+    private static final Logger LOGGER = Logger.getLogger(DaoMetrics.class.getName());
+
+    private static final StackWalker STACK_WALKER =
+            StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private volatile boolean enabled = Boolean.parseBoolean(System.getProperty("nhplus.dao.metrics", "false"));
+
+    private final Map<String, Recorder> methods = new ConcurrentHashMap<>();
+    private final Map<String, Recorder> statements = new ConcurrentHashMap<>();
+
+    /**
+     * The DAO method running on the current thread.
+     */
+    private final ThreadLocal<Invocation> currentInvocation = new ThreadLocal<>();
+
+    /**
+     * Private constructor, use {@link #getInstance()}.
+     */
+    private DaoMetrics() {
+    }
+
+    /**
+     * Returns the metrics recorded by all DAOs.
+     *
+     * @return the single instance
+     */
+    public static DaoMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, unless they are registered already.
+     *
+     * @throws JMException if the MXBean cannot be registered
+     */
+    public static synchronized void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(INSTANCE, name);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public List<OperationStatistics> getMethodStatistics() {
+        return snapshot(this.methods);
+    }
+
+    @Override
+    public List<OperationStatistics> getStatementStatistics() {
+        return snapshot(this.statements);
+    }
+
+    @Override
+    public double[] getLatencyBucketsMillis() {
+        return BUCKET_BOUNDS_MILLIS.clone();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder builder = new StringBuilder("DAO-Methoden:\n");
+        for (OperationStatistics statistics : getMethodStatistics()) {
+            builder.append(statistics).append('\n');
+        }
+        builder.append("SQL-Anweisungen:\n");
+        for (OperationStatistics statistics : getStatementStatistics()) {
+            builder.append(statistics).append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void dumpToLog() {
+        LOGGER.info(dump());
+    }
+
+    @Override
+    public void reset() {
+        this.methods.clear();
+        this.statements.clear();
+    }
+
+    /**
+     * Starts measuring a DAO method if the given lease was just acquired by the method and no other method is
+     * running on the current thread. The method is measured until the lease is released.
+     *
+     * @param dao the DAO leasing the connection
+     * @param lease the new lease, may be <code>null</code>
+     * @return the given lease
+     */
+    ConnectionPool.Lease begin(DaoImp<?> dao, ConnectionPool.Lease lease) {
+        if (!this.enabled || lease == null || !lease.isFirstHold()) {
+            return lease;
+        }
+        Invocation running = this.currentInvocation.get();
+        if (running != null && !running.finished) {
+            return lease;
+        }
+        Invocation invocation = new Invocation(findMethod(dao), System.nanoTime());
+        this.currentInvocation.set(invocation);
+        lease.setReleaseAction(() -> finish(invocation));
+        return lease;
+    }
+
+    /**
+     * Returns the cached statement for the given SQL, decorated to measure its executions if recording or the
+     * {@link SlowQueryLog} is on. The decorated statement is kept in the cache, so equal SQL always yields the same
+     * object.
+     *
+     * @param cache the statement cache of the connection
+     * @param sql the SQL of the statement
+     * @return the decorated statement, or the plain one if both are off
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(StatementCache cache, String sql) throws SQLException {
+        SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+        if (!this.enabled && !slowQueryLog.isEnabled()) {
+            return cache.prepare(sql);
+        }
+        return cache.prepare(sql, statement -> InstrumentedStatement.wrap(statement, sql, this, slowQueryLog));
+    }
+
+    /**
+     * Returns the name of the DAO method running on the current thread. If the method is not measured, the stack is
+     * searched for it; methods inherited from <code>DaoImp</code> are then named after <code>DaoImp</code>.
+     *
+     * @return the name of the method, or <code>null</code> if no DAO method is running
+     */
+    String getCurrentMethod() {
+        Invocation invocation = this.currentInvocation.get();
+        return invocation != null && !invocation.finished ? invocation.method : findMethod(null);
+    }
+
+    /**
+     * Records an execution of a statement and adds its rows to the DAO method running on the current thread, if
+     * recording is on.
+     *
+     * @param sql the SQL of the statement
+     * @param nanos the time of the execution in nanoseconds
+     * @param rows the number of rows read or written
+     * @param failed <code>true</code> if the execution threw an exception
+     */
+    void recordStatement(String sql, long nanos, long rows, boolean failed) {
+        if (!this.enabled) {
+            return;
+        }
+        this.statements.computeIfAbsent(sql, key -> new Recorder()).record(nanos, rows, failed);
+        Invocation invocation = this.currentInvocation.get();
+        if (invocation != null && !invocation.finished) {
+            invocation.rows += rows;
+            invocation.failed |= failed;
+        }
+    }
+
+    /**
+     * Records a finished DAO method.
+     *
+     * @param invocation the finished call
+     */
+    private void finish(Invocation invocation) {
+        invocation.finished = true;
+        this.methods.computeIfAbsent(invocation.method, key -> new Recorder())
+                .record(System.nanoTime() - invocation.start, invocation.rows, invocation.failed);
+    }
+
+    /**
+     * Returns the name of the outermost DAO method on the stack of the current thread, e.g.
+     * <code>TreatmentDao.readPage</code>. The search passes helpers of this package like the {@link EntityCache} and
+     * stops at the first caller outside of it. Methods inherited from <code>DaoImp</code> are named after the class of
+     * the given DAO.
+     *
+     * @param dao the DAO leasing the connection, <code>null</code> if it is unknown
+     * @return the name of the DAO method, or <code>null</code> if there is none and no DAO is given
+     */
+    private static String findMethod(DaoImp<?> dao) {
+        return STACK_WALKER.walk(frames -> {
+            String method = null;
+            for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+                Class<?> declaringClass = frame.getDeclaringClass();
+                if (DaoImp.class.isAssignableFrom(declaringClass)) {
+                    if (!frame.getMethodName().startsWith("lambda$")) {
+                        Class<?> owner = declaringClass == DaoImp.class && dao != null ? dao.getClass()
+                                : declaringClass;
+                        method = owner.getSimpleName() + "." + frame.getMethodName();
+                    }
+                } else if (method != null && declaringClass.getPackage() != DaoImp.class.getPackage()) {
+                    break;
+                }
+            }
+            return method == null && dao != null ? dao.getClass().getSimpleName() : method;
+        });
+    }
+
+    /**
+     * Returns the statistics of all recorders, the most time-consuming first.
+     */
+    private static List<OperationStatistics> snapshot(Map<String, Recorder> recorders) {
+        List<OperationStatistics> result = new ArrayList<>();
+        recorders.forEach((name, recorder) -> result.add(recorder.snapshot(name)));
+        result.sort(Comparator.comparingDouble(OperationStatistics::getTotalMillis).reversed());
+        return result;
+    }
+
+    /**
+     * A running call of a DAO method. Only its thread adds rows; it is finished by the release of its lease.
+     */
+    private static class Invocation {
+        private final String method;
+        private final long start;
+        private long rows;
+        private boolean failed;
+        private volatile boolean finished;
+
+        private Invocation(String method, long start) {
+            this.method = method;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Collects the calls of one DAO method or SQL statement.
+     */
+    private static class Recorder {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+        private void record(long nanos, long rowCount, boolean failed) {
+            this.calls.increment();
+            if (failed) {
+                this.failures.increment();
+            }
+            this.rows.add(rowCount);
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+            double millis = nanos / 1_000_000.0;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            this.buckets.incrementAndGet(bucket);
+        }
+
+        private OperationStatistics snapshot(String name) {
+            long[] histogram = new long[this.buckets.length()];
+            long count = 0;
+            for (int bucket = 0; bucket < histogram.length; bucket++) {
+                histogram[bucket] = this.buckets.get(bucket);
+                count += histogram[bucket];
+            }
+            double maxMillis = this.maxNanos.get() / 1_000_000.0;
+            return new OperationStatistics(name, this.calls.sum(), this.failures.sum(), this.rows.sum(),
+                    this.totalNanos.sum() / 1_000_000.0, maxMillis, percentile(histogram, count, 0.5, maxMillis),
+                    percentile(histogram, count, 0.95, maxMillis), percentile(histogram, count, 0.99, maxMillis),
+                    histogram);
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket it falls into, at most the maximum.
+         */
+        private static double percentile(long[] histogram, long count, double quantile, double maxMillis) {
+            long rank = (long) Math.ceil(count * quantile);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++) {
+                seen += histogram[bucket];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(BUCKET_BOUNDS_MILLIS[bucket], maxMillis);
+                }
+            }
+            return maxMillis;
+        }
+    }
+}
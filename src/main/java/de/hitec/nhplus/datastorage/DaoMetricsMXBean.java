@@ -0,0 +1,63 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.List;
+
+/**
+ * The management interface of the {@link DaoMetrics}, registered as
+ * <code>de.hitec.nhplus:type=DaoMetrics</code>, e.g. to watch it with JConsole or VisualVM.
+ */
+public interface DaoMetricsMXBean {
+
+    /**
+     * Returns whether calls are recorded.
+     *
+     * @return <code>true</code> if calls are recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * Switches the recording on or off. The recorded statistics are kept.
+     *
+     * @param enabled <code>true</code> to record calls
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the statistics of every DAO method called so far, the most time-consuming first.
+     *
+     * @return the statistics per DAO method
+     */
+    List<OperationStatistics> getMethodStatistics();
+
+    /**
+     * Returns the statistics of every SQL statement executed so far, the most time-consuming first.
+     *
+     * @return the statistics per SQL statement
+     */
+    List<OperationStatistics> getStatementStatistics();
+
+    /**
+     * Returns the upper bounds of the latency buckets of the histograms. The histograms have one more bucket
+     * counting all slower calls.
+     *
+     * @return the upper bounds in milliseconds, ascending
+     */
+    double[] getLatencyBucketsMillis();
+
+    /**
+     * Returns all statistics as text, one line per DAO method and SQL statement.
+     *
+     * @return the statistics as text
+     */
+    String dump();
+
+    /**
+     * Writes all statistics to the log.
+     */
+    void dumpToLog();
+
+    /**
+     * Discards all recorded statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,402 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded read-through cache of entities, keyed by their ID. <br>
+ * <br>
+ * DAOs holding a cache ask it before reading an entity; only misses are read from the database. The cache also keeps
+ * the result of the last read of all entities, as long as none of them was evicted or invalidated. Every entity is
+ * weighed with an estimate of its size in bytes; once the total weight exceeds the maximum, the least recently used
+ * entities are evicted. <br>
+ * <br>
+ * Cached entities are shared between all callers. DAOs invalidate an entity after writing it, whether the write
+ * succeeded or not, so the next read returns the stored state. Reads that started before an invalidation are not
+ * put into the cache, because they may have seen the former state. All methods are thread-safe.
+ *
+ * @param <T> Type of the entity.
+ */
+public class EntityCache<T> {
+
+    /**
+     * The default maximum weight of all cached entities in bytes. It can be overridden with the system property
+     * <code>nhplus.cache.maxBytes</code>.
+     */
+    public static final long DEFAULT_MAX_WEIGHT = Long.getLong("nhplus.cache.maxBytes", 1024 * 1024);
+
+    /**
+     * The estimated size of an entity object without its strings in bytes.
+     */
+    private static final int OBJECT_WEIGHT = 64;
+
+    /**
+     * The estimated size of a string object without its characters in bytes.
+     */
+    private static final int STRING_WEIGHT = 40;
+
+    /**
+     * Reads one entity from the database on a cache miss.
+     *
+     * @param <T> Type of the entity.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        /**
+         * Reads the entity with the given ID.
+         *
+         * @param key the ID of the entity
+         * @return the entity, or <code>null</code> if there is none
+         * @throws SQLException if a database access error occurs
+         */
+        T load(long key) throws SQLException;
+    }
+
+    /**
+     * Reads all entities from the database on a cache miss.
+     *
+     * @param <T> Type of the entity.
+     */
+    @FunctionalInterface
+    public interface ListLoader<T> {
+        /**
+         * Reads all entities.
+         *
+         * @return all entities
+         * @throws SQLException if a database access error occurs
+         */
+        List<T> loadAll() throws SQLException;
+    }
+
+    private final String name;
+    private final ToLongFunction<T> keyExtractor;
+    private final ToIntFunction<T> weigher;
+    private final long maxWeight;
+
+    /**
+     * The cached entities in access order, the eldest entry is evicted first.
+     */
+    private final Map<Long, Entry<T>> entities = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The keys of the last read of all entities in their order, <code>null</code> if it is not cached.
+     */
+    private List<Long> allKeys;
+
+    /**
+     * Incremented by every invalidation, so reads started before are recognized.
+     */
+    private long generation;
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Constructs a new cache with the {@link #DEFAULT_MAX_WEIGHT default maximum weight}.
+     *
+     * @param name the name of the cache, used in its statistics
+     * @param keyExtractor returns the ID of an entity
+     * @param weigher returns the estimated size of an entity in bytes
+     */
+    public EntityCache(String name, ToLongFunction<T> keyExtractor, ToIntFunction<T> weigher) {
+        this(name, keyExtractor, weigher, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Constructs a new cache.
+     *
+     * @param name the name of the cache, used in its statistics
+     * @param keyExtractor returns the ID of an entity
+     * @param weigher returns the estimated size of an entity in bytes
+     * @param maxWeight the maximum weight of all cached entities in bytes
+     */
+    public EntityCache(String name, ToLongFunction<T> keyExtractor, ToIntFunction<T> weigher, long maxWeight) {
+        this.name = name;
+        this.keyExtractor = keyExtractor;
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the estimated size in bytes of an entity consisting of the given strings and some primitive fields.
+     *
+     * @param values the string fields of the entity, may contain <code>null</code>
+     * @return the estimated size of the entity
+     */
+    public static int estimateWeight(String... values) {
+        int weight = OBJECT_WEIGHT;
+        for (String value : values) {
+            if (value != null) {
+                weight += STRING_WEIGHT + value.length() * 2;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the cached entity with the given ID, reading and caching it with the loader on a miss.
+     *
+     * @param key the ID of the entity
+     * @param loader reads the entity from the database
+     * @return the entity, or <code>null</code> if there is none
+     * @throws SQLException if the entity has to be read and a database access error occurs
+     */
+    public T get(long key, Loader<T> loader) throws SQLException {
+        long readGeneration;
+        synchronized (this) {
+            Entry<T> entry = this.entities.get(key);
+            if (entry != null) {
+                this.hits++;
+                return entry.entity();
+            }
+            this.misses++;
+            readGeneration = this.generation;
+        }
+        T entity = loader.load(key);
+        if (entity != null) {
+            synchronized (this) {
+                if (readGeneration == this.generation) {
+                    store(key, entity);
+                    evict();
+                }
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Returns all entities of the last read of all entities, reading and caching them with the loader if this read is
+     * not cached or one of its entities is no longer cached.
+     *
+     * @param loader reads all entities from the database
+     * @return a new list with all entities
+     * @throws SQLException if the entities have to be read and a database access error occurs
+     */
+    public List<T> getAll(ListLoader<T> loader) throws SQLException {
+        long readGeneration;
+        synchronized (this) {
+            List<T> cached = readAllKeys();
+            if (cached != null) {
+                this.hits++;
+                return cached;
+            }
+            this.misses++;
+            readGeneration = this.generation;
+        }
+        List<T> list = loader.loadAll();
+        synchronized (this) {
+            if (readGeneration == this.generation) {
+                List<Long> keys = new ArrayList<>(list.size());
+                for (T entity : list) {
+                    long key = this.keyExtractor.applyAsLong(entity);
+                    store(key, entity);
+                    keys.add(key);
+                }
+                this.allKeys = keys;
+                evict();
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Removes the entity with the given ID and the cached read of all entities.
+     *
+     * @param key the ID of the entity
+     */
+    public synchronized void invalidate(long key) {
+        Entry<T> entry = this.entities.remove(key);
+        if (entry != null) {
+            this.weight -= entry.weight();
+        }
+        this.allKeys = null;
+        this.generation++;
+        this.invalidations++;
+    }
+
+    /**
+     * Removes the given entity and the cached read of all entities.
+     *
+     * @param entity the entity to remove
+     */
+    public void invalidateEntity(T entity) {
+        invalidate(this.keyExtractor.applyAsLong(entity));
+    }
+
+    /**
+     * Removes only the cached read of all entities, e.g. after an entity was created.
+     */
+    public synchronized void invalidateList() {
+        this.allKeys = null;
+        this.generation++;
+        this.invalidations++;
+    }
+
+    /**
+     * Removes all entities. The counters are kept.
+     */
+    public synchronized void clear() {
+        this.entities.clear();
+        this.allKeys = null;
+        this.weight = 0;
+        this.generation++;
+    }
+
+    /**
+     * Returns the number of currently cached entities.
+     *
+     * @return the number of cached entities
+     */
+    public synchronized int size() {
+        return this.entities.size();
+    }
+
+    /**
+     * Returns the estimated size of all cached entities in bytes.
+     *
+     * @return the weight of the cache
+     */
+    public synchronized long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Returns the maximum estimated size of all cached entities in bytes.
+     *
+     * @return the maximum weight of the cache
+     */
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    /**
+     * Returns how often a requested entity or list was already cached.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns how often a requested entity or list had to be read from the database.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the share of requests answered from the cache.
+     *
+     * @return the hit rate between <code>0</code> and <code>1</code>, <code>0</code> if nothing was requested yet
+     */
+    public synchronized double getHitRate() {
+        long requests = this.hits + this.misses;
+        return requests == 0 ? 0 : (double) this.hits / requests;
+    }
+
+    /**
+     * Returns how often an entity was removed because the cache was full.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns how often cached data was invalidated by a write.
+     *
+     * @return the number of invalidations
+     */
+    public synchronized long getInvalidationCount() {
+        return this.invalidations;
+    }
+
+    /**
+     * Returns a short summary of the cache statistics.
+     *
+     * @return the statistics as string
+     */
+    @Override
+    public synchronized String toString() {
+        return "EntityCache " + this.name + "\nSize: " + this.entities.size() +
+                " (" + this.weight + "/" + this.maxWeight + " bytes)" +
+                "\nHits: " + this.hits +
+                "\nMisses: " + this.misses +
+                "\nHit rate: " + String.format("%.1f", getHitRate() * 100) + " %" +
+                "\nEvictions: " + this.evictions +
+                "\nInvalidations: " + this.invalidations +
+                "\n";
+    }
+
+    /**
+     * Returns the entities of the cached read of all entities, if all of them are still cached.
+     *
+     * @return a new list with the entities, or <code>null</code> if the read is not cached
+     */
+    private List<T> readAllKeys() {
+        if (this.allKeys == null) {
+            return null;
+        }
+        List<T> list = new ArrayList<>(this.allKeys.size());
+        for (Long key : this.allKeys) {
+            Entry<T> entry = this.entities.get(key);
+            if (entry == null) {
+                this.allKeys = null;
+                return null;
+            }
+            list.add(entry.entity());
+        }
+        return list;
+    }
+
+    /**
+     * Puts the entity into the cache, replacing a cached entity with the same ID. The entity is weighed once, so
+     * later modifications of the entity do not change the weight of the cache.
+     *
+     * @param key the ID of the entity
+     * @param entity the entity to cache
+     */
+    private void store(long key, T entity) {
+        Entry<T> entry = new Entry<>(entity, this.weigher.applyAsInt(entity));
+        Entry<T> former = this.entities.put(key, entry);
+        if (former != null) {
+            this.weight -= former.weight();
+        }
+        this.weight += entry.weight();
+    }
+
+    /**
+     * Removes the least recently used entities until the weight does not exceed the maximum.
+     */
+    private void evict() {
+        Iterator<Entry<T>> iterator = this.entities.values().iterator();
+        while (this.weight > this.maxWeight && iterator.hasNext()) {
+            this.weight -= iterator.next().weight();
+            iterator.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * A cached entity together with its weight when it was cached.
+     *
+     * @param entity the cached entity
+     * @param weight the estimated size of the entity in bytes
+     * @param <T> Type of the entity.
+     */
+    private record Entry<T>(T entity, int weight) {
+    }
+}
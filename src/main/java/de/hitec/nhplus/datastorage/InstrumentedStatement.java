@@ -0,0 +1,231 @@
+package de.hitec.nhplus.datastorage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decorates a <code>PreparedStatement</code> to record its executions in the {@link DaoMetrics} and the
+ * {@link SlowQueryLog}. <br>
+ * <br>
+ * Updates and batches are measured until they return, with the number of changed rows. Queries are measured until
+ * their <code>ResultSet</code> is read completely or closed, with the number of rows read, so the time the DAO spends
+ * on mapping the rows is included. The parameters set on the statement are kept for the slow-query log, and every
+ * execution is checked by its strict mode first. All other calls are passed to the statement unchanged.
+ */
+class InstrumentedStatement implements InvocationHandler {
+
+    private final PreparedStatement statement;
+    private final String sql;
+    private final DaoMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
+
+    /**
+     * The parameters set on the statement by their index.
+     */
+    private final Map<Integer, Object> parameters = new TreeMap<>();
+
+    private InstrumentedStatement(PreparedStatement statement, String sql, DaoMetrics metrics,
+                                  SlowQueryLog slowQueryLog) {
+        this.statement = statement;
+        this.sql = sql;
+        this.metrics = metrics;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * Decorates the given statement.
+     *
+     * @param statement the statement to decorate
+     * @param sql the SQL of the statement
+     * @param metrics the metrics to record the executions in
+     * @param slowQueryLog the log to pass slow executions to
+     * @return the decorated statement
+     */
+    static PreparedStatement wrap(PreparedStatement statement, String sql, DaoMetrics metrics,
+                                  SlowQueryLog slowQueryLog) {
+        return (PreparedStatement) Proxy.newProxyInstance(InstrumentedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new InstrumentedStatement(statement, sql, metrics, slowQueryLog));
+    }
+
+    /**
+     * Returns the statement decorated by the given one, e.g. to find it in the {@link StatementCache}.
+     *
+     * @param statement a decorated or plain statement
+     * @return the plain statement
+     */
+    static PreparedStatement unwrap(PreparedStatement statement) {
+        if (statement != null && Proxy.isProxyClass(statement.getClass())
+                && Proxy.getInvocationHandler(statement) instanceof InstrumentedStatement instrumented) {
+            return instrumented.statement;
+        }
+        return statement;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "executeQuery":
+                return executeQuery(method, args);
+            case "executeUpdate":
+            case "executeLargeUpdate":
+            case "execute":
+            case "executeBatch":
+            case "executeLargeBatch":
+                return executeUpdate(method, args);
+            case "clearParameters":
+                this.parameters.clear();
+                return call(this.statement, method, args);
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                if (method.getName().startsWith("set") && args != null && args.length >= 2
+                        && args[0] instanceof Integer index) {
+                    this.parameters.put(index, method.getName().equals("setNull") ? null : args[1]);
+                }
+                return call(this.statement, method, args);
+        }
+    }
+
+    /**
+     * Executes a query and decorates its result to record the execution when the result is read.
+     */
+    private Object executeQuery(Method method, Object[] args) throws Throwable {
+        this.slowQueryLog.checkPlan(this.statement.getConnection(), this.sql);
+        long start = System.nanoTime();
+        ResultSet result;
+        try {
+            result = (ResultSet) call(this.statement, method, args);
+        } catch (Throwable exception) {
+            this.metrics.recordStatement(this.sql, System.nanoTime() - start, 0, true);
+            throw exception;
+        }
+        return Proxy.newProxyInstance(InstrumentedStatement.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new InstrumentedResult(result, start));
+    }
+
+    /**
+     * Executes an update, a batch or a statement of unknown kind and records it with the number of changed rows.
+     */
+    private Object executeUpdate(Method method, Object[] args) throws Throwable {
+        this.slowQueryLog.checkPlan(this.statement.getConnection(), this.sql);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call(this.statement, method, args);
+        } catch (Throwable exception) {
+            this.metrics.recordStatement(this.sql, System.nanoTime() - start, 0, true);
+            throw exception;
+        }
+        long nanos = System.nanoTime() - start;
+        record(nanos, countRows(result));
+        return result;
+    }
+
+    /**
+     * Records a successful execution in the metrics and the slow-query log.
+     */
+    private void record(long nanos, long rows) throws Exception {
+        this.metrics.recordStatement(this.sql, nanos, rows, false);
+        this.slowQueryLog.record(this.statement.getConnection(), this.sql, this.parameters, nanos, rows);
+    }
+
+    /**
+     * Returns the number of rows changed according to the result of an execution.
+     */
+    private long countRows(Object result) throws Exception {
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else if (result instanceof Number count) {
+            rows = Math.max(count.longValue(), 0);
+        } else if (Boolean.FALSE.equals(result)) {
+            rows = Math.max(this.statement.getUpdateCount(), 0);
+        }
+        return rows;
+    }
+
+    /**
+     * Calls the method on the target and throws the exception of the method itself instead of its wrapper.
+     */
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Decorates the <code>ResultSet</code> of a query to count the rows read and to record the query once, when the
+     * last row was read or the result is closed.
+     */
+    private class InstrumentedResult implements InvocationHandler {
+        private final ResultSet result;
+        private final long start;
+        private long rows;
+        private boolean recorded;
+
+        private InstrumentedResult(ResultSet result, long start) {
+            this.result = result;
+            this.start = start;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    boolean hasRow;
+                    try {
+                        hasRow = (Boolean) call(this.result, method, args);
+                    } catch (Throwable exception) {
+                        record(true);
+                        throw exception;
+                    }
+                    if (hasRow) {
+                        this.rows++;
+                    } else {
+                        record(false);
+                    }
+                    return hasRow;
+                }
+                case "close":
+                    record(false);
+                    return call(this.result, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return call(this.result, method, args);
+            }
+        }
+
+        private void record(boolean failed) throws Exception {
+            if (!this.recorded) {
+                this.recorded = true;
+                long nanos = System.nanoTime() - this.start;
+                if (failed) {
+                    InstrumentedStatement.this.metrics.recordStatement(InstrumentedStatement.this.sql, nanos,
+                            this.rows, true);
+                } else {
+                    InstrumentedStatement.this.record(nanos, this.rows);
+                }
+            }
+        }
+    }
+}
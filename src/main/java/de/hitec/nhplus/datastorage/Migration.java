@@ -0,0 +1,65 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.List;
+
+/**
+ * One versioned change of the database schema. <br>
+ * <br>
+ * A migration consists of SQL statements that are applied together in a single transaction by the
+ * {@link SchemaMigrator}. Once applied, its version is recorded in the <code>schema_version</code> table, so it is
+ * never applied twice.
+ */
+public class Migration {
+
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    /**
+     * Constructs a new migration.
+     *
+     * @param version the schema version this migration leads to, must be positive
+     * @param description a short description of the change
+     * @param statements the SQL statements to execute in the given order
+     */
+    public Migration(int version, String description, String... statements) {
+        if (version <= 0) {
+            throw new IllegalArgumentException("version must be positive: " + version);
+        }
+        this.version = version;
+        this.description = description;
+        this.statements = List.of(statements);
+    }
+
+    /**
+     * Returns the schema version this migration leads to.
+     *
+     * @return the version of the migration
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the short description of the change.
+     *
+     * @return the description of the migration
+     */
+    public String getDescription() {
+        return this.description;
+    }
+
+    /**
+     * Returns the SQL statements of this migration.
+     *
+     * @return an unmodifiable list of the SQL statements
+     */
+    public List<String> getStatements() {
+        return this.statements;
+    }
+
+    @Override
+    public String toString() {
+        return "V" + this.version + " " + this.description;
+    }
+}
@@ -0,0 +1,112 @@
+package de.hitec.nhplus.datastorage;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * The statistics of one DAO method or SQL statement recorded by the {@link DaoMetrics}, as of the time they were
+ * requested. <br>
+ * <br>
+ * The latencies are counted in the buckets of {@link DaoMetrics#getLatencyBucketsMillis()}; the percentiles are
+ * estimated from the buckets, so they are the upper bound of the bucket the percentile falls into.
+ */
+public class OperationStatistics {
+
+    private final String name;
+    private final long calls;
+    private final long failures;
+    private final long rows;
+    private final double totalMillis;
+    private final double maxMillis;
+    private final double medianMillis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final long[] histogram;
+
+    /**
+     * Constructs new statistics.
+     *
+     * @param name the DAO method or the SQL of the statement
+     * @param calls the number of calls
+     * @param failures the number of calls that threw an exception
+     * @param rows the number of rows read or written
+     * @param totalMillis the time of all calls in milliseconds
+     * @param maxMillis the time of the slowest call in milliseconds
+     * @param medianMillis the estimated median time in milliseconds
+     * @param p95Millis the estimated 95th percentile in milliseconds
+     * @param p99Millis the estimated 99th percentile in milliseconds
+     * @param histogram the number of calls per latency bucket, the last one counting all slower calls
+     */
+    @ConstructorParameters({"name", "calls", "failures", "rows", "totalMillis", "maxMillis", "medianMillis",
+            "p95Millis", "p99Millis", "histogram"})
+    public OperationStatistics(String name, long calls, long failures, long rows, double totalMillis,
+                               double maxMillis, double medianMillis, double p95Millis, double p99Millis,
+                               long[] histogram) {
+        this.name = name;
+        this.calls = calls;
+        this.failures = failures;
+        this.rows = rows;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.medianMillis = medianMillis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+        this.histogram = histogram.clone();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCalls() {
+        return this.calls;
+    }
+
+    public long getFailures() {
+        return this.failures;
+    }
+
+    public long getRows() {
+        return this.rows;
+    }
+
+    public double getTotalMillis() {
+        return this.totalMillis;
+    }
+
+    /**
+     * Returns the average time of a call.
+     *
+     * @return the average time in milliseconds, <code>0</code> without calls
+     */
+    public double getMeanMillis() {
+        return this.calls == 0 ? 0 : this.totalMillis / this.calls;
+    }
+
+    public double getMaxMillis() {
+        return this.maxMillis;
+    }
+
+    public double getMedianMillis() {
+        return this.medianMillis;
+    }
+
+    public double getP95Millis() {
+        return this.p95Millis;
+    }
+
+    public double getP99Millis() {
+        return this.p99Millis;
+    }
+
+    public long[] getHistogram() {
+        return this.histogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%8d Aufrufe %9d Zeilen  Summe %10.1f ms  Ø %8.3f ms  Median %8.3f ms  p95 %8.3f ms  "
+                        + "p99 %8.3f ms  max %8.3f ms%s  %s", this.calls, this.rows, this.totalMillis,
+                getMeanMillis(), this.medianMillis, this.p95Millis, this.p99Millis, this.maxMillis,
+                this.failures == 0 ? "" : "  Fehler " + this.failures, this.name);
+    }
+}
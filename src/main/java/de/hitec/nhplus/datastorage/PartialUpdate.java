@@ -0,0 +1,67 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds an <code>UPDATE</code> statement for only the modified columns of one row. <br>
+ * <br>
+ * Columns are added in a fixed order per DAO, so the same set of modified columns always leads to the same SQL text
+ * and the statement is taken from the {@link StatementCache}.
+ */
+class PartialUpdate {
+
+    private final String table;
+    private final List<String> columns = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+
+    /**
+     * Constructs a new, empty update of the given table.
+     *
+     * @param table the name of the table
+     */
+    PartialUpdate(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Adds a column to write, if it was modified.
+     *
+     * @param modified whether the column was modified
+     * @param column the name of the column
+     * @param value the new value of the column
+     * @return this update
+     */
+    PartialUpdate set(boolean modified, String column, Object value) {
+        if (modified) {
+            this.columns.add(column);
+            this.values.add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Prepares the update of the row with the given key and binds the values of the added columns.
+     *
+     * @param dao the DAO preparing the statement on the connection of its current operation
+     * @param keyColumn the name of the key column
+     * @param key the key of the row to update
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(DaoImp<?> dao, String keyColumn, long key) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(this.table).append(" SET ");
+        for (int index = 0; index < this.columns.size(); index++) {
+            sql.append(index == 0 ? "" : ", ").append(this.columns.get(index)).append(" = ?");
+        }
+        sql.append(" WHERE ").append(keyColumn).append(" = ?");
+        PreparedStatement statement = dao.prepareStatement(sql.toString());
+        for (int index = 0; index < this.values.size(); index++) {
+            statement.setObject(index + 1, this.values.get(index));
+        }
+        statement.setLong(this.values.size() + 1, key);
+        return statement;
+    }
+}
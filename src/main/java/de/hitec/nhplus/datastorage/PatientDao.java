@@ -1,11 +1,14 @@
 package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Person;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
@@ -22,30 +25,65 @@ public class PatientDao extends DaoImp<Patient> {
         super(connection);
     }
 
+    /**
+     * The constructor initiates an object of <code>PatientDao</code> that leases a connection from the given pool for
+     * every operation.
+     *
+     * @param connectionPool Object of <code>ConnectionPool</code> to lease the connections from.
+     */
+    public PatientDao(ConnectionPool connectionPool) {
+        super(connectionPool);
+    }
+
+    /**
+     * The constructor initiates an object of <code>PatientDao</code> that leases a connection from the given pool for
+     * every operation and reads patients through the given cache.
+     *
+     * @param connectionPool Object of <code>ConnectionPool</code> to lease the connections from.
+     * @param cache Object of <code>EntityCache</code> shared by all DAOs of patients.
+     */
+    public PatientDao(ConnectionPool connectionPool, EntityCache<Patient> cache) {
+        super(connectionPool, cache);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to persist the given object of <code>Patient</code>.
      *
      * @param patient Object of <code>Patient</code> to persist.
      * @return <code>PreparedStatement</code> to insert the given patient.
+     * @throws SQLException if the date of birth of the patient is not a valid date.
      */
     @Override
-    protected PreparedStatement getCreateStatement(Patient patient) {
+    protected PreparedStatement getCreateStatement(Patient patient) throws SQLException {
+        long birthEpochDay = parseDateOfBirth(patient.getDateOfBirth()).toEpochDay();
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber) " +
-                    "VALUES (?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            final String SQL = "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber, " +
+                    "birth_epoch_day) VALUES (?, ?, ?, ?, ?, ?)";
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setString(1, patient.getFirstName());
             preparedStatement.setString(2, patient.getSurname());
             preparedStatement.setString(3, patient.getDateOfBirth());
             preparedStatement.setString(4, patient.getCareLevel());
             preparedStatement.setString(5, patient.getRoomNumber());
+            preparedStatement.setLong(6, birthEpochDay);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
         return preparedStatement;
     }
 
+    /**
+     * Sets the patient id generated for a newly created <code>Patient</code>.
+     *
+     * @param patient Object of <code>Patient</code> that was persisted.
+     * @param key Generated id of the patient.
+     */
+    @Override
+    protected void setGeneratedKey(Patient patient, long key) {
+        patient.setPid(key);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query a patient by a given patient id (pid).
      *
@@ -57,7 +95,7 @@ public class PatientDao extends DaoImp<Patient> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -66,20 +104,44 @@ public class PatientDao extends DaoImp<Patient> {
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one patient to an object of <code>Patient</code>.
+     * Maps a <code>ResultSet</code> of one patient to an object of <code>Patient</code>. The date of birth is read
+     * from the numeric column <code>birth_epoch_day</code>, or parsed from the column <code>dateOfBirth</code> if the
+     * numeric column is empty.
      *
      * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Patient</code>.
      * @return Object of class <code>Patient</code> with the data from the resultSet.
      */
     @Override
     protected Patient getInstanceFromResultSet(ResultSet result) throws SQLException {
+        long birthEpochDay = result.getLong("birth_epoch_day");
+        LocalDate dateOfBirth = result.wasNull()
+                ? parseDateOfBirth(result.getString("dateOfBirth")) : LocalDate.ofEpochDay(birthEpochDay);
         return new Patient(
-                result.getInt(1),
-                result.getString(2),
-                result.getString(3),
-                DateConverter.convertStringToLocalDate(result.getString(4)),
-                result.getString(5),
-                result.getString(6));
+                result.getLong("pid"),
+                result.getString("firstname"),
+                result.getString("surname"),
+                dateOfBirth,
+                result.getString("carelevel"),
+                result.getString("roomnumber"));
+    }
+
+    /**
+     * Parses the date of birth of a patient.
+     *
+     * @param dateOfBirth Date of birth in the format <code>yyyy-MM-dd</code>.
+     * @return The parsed date.
+     * @throws SQLException if the date of birth is missing or not a valid date, so the operation fails like any
+     *                      other failing statement.
+     */
+    private static LocalDate parseDateOfBirth(String dateOfBirth) throws SQLException {
+        if (dateOfBirth == null) {
+            throw new SQLException("Geburtsdatum fehlt");
+        }
+        try {
+            return DateConverter.convertStringToLocalDate(dateOfBirth);
+        } catch (DateTimeParseException exception) {
+            throw new SQLException("Ungültiges Geburtsdatum: " + dateOfBirth, exception);
+        }
     }
 
     /**
@@ -92,13 +154,49 @@ public class PatientDao extends DaoImp<Patient> {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM patient";
-            statement = this.connection.prepareStatement(SQL);
+            statement = this.prepareStatement(SQL);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
         return statement;
     }
 
+    /**
+     * Returns the name of the patient table in the change log.
+     *
+     * @return <code>patient</code>
+     */
+    @Override
+    protected String getChangeTable() {
+        return "patient";
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all patients changed after the given version of the change
+     * log.
+     *
+     * @param version Version after which the patients were changed.
+     * @return <code>PreparedStatement</code> to query the changed patients.
+     */
+    @Override
+    protected PreparedStatement getReadChangedStatement(long version) {
+        PreparedStatement statement = null;
+        try {
+            final String SQL = "SELECT * FROM patient WHERE pid IN " +
+                    "(SELECT row_id FROM change_log WHERE table_name = 'patient' AND version > ?)";
+            statement = this.prepareStatement(SQL);
+            statement.setLong(1, version);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return statement;
+    }
+
+    @Override
+    protected long getKey(Patient patient) {
+        return patient.getPid();
+    }
+
     /**
      * Maps a <code>ResultSet</code> of all patients to an <code>ArrayList</code> of <code>Patient</code> objects.
      *
@@ -110,47 +208,61 @@ public class PatientDao extends DaoImp<Patient> {
     protected ArrayList<Patient> getListFromResultSet(ResultSet result) throws SQLException {
         ArrayList<Patient> list = new ArrayList<>();
         while (result.next()) {
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(4));
-            Patient patient = new Patient(result.getInt(1), result.getString(2),
-                    result.getString(3), date,
-                    result.getString(5), result.getString(6));
-            list.add(patient);
+            list.add(getInstanceFromResultSet(result));
         }
         return list;
     }
 
     /**
      * Generates a <code>PreparedStatement</code> to update the given patient, identified
-     * by the id of the patient (pid).
+     * by the id of the patient (pid). Only the columns of the modified fields are written.
      *
      * @param patient Patient object to update.
      * @return <code>PreparedStatement</code> to update the given patient.
+     * @throws SQLException if the date of birth of the patient is written and not a valid date.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(Patient patient) {
+    protected PreparedStatement getUpdateStatement(Patient patient) throws SQLException {
         PreparedStatement preparedStatement = null;
+        Set<String> fields = patient.getDirtyFields().beginWrite();
+        boolean birthModified = fields.contains(Patient.DATE_OF_BIRTH);
+        Long birthEpochDay = birthModified ? parseDateOfBirth(patient.getDateOfBirth()).toEpochDay() : null;
         try {
-            final String SQL =
-                    "UPDATE patient SET " +
-                            "firstname = ?, " +
-                            "surname = ?, " +
-                            "dateOfBirth = ?, " +
-                            "carelevel = ?, " +
-                            "roomnumber = ?, " +
-                            "WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, patient.getFirstName());
-            preparedStatement.setString(2, patient.getSurname());
-            preparedStatement.setString(3, patient.getDateOfBirth());
-            preparedStatement.setString(4, patient.getCareLevel());
-            preparedStatement.setString(5, patient.getRoomNumber());
-            preparedStatement.setLong(6, patient.getPid());
+            preparedStatement = new PartialUpdate("patient")
+                    .set(fields.contains(Person.FIRST_NAME), "firstname", patient.getFirstName())
+                    .set(fields.contains(Person.SURNAME), "surname", patient.getSurname())
+                    .set(birthModified, "dateOfBirth", patient.getDateOfBirth())
+                    .set(fields.contains(Patient.CARE_LEVEL), "carelevel", patient.getCareLevel())
+                    .set(fields.contains(Patient.ROOM_NUMBER), "roomnumber", patient.getRoomNumber())
+                    .set(birthModified, "birth_epoch_day", birthEpochDay)
+                    .prepare(this, "pid", patient.getPid());
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
         return preparedStatement;
     }
 
+    /**
+     * Returns whether fields of the given patient were modified since it was read or written.
+     *
+     * @param patient Patient object to update.
+     * @return <code>true</code> if the patient has to be written, <code>false</code> otherwise
+     */
+    @Override
+    protected boolean hasChanges(Patient patient) {
+        return patient.getDirtyFields().isDirty();
+    }
+
+    /**
+     * Unmarks the written fields of the given patient.
+     *
+     * @param patient the updated patient
+     */
+    @Override
+    protected void updated(Patient patient) {
+        patient.getDirtyFields().endWrite();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to delete a patient with the given id.
      *
@@ -162,7 +274,7 @@ public class PatientDao extends DaoImp<Patient> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "DELETE FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
             exception.printStackTrace();
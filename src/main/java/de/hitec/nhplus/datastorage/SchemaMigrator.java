@@ -0,0 +1,277 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date by applying versioned {@link Migration}s. <br>
+ * <br>
+ * The applied versions are stored in the <code>schema_version</code> table. On {@link #migrate()} every migration
+ * with a higher version than the current one is applied in ascending order, each within its own transaction on the
+ * writer connection. If a migration fails, it is rolled back and the following migrations are not applied, so the
+ * schema never skips a version.
+ */
+public class SchemaMigrator {
+
+    /**
+     * Assignments deriving the numeric date and time columns of a treatment from its text columns. Dates are stored
+     * as days since 1970-01-01, times as minutes since midnight.
+     */
+    private static final String TREATMENT_NUMERIC_VALUES =
+            "treatment_epoch_day = CAST(julianday(treatment_date) - 2440587.5 AS INTEGER), " +
+            "begin_minute = CAST(substr(begin, 1, 2) AS INTEGER) * 60 + CAST(substr(begin, 4, 2) AS INTEGER), " +
+            "end_minute = CAST(substr(end, 1, 2) AS INTEGER) * 60 + CAST(substr(end, 4, 2) AS INTEGER)";
+
+    /**
+     * Assignment deriving the numeric birth date column of a patient from its text column.
+     */
+    private static final String PATIENT_NUMERIC_VALUES =
+            "birth_epoch_day = CAST(julianday(dateOfBirth) - 2440587.5 AS INTEGER)";
+
+    /**
+     * Statement adding the new values of a treatment to the full-text index <code>treatment_fts</code>.
+     */
+    private static final String TREATMENT_FTS_INSERT =
+            "INSERT INTO treatment_fts (rowid, description, remark) VALUES (NEW.tid, NEW.description, NEW.remark);";
+
+    /**
+     * Statement removing the old values of a treatment from the full-text index. The index only stores the terms, so
+     * it has to be told the exact values that were indexed.
+     */
+    private static final String TREATMENT_FTS_DELETE =
+            "INSERT INTO treatment_fts (treatment_fts, rowid, description, remark) " +
+            "VALUES ('delete', OLD.tid, OLD.description, OLD.remark);";
+
+    /**
+     * Statement increasing the global version of the change log. Every insert, update and delete of a tracked table
+     * gets a new version.
+     */
+    private static final String CHANGE_COUNTER_INCREMENT =
+            "UPDATE change_counter SET version = version + 1 WHERE id = 1;";
+
+    /**
+     * The migrations of the NHPlus schema, ordered by version. New migrations are appended with the next version;
+     * applied migrations must never be changed.
+     */
+    public static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Indexes for treatment lookups by patient and caregiver",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid ON treatment (pid)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_cgID ON treatment (cgID)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid_cgID_date ON treatment (pid, cgID, treatment_date)"),
+            new Migration(2, "Unique index for user lookups by username",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_users_username ON users (username)"),
+            new Migration(3, "Numeric columns for treatment dates and times and patient birth dates",
+                    "ALTER TABLE treatment ADD COLUMN treatment_epoch_day INTEGER",
+                    "ALTER TABLE treatment ADD COLUMN begin_minute INTEGER",
+                    "ALTER TABLE treatment ADD COLUMN end_minute INTEGER",
+                    "ALTER TABLE patient ADD COLUMN birth_epoch_day INTEGER",
+                    "UPDATE treatment SET " + TREATMENT_NUMERIC_VALUES,
+                    "UPDATE patient SET " + PATIENT_NUMERIC_VALUES,
+                    "CREATE TRIGGER treatment_numeric_insert AFTER INSERT ON treatment " +
+                            "WHEN NEW.treatment_epoch_day IS NULL OR NEW.begin_minute IS NULL OR NEW.end_minute IS NULL " +
+                            "BEGIN UPDATE treatment SET " + TREATMENT_NUMERIC_VALUES + " WHERE tid = NEW.tid; END",
+                    "CREATE TRIGGER treatment_numeric_update AFTER UPDATE OF treatment_date, begin, end ON treatment " +
+                            "WHEN NEW.treatment_epoch_day IS OLD.treatment_epoch_day " +
+                            "AND NEW.begin_minute IS OLD.begin_minute AND NEW.end_minute IS OLD.end_minute " +
+                            "BEGIN UPDATE treatment SET " + TREATMENT_NUMERIC_VALUES + " WHERE tid = NEW.tid; END",
+                    "CREATE TRIGGER patient_numeric_insert AFTER INSERT ON patient " +
+                            "WHEN NEW.birth_epoch_day IS NULL " +
+                            "BEGIN UPDATE patient SET " + PATIENT_NUMERIC_VALUES + " WHERE pid = NEW.pid; END",
+                    "CREATE TRIGGER patient_numeric_update AFTER UPDATE OF dateOfBirth ON patient " +
+                            "WHEN NEW.birth_epoch_day IS OLD.birth_epoch_day " +
+                            "BEGIN UPDATE patient SET " + PATIENT_NUMERIC_VALUES + " WHERE pid = NEW.pid; END",
+                    "DROP INDEX IF EXISTS idx_treatment_pid_cgID_date",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid_cgID_day " +
+                            "ON treatment (pid, cgID, treatment_epoch_day, begin_minute)"),
+            new Migration(4, "Indexes for treatment date ranges",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_day ON treatment (treatment_epoch_day, begin_minute)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid_day ON treatment (pid, treatment_epoch_day, begin_minute)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_cgID_day ON treatment (cgID, treatment_epoch_day, begin_minute)"),
+            new Migration(5, "Full-text index of treatment descriptions and remarks",
+                    "CREATE VIRTUAL TABLE treatment_fts USING fts5(description, remark, content = 'treatment', " +
+                            "content_rowid = 'tid', tokenize = 'unicode61 remove_diacritics 2')",
+                    "CREATE TRIGGER treatment_fts_insert AFTER INSERT ON treatment " +
+                            "BEGIN " + TREATMENT_FTS_INSERT + " END",
+                    "CREATE TRIGGER treatment_fts_delete AFTER DELETE ON treatment " +
+                            "BEGIN " + TREATMENT_FTS_DELETE + " END",
+                    "CREATE TRIGGER treatment_fts_update AFTER UPDATE OF description, remark ON treatment " +
+                            "BEGIN " + TREATMENT_FTS_DELETE + " " + TREATMENT_FTS_INSERT + " END",
+                    "INSERT INTO treatment_fts (treatment_fts) VALUES ('rebuild')"),
+            new Migration(6, "Change log of patients, caregivers and treatments",
+                    "CREATE TABLE IF NOT EXISTS change_counter (" +
+                            "id INTEGER PRIMARY KEY CHECK (id = 1), version INTEGER NOT NULL)",
+                    "INSERT OR IGNORE INTO change_counter (id, version) VALUES (1, 0)",
+                    "CREATE TABLE IF NOT EXISTS change_log (" +
+                            "table_name TEXT NOT NULL, row_id INTEGER NOT NULL, version INTEGER NOT NULL, " +
+                            "PRIMARY KEY (table_name, row_id)) WITHOUT ROWID",
+                    "CREATE INDEX IF NOT EXISTS idx_change_log_version ON change_log (table_name, version)",
+                    createChangeLogTrigger("patient", "INSERT", "NEW.pid"),
+                    createChangeLogTrigger("patient", "UPDATE", "NEW.pid"),
+                    createChangeLogTrigger("patient", "DELETE", "OLD.pid"),
+                    createChangeLogTrigger("caregiver", "INSERT", "NEW.cgID"),
+                    createChangeLogTrigger("caregiver", "UPDATE", "NEW.cgID"),
+                    createChangeLogTrigger("caregiver", "DELETE", "OLD.cgID"),
+                    createChangeLogTrigger("treatment", "INSERT", "NEW.tid"),
+                    createChangeLogTrigger("treatment", "UPDATE", "NEW.tid"),
+                    createChangeLogTrigger("treatment", "DELETE", "OLD.tid"))
+    );
+
+    private final ConnectionPool connectionPool;
+    private final List<Migration> migrations;
+
+    /**
+     * Constructs a new migrator for the migrations of the NHPlus schema.
+     *
+     * @param connectionPool the pool to lease the writer connection from
+     */
+    public SchemaMigrator(ConnectionPool connectionPool) {
+        this(connectionPool, MIGRATIONS);
+    }
+
+    /**
+     * Constructs a new migrator for the given migrations.
+     *
+     * @param connectionPool the pool to lease the writer connection from
+     * @param migrations the migrations to apply, their versions must be unique
+     */
+    public SchemaMigrator(ConnectionPool connectionPool, List<Migration> migrations) {
+        List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort(Comparator.comparingInt(Migration::getVersion));
+        for (int index = 1; index < sorted.size(); index++) {
+            if (sorted.get(index).getVersion() == sorted.get(index - 1).getVersion()) {
+                throw new IllegalArgumentException("Duplicate migration version: " + sorted.get(index).getVersion());
+            }
+        }
+        this.connectionPool = connectionPool;
+        this.migrations = List.copyOf(sorted);
+    }
+
+    /**
+     * Applies all pending migrations in ascending order of their version.
+     *
+     * @return the schema version after migrating
+     * @throws SQLException if the <code>schema_version</code> table cannot be read or a migration fails
+     */
+    public int migrate() throws SQLException {
+        try (ConnectionPool.Lease lease = this.connectionPool.acquireWriter()) {
+            Connection connection = lease.getConnection();
+            createVersionTable(connection);
+            int currentVersion = readCurrentVersion(connection);
+            boolean applied = false;
+            for (Migration migration : this.migrations) {
+                if (migration.getVersion() > currentVersion) {
+                    apply(connection, migration);
+                    currentVersion = migration.getVersion();
+                    applied = true;
+                }
+            }
+            if (applied) {
+                // lets SQLite gather statistics for the new indexes
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA optimize");
+                }
+            }
+            return currentVersion;
+        }
+    }
+
+    /**
+     * Returns the current version of the schema.
+     *
+     * @return the highest applied version, <code>0</code> if no migration was applied yet
+     * @throws SQLException if the <code>schema_version</code> table cannot be read
+     */
+    public int getCurrentVersion() throws SQLException {
+        try (ConnectionPool.Lease lease = this.connectionPool.acquireWriter()) {
+            createVersionTable(lease.getConnection());
+            return readCurrentVersion(lease.getConnection());
+        }
+    }
+
+    /**
+     * Returns the statement creating a trigger that records a change of a row in the <code>change_log</code> table.
+     * The log keeps only the latest version per row, so it grows with the number of rows, not with the number of
+     * changes. The trigger is only created if it does not exist yet, because {@link de.hitec.nhplus.utils.SetUpDB}
+     * keeps the caregiver table when wiping the database.
+     *
+     * @param table the name of the tracked table
+     * @param event the tracked event: <code>INSERT</code>, <code>UPDATE</code> or <code>DELETE</code>
+     * @param rowId the expression of the changed row's key, e.g. <code>NEW.pid</code>
+     * @return the statement creating the trigger
+     */
+    private static String createChangeLogTrigger(String table, String event, String rowId) {
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_change_log_" + event.toLowerCase() +
+                " AFTER " + event + " ON " + table + " BEGIN " + CHANGE_COUNTER_INCREMENT +
+                " INSERT INTO change_log (table_name, row_id, version) " +
+                "VALUES ('" + table + "', " + rowId + ", (SELECT version FROM change_counter WHERE id = 1)) " +
+                "ON CONFLICT (table_name, row_id) DO UPDATE SET version = excluded.version; END";
+    }
+
+    /**
+     * Creates the <code>schema_version</code> table if it does not already exist.
+     *
+     * @param connection the writer connection
+     * @throws SQLException if the table cannot be created
+     */
+    private static void createVersionTable(Connection connection) throws SQLException {
+        final String SQL = "CREATE TABLE IF NOT EXISTS schema_version (" +
+                "   version INTEGER PRIMARY KEY, " +
+                "   description TEXT NOT NULL, " +
+                "   installed_on TEXT NOT NULL " +
+                ");";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(SQL);
+        }
+    }
+
+    /**
+     * Reads the highest applied version from the <code>schema_version</code> table.
+     *
+     * @param connection the writer connection
+     * @return the highest applied version, <code>0</code> if no migration was applied yet
+     * @throws SQLException if the table cannot be read
+     */
+    private static int readCurrentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Applies a single migration and records its version within one transaction.
+     *
+     * @param connection the writer connection
+     * @param migration the migration to apply
+     * @throws SQLException if the migration fails, it is rolled back in this case
+     */
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO schema_version (version, description, installed_on) VALUES (?, ?, ?)")) {
+            for (String sql : migration.getStatements()) {
+                statement.execute(sql);
+            }
+            insert.setInt(1, migration.getVersion());
+            insert.setString(2, migration.getDescription());
+            insert.setString(3, LocalDateTime.now().withNano(0).toString());
+            insert.executeUpdate();
+            connection.commit();
+            System.out.println("Datenbank migriert: " + migration);
+        } catch (SQLException | RuntimeException exception) {
+            connection.rollback();
+            System.out.println("Migration " + migration + " fehlgeschlagen!");
+            throw exception;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
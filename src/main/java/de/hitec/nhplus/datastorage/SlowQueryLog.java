@@ -0,0 +1,332 @@
+package de.hitec.nhplus.datastorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the statements of the DAOs that take longer than a threshold to a rotating log file. <br>
+ * <br>
+ * Every entry holds the SQL, its parameters, the duration, the number of rows, the DAO method and the plan of the
+ * statement from <code>EXPLAIN QUERY PLAN</code>. The parameters are replaced by their type: texts may hold names,
+ * remarks or passwords, and numbers may hold ids or dates of birth. The plan of a statement is explained once and
+ * kept. The log rotates over {@value #FILE_COUNT} files of at most {@value #FILE_LIMIT_BYTES} bytes. <br>
+ * <br>
+ * In strict mode, meant for tests and benchmarks, the plan of every statement with a <code>WHERE</code> clause is
+ * checked before its first execution. If it scans a table with at least the configured number of rows completely,
+ * the statement fails with an {@link SQLException}, because a missing index only shows with enough data. Statements
+ * without <code>WHERE</code> read all rows by intent and are not checked. <br>
+ * <br>
+ * While the log and the strict mode are off, the statements are not decorated at all, so the log is off by default
+ * and switched on with a threshold. It is configured with system properties:
+ * <ul>
+ *     <li><code>nhplus.slowQuery.thresholdMillis</code>: the threshold in milliseconds, e.g. 100; the log is off
+ *     if it is not set or negative</li>
+ *     <li><code>nhplus.slowQuery.file</code>: the pattern of the log files, by default
+ *     <code>logs/slow-queries.%g.log</code>, see {@link FileHandler}</li>
+ *     <li><code>nhplus.slowQuery.strict</code>: <code>true</code> for the strict mode</li>
+ *     <li><code>nhplus.slowQuery.largeTableRows</code>: the number of rows of a large table in strict mode,
+ *     {@value #DEFAULT_LARGE_TABLE_ROWS} by default</li>
+ * </ul>
+ * All methods are thread-safe.
+ */
+public class SlowQueryLog {
+
+    public static final long DEFAULT_LARGE_TABLE_ROWS = 10_000;
+    public static final int FILE_LIMIT_BYTES = 1024 * 1024;
+    public static final int FILE_COUNT = 5;
+
+    /**
+     * The tables and their aliases in the <code>FROM</code> and <code>JOIN</code> clauses of a statement.
+     */
+    private static final Pattern TABLE = Pattern.compile(
+            "\\b(?:FROM|JOIN|UPDATE|INTO)\\s+(\\w+)(?:\\s+(?:AS\\s+)?(?!ON\\b|WHERE\\b|LEFT\\b|JOIN\\b|INNER\\b|ORDER\\b"
+                    + "|GROUP\\b|LIMIT\\b|SET\\b|VALUES\\b)(\\w+))?", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * A complete scan of a table in the plan, e.g. <code>SCAN t</code>; scans of virtual tables are not matched.
+     */
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (\\w+)(?! VIRTUAL TABLE)");
+
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+
+    private volatile long thresholdNanos = toNanos(Long.getLong("nhplus.slowQuery.thresholdMillis", -1));
+    private volatile boolean strict = Boolean.getBoolean("nhplus.slowQuery.strict");
+    private volatile long largeTableRows = Long.getLong("nhplus.slowQuery.largeTableRows", DEFAULT_LARGE_TABLE_ROWS);
+    private final String filePattern = System.getProperty("nhplus.slowQuery.file", "logs/slow-queries.%g.log");
+
+    /**
+     * The plans of the explained statements by their SQL.
+     */
+    private final Map<String, List<String>> plans = new ConcurrentHashMap<>();
+
+    /**
+     * The violations of the strict mode by the SQL of the statements.
+     */
+    private final Map<String, String> violations = new ConcurrentHashMap<>();
+
+    /**
+     * The number of rows of the tables counted in strict mode.
+     */
+    private final Map<String, Long> tableRows = new ConcurrentHashMap<>();
+
+    /**
+     * The logger writing the file, created with the first entry; <code>null</code> before.
+     */
+    private Logger logger;
+
+    /**
+     * Private constructor, use {@link #getInstance()}.
+     */
+    private SlowQueryLog() {
+    }
+
+    /**
+     * Returns the slow-query log of all DAOs.
+     *
+     * @return the single instance
+     */
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns whether statements are checked, either for being slow or in strict mode.
+     *
+     * @return <code>true</code> if statements are checked
+     */
+    public boolean isEnabled() {
+        return this.thresholdNanos >= 0 || this.strict;
+    }
+
+    /**
+     * Sets the threshold above which statements are logged.
+     *
+     * @param thresholdMillis the threshold in milliseconds, a negative value switches the log off
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = toNanos(thresholdMillis);
+    }
+
+    /**
+     * Switches the strict mode on or off. The kept plans, violations and row counts are discarded, so the statements
+     * are checked again against the current schema and data.
+     *
+     * @param strict <code>true</code> to fail statements scanning a large table
+     * @param largeTableRows the number of rows from which on a table is large
+     */
+    public void setStrict(boolean strict, long largeTableRows) {
+        this.strict = strict;
+        this.largeTableRows = largeTableRows;
+        this.plans.clear();
+        this.violations.clear();
+        this.tableRows.clear();
+    }
+
+    /**
+     * Returns the statements that failed the strict mode.
+     *
+     * @return the reasons by the SQL of the statements
+     */
+    public Map<String, String> getViolations() {
+        return Collections.unmodifiableMap(new HashMap<>(this.violations));
+    }
+
+    /**
+     * Checks the plan of a statement before its execution in strict mode.
+     *
+     * @param connection the connection the statement is executed on
+     * @param sql the SQL of the statement
+     * @throws SQLException if the statement scans a large table completely, or the plan cannot be read
+     */
+    void checkPlan(Connection connection, String sql) throws SQLException {
+        if (!this.strict || !WHERE.matcher(sql).find()) {
+            return;
+        }
+        String violation = this.violations.get(sql);
+        if (violation == null && !this.plans.containsKey(sql)) {
+            violation = findFullScan(connection, sql, explain(connection, sql));
+            if (violation != null) {
+                this.violations.put(sql, violation);
+            }
+        }
+        if (violation != null) {
+            throw new SQLException(violation + ": " + sql);
+        }
+    }
+
+    /**
+     * Logs an executed statement if it took longer than the threshold.
+     *
+     * @param connection the connection the statement was executed on
+     * @param sql the SQL of the statement
+     * @param parameters the parameters bound to the statement by their index
+     * @param nanos the time of the execution in nanoseconds
+     * @param rows the number of rows read or written
+     */
+    void record(Connection connection, String sql, Map<Integer, Object> parameters, long nanos, long rows) {
+        long threshold = this.thresholdNanos;
+        if (threshold < 0 || nanos <= threshold) {
+            return;
+        }
+        StringBuilder entry = new StringBuilder();
+        entry.append(LocalDateTime.now()).append(" Langsame Abfrage: ")
+                .append(String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000.0))
+                .append(", ").append(rows).append(" Zeilen");
+        String method = DaoMetrics.getInstance().getCurrentMethod();
+        if (method != null) {
+            entry.append(", ").append(method);
+        }
+        entry.append("\nSQL: ").append(sql);
+        entry.append("\nParameter: ").append(redact(parameters));
+        entry.append("\nPlan:");
+        try {
+            for (String step : explain(connection, sql)) {
+                entry.append("\n  ").append(step);
+            }
+        } catch (SQLException exception) {
+            entry.append(" nicht lesbar (").append(exception.getMessage()).append(')');
+        }
+        write(entry.toString());
+    }
+
+    /**
+     * Returns the plan of the statement, explaining it on the first call.
+     *
+     * @param connection the connection to explain the statement on
+     * @param sql the SQL of the statement
+     * @return the steps of the plan, nested steps indented
+     * @throws SQLException if the statement cannot be explained
+     */
+    private List<String> explain(Connection connection, String sql) throws SQLException {
+        List<String> plan = this.plans.get(sql);
+        if (plan != null) {
+            return plan;
+        }
+        plan = new ArrayList<>();
+        Map<Integer, Integer> depths = new HashMap<>();
+        // parameters that are not bound count as NULL, which does not change the chosen indexes
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (result.next()) {
+                int depth = depths.getOrDefault(result.getInt("parent"), -1) + 1;
+                depths.put(result.getInt("id"), depth);
+                plan.add("  ".repeat(depth) + result.getString("detail"));
+            }
+        }
+        this.plans.put(sql, plan);
+        return plan;
+    }
+
+    /**
+     * Returns the complete scan of a large table in the plan, if there is one.
+     *
+     * @return the description of the scan, or <code>null</code> if the plan scans no large table
+     */
+    private String findFullScan(Connection connection, String sql, List<String> plan) throws SQLException {
+        Map<String, String> tables = new HashMap<>();
+        Matcher matcher = TABLE.matcher(sql);
+        while (matcher.find()) {
+            tables.put(matcher.group(1).toLowerCase(Locale.ROOT), matcher.group(1));
+            if (matcher.group(2) != null) {
+                tables.put(matcher.group(2).toLowerCase(Locale.ROOT), matcher.group(1));
+            }
+        }
+        for (String step : plan) {
+            Matcher scan = FULL_SCAN.matcher(step.strip());
+            if (!scan.find()) {
+                continue;
+            }
+            String table = tables.getOrDefault(scan.group(1).toLowerCase(Locale.ROOT), scan.group(1));
+            long rows = countRows(connection, table);
+            if (rows >= this.largeTableRows) {
+                return "Vollständiger Scan der Tabelle " + table + " mit " + rows + " Zeilen";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of rows of a table, counted once per table.
+     */
+    private long countRows(Connection connection, String table) throws SQLException {
+        Long rows = this.tableRows.get(table);
+        if (rows == null) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT count(*) FROM \"" + table + "\"")) {
+                rows = result.next() ? result.getLong(1) : 0;
+            }
+            this.tableRows.put(table, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the parameters with their values replaced by their type.
+     */
+    private static String redact(Map<Integer, Object> parameters) {
+        StringBuilder builder = new StringBuilder("[");
+        parameters.forEach((index, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(index).append(": ");
+            builder.append(value == null ? "NULL" : "<" + value.getClass().getSimpleName() + ">");
+        });
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Writes an entry to the log file, or to the console if the file cannot be opened.
+     */
+    private synchronized void write(String entry) {
+        if (this.logger == null) {
+            this.logger = Logger.getLogger(SlowQueryLog.class.getName());
+            this.logger.setUseParentHandlers(false);
+            try {
+                Path directory = Path.of(this.filePattern).toAbsolutePath().getParent();
+                if (directory != null) {
+                    Files.createDirectories(directory);
+                }
+                FileHandler handler = new FileHandler(this.filePattern, FILE_LIMIT_BYTES, FILE_COUNT, true);
+                handler.setEncoding("UTF-8");
+                handler.setFormatter(new Formatter() {
+                    @Override
+                    public String format(LogRecord record) {
+                        return record.getMessage() + System.lineSeparator() + System.lineSeparator();
+                    }
+                });
+                this.logger.addHandler(handler);
+            } catch (IOException exception) {
+                System.out.println("Log langsamer Abfragen konnte nicht geöffnet werden: " + exception.getMessage());
+                this.logger.setUseParentHandlers(true);
+            }
+        }
+        this.logger.log(Level.INFO, entry);
+    }
+
+    private static long toNanos(long millis) {
+        return millis < 0 ? -1 : millis * 1_000_000;
+    }
+}
@@ -0,0 +1,234 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache for the <code>PreparedStatement</code>s of a single database {@link Connection}. <br>
+ * <br>
+ * Statements are keyed by their SQL text, so every DAO asking for the same SQL gets the already compiled statement
+ * instead of letting SQLite parse and plan it again. The cache holds at most <code>capacity</code> statements; when
+ * it is full, the least recently used statement is closed and removed. Hits, misses and evictions are counted to
+ * check whether the capacity fits the workload. <br>
+ * <br>
+ * A cached statement may be handed out decorated, e.g. to measure its executions. The decorated statement is created
+ * once and kept next to the statement, so every caller of the same SQL gets the same object, as without decoration.
+ */
+public class StatementCache {
+
+    /**
+     * The default number of statements kept per connection.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The connection all cached statements belong to.
+     */
+    private final Connection connection;
+
+    /**
+     * The maximum number of cached statements.
+     */
+    private final int capacity;
+
+    /**
+     * The cached statements in access order, the least recently used statement comes first.
+     */
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs a new cache with the default capacity for the given connection.
+     *
+     * @param connection the connection used to prepare statements
+     */
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new cache for the given connection.
+     *
+     * @param connection the connection used to prepare statements
+     * @param capacity the maximum number of cached statements, must be positive
+     */
+    public StatementCache(Connection connection, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                StatementCache.this.evictions++;
+                closeQuietly(eldest.getValue().statement);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the given SQL or prepares and caches a new one.
+     *
+     * @param sql the SQL text of the statement
+     * @return the <code>PreparedStatement</code> for the SQL
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        return lookup(sql).statement;
+    }
+
+    /**
+     * Returns the cached statement for the given SQL or prepares and caches a new one, decorated by the given
+     * decorator. The decorator is only called the first time the statement is requested decorated; later requests
+     * get the same decorated statement.
+     *
+     * @param sql the SQL text of the statement
+     * @param decorator decorates the plain statement
+     * @return the decorated <code>PreparedStatement</code> for the SQL
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public synchronized PreparedStatement prepare(String sql, UnaryOperator<PreparedStatement> decorator)
+            throws SQLException {
+        CachedStatement cached = lookup(sql);
+        if (cached.decorated == null) {
+            cached.decorated = decorator.apply(cached.statement);
+        }
+        return cached.decorated;
+    }
+
+    /**
+     * Returns the cache entry for the given SQL, preparing the statement if it is not cached or was closed.
+     */
+    private CachedStatement lookup(String sql) throws SQLException {
+        CachedStatement cached = this.statements.get(sql);
+        if (cached != null && !cached.statement.isClosed()) {
+            this.hits++;
+            return cached;
+        }
+        this.misses++;
+        cached = new CachedStatement(this.connection.prepareStatement(sql));
+        this.statements.put(sql, cached);
+        return cached;
+    }
+
+    /**
+     * Removes the given statement from the cache without closing it. The caller takes over the statement and is
+     * responsible for closing it; the next request for the same SQL prepares a new statement. <br>
+     * <br>
+     * This is needed whenever a <code>ResultSet</code> stays open beyond a single DAO call, because executing the
+     * shared statement again would close it.
+     *
+     * @param statement the statement to remove, plain or decorated
+     * @return <code>true</code> if the statement was cached, <code>false</code> otherwise
+     */
+    public synchronized boolean detach(PreparedStatement statement) {
+        return this.statements.values().removeIf(
+                cached -> cached.statement == statement || cached.decorated == statement);
+    }
+
+    /**
+     * Closes and removes all cached statements. The counters are kept.
+     */
+    public synchronized void clear() {
+        for (CachedStatement cached : this.statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        this.statements.clear();
+    }
+
+    /**
+     * Returns the number of currently cached statements.
+     *
+     * @return the number of cached statements
+     */
+    public synchronized int size() {
+        return this.statements.size();
+    }
+
+    /**
+     * Returns the maximum number of cached statements.
+     *
+     * @return the capacity of the cache
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns how often a requested statement was already cached.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns how often a requested statement had to be prepared.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * Returns how often a statement was closed because the cache was full.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns a short summary of the cache statistics.
+     *
+     * @return the statistics as string
+     */
+    @Override
+    public synchronized String toString() {
+        return "StatementCache" + "\nSize: " + this.statements.size() + "/" + this.capacity +
+                "\nHits: " + this.hits +
+                "\nMisses: " + this.misses +
+                "\nEvictions: " + this.evictions +
+                "\n";
+    }
+
+    /**
+     * Closes the given statement. A failing close is only printed, because it must not break the caller.
+     *
+     * @param statement the statement to close
+     */
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * A cached statement and its decorated form, <code>null</code> until it is requested decorated.
+     */
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private PreparedStatement decorated;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+}
@@ -1,20 +1,54 @@
 package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.TreatmentDetails;
+import de.hitec.nhplus.model.TreatmentSearchResult;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
- * to execute the specific SQL Statements.
+ * to execute the specific SQL Statements. <br>
+ * <br>
+ * All queries join the patient and the caregiver of each treatment, so treatments are read as
+ * {@link TreatmentDetails} including their names with a single statement.
  */
+// the queries hold their lease in try-with-resources just to give the connection back afterwards
+@SuppressWarnings("try")
 public class TreatmentDao extends DaoImp<Treatment> {
 
+    /**
+     * The columns of a treatment (alias <code>t</code>) followed by the names of its patient and caregiver, the care
+     * level and the telephone number.
+     */
+    private static final String DETAILS_COLUMNS = "t.*, p.firstname AS patient_firstname, " +
+            "p.surname AS patient_surname, p.carelevel AS patient_carelevel, c.firstname AS caregiver_firstname, " +
+            "c.surname AS caregiver_surname, c.telNumber AS caregiver_telephone";
+
+    /**
+     * The joins of the patient and the caregiver of a treatment. They are left joins, so a treatment is read even if
+     * its patient or caregiver is missing.
+     */
+    private static final String DETAILS_JOINS =
+            " LEFT JOIN patient p ON p.pid = t.pid LEFT JOIN caregiver c ON c.cgID = t.cgID";
+
+    /**
+     * The start of all queries reading treatments with the data of their patient and caregiver.
+     */
+    private static final String SELECT_DETAILS = "SELECT " + DETAILS_COLUMNS + " FROM treatment t" + DETAILS_JOINS;
+
+    /**
+     * The maximum number of words of a search snippet.
+     */
+    private static final int SNIPPET_WORDS = 12;
+
     /**
      * The constructor initiates an object of <code>TreatmentDao</code> and passes the connection to its super class.
      *
@@ -24,6 +58,16 @@ public class TreatmentDao extends DaoImp<Treatment> {
         super(connection);
     }
 
+    /**
+     * The constructor initiates an object of <code>TreatmentDao</code> that leases a connection from the given pool for
+     * every operation.
+     *
+     * @param connectionPool Object of <code>ConnectionPool</code> to lease the connections from.
+     */
+    public TreatmentDao(ConnectionPool connectionPool) {
+        super(connectionPool);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to persist the given object of <code>Treatment</code>.
      *
@@ -34,9 +78,9 @@ public class TreatmentDao extends DaoImp<Treatment> {
     protected PreparedStatement getCreateStatement(Treatment treatment) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "INSERT INTO treatment (pid, cgID, treatment_date, begin, end, description, remark) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            final String SQL = "INSERT INTO treatment (pid, cgID, treatment_date, begin, end, description, remark, " +
+                    "treatment_epoch_day, begin_minute, end_minute) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, treatment.getPid());
             preparedStatement.setLong(2, treatment.getCgID());
             preparedStatement.setString(3, treatment.getDate());
@@ -44,12 +88,26 @@ public class TreatmentDao extends DaoImp<Treatment> {
             preparedStatement.setString(5, treatment.getEnd());
             preparedStatement.setString(6, treatment.getDescription());
             preparedStatement.setString(7, treatment.getRemarks());
+            preparedStatement.setLong(8, treatment.getLocalDate().toEpochDay());
+            preparedStatement.setInt(9, toMinuteOfDay(treatment.getLocalBegin()));
+            preparedStatement.setInt(10, toMinuteOfDay(treatment.getLocalEnd()));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
         return preparedStatement;
     }
 
+    /**
+     * Sets the treatment id generated for a newly created <code>Treatment</code>.
+     *
+     * @param treatment Object of <code>Treatment</code> that was persisted.
+     * @param key Generated id of the treatment.
+     */
+    @Override
+    protected void setGeneratedKey(Treatment treatment, long key) {
+        treatment.setTid(key);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query a treatment by a given treatment id (tid).
      *
@@ -60,8 +118,8 @@ public class TreatmentDao extends DaoImp<Treatment> {
     protected PreparedStatement getReadByIDStatement(long tid) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            final String SQL = SELECT_DETAILS + " WHERE t.tid = ?";
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -70,18 +128,81 @@ public class TreatmentDao extends DaoImp<Treatment> {
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one treatment to an object of <code>Treatment</code>.
+     * Maps a <code>ResultSet</code> of one treatment to an object of <code>TreatmentDetails</code>. Date and times
+     * are read from the numeric columns, so no text has to be parsed; rows whose numeric columns are not filled
+     * fall back to the text columns.
      *
-     * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Treatment</code>.
-     * @return Object of class <code>Treatment</code> with the data from the resultSet.
+     * @param result ResultSet with a single row. Columns will be mapped to an object of class
+     *               <code>TreatmentDetails</code>.
+     * @return Object of class <code>TreatmentDetails</code> with the data from the resultSet.
      */
     @Override
-    protected Treatment getInstanceFromResultSet(ResultSet result) throws SQLException {
-        LocalDate date = DateConverter.convertStringToLocalDate(result.getString(4));
-        LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(5));
-        LocalTime end = DateConverter.convertStringToLocalTime(result.getString(6));
-        return new Treatment(result.getLong(1), result.getLong(2), result.getLong(3),
-                date, begin, end, result.getString(7), result.getString(8));
+    protected TreatmentDetails getInstanceFromResultSet(ResultSet result) throws SQLException {
+        long epochDay = result.getLong("treatment_epoch_day");
+        LocalDate date = result.wasNull() ? parseDate(result.getString("treatment_date"))
+                : LocalDate.ofEpochDay(epochDay);
+        LocalTime begin = readTime(result, "begin_minute", "begin");
+        LocalTime end = readTime(result, "end_minute", "end");
+        return new TreatmentDetails(result.getLong("tid"), result.getLong("pid"), result.getLong("cgID"),
+                date, begin, end, result.getString("description"), result.getString("remark"),
+                result.getString("patient_firstname"), result.getString("patient_surname"),
+                result.getString("patient_carelevel"), result.getString("caregiver_firstname"),
+                result.getString("caregiver_surname"), result.getString("caregiver_telephone"));
+    }
+
+    /**
+     * Reads a time from its column of minutes since midnight, or parses its text column if the minutes are not
+     * filled.
+     *
+     * @param result ResultSet positioned on a treatment.
+     * @param minuteColumn Name of the column with the minutes since midnight.
+     * @param textColumn Name of the column with the time as text.
+     * @return The time of the treatment.
+     * @throws SQLException if the columns cannot be read or hold no valid time.
+     */
+    private static LocalTime readTime(ResultSet result, String minuteColumn, String textColumn) throws SQLException {
+        int minute = result.getInt(minuteColumn);
+        if (!result.wasNull()) {
+            return LocalTime.ofSecondOfDay(minute * 60L);
+        }
+        String time = result.getString(textColumn);
+        if (time == null) {
+            throw new SQLException("Uhrzeit fehlt");
+        }
+        try {
+            return DateConverter.convertStringToLocalTime(time);
+        } catch (DateTimeParseException exception) {
+            throw new SQLException("Ungültige Uhrzeit: " + time, exception);
+        }
+    }
+
+    /**
+     * Parses the date of a treatment from its text column.
+     *
+     * @param date Date as text.
+     * @return The date of the treatment.
+     * @throws SQLException if the text is missing or no valid date.
+     */
+    private static LocalDate parseDate(String date) throws SQLException {
+        if (date == null) {
+            throw new SQLException("Datum fehlt");
+        }
+        try {
+            return DateConverter.convertStringToLocalDate(date);
+        } catch (DateTimeParseException exception) {
+            throw new SQLException("Ungültiges Datum: " + date, exception);
+        }
+    }
+
+    /**
+     * Converts a time to the number of minutes since midnight, as stored in the columns <code>begin_minute</code>
+     * and <code>end_minute</code>.
+     *
+     * @param time Time to convert.
+     * @return Minute of the day.
+     */
+    private static int toMinuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
     }
 
     /**
@@ -93,14 +214,51 @@ public class TreatmentDao extends DaoImp<Treatment> {
     protected PreparedStatement getReadAllStatement() {
         PreparedStatement statement = null;
         try {
-            final String SQL = "SELECT * FROM treatment";
-            statement = this.connection.prepareStatement(SQL);
+            final String SQL = SELECT_DETAILS;
+            statement = this.prepareStatement(SQL);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
         return statement;
     }
 
+    /**
+     * Returns the name of the treatment table in the change log. Only changes of the treatments themselves are
+     * tracked; changed names of their patients or caregivers are not.
+     *
+     * @return <code>treatment</code>
+     */
+    @Override
+    protected String getChangeTable() {
+        return "treatment";
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all treatments changed after the given version of the
+     * change log, together with the data of their patients and caregivers.
+     *
+     * @param version Version after which the treatments were changed.
+     * @return <code>PreparedStatement</code> to query the changed treatments.
+     */
+    @Override
+    protected PreparedStatement getReadChangedStatement(long version) {
+        PreparedStatement statement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.tid IN " +
+                    "(SELECT row_id FROM change_log WHERE table_name = 'treatment' AND version > ?)";
+            statement = this.prepareStatement(SQL);
+            statement.setLong(1, version);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return statement;
+    }
+
+    @Override
+    protected long getKey(Treatment treatment) {
+        return treatment.getTid();
+    }
+
     /**
      * Maps a <code>ResultSet</code> of all treatments to an <code>ArrayList</code> with objects of class
      * <code>Treatment</code>.
@@ -111,14 +269,22 @@ public class TreatmentDao extends DaoImp<Treatment> {
      */
     @Override
     protected ArrayList<Treatment> getListFromResultSet(ResultSet result) throws SQLException {
-        ArrayList<Treatment> list = new ArrayList<>();
+        return new ArrayList<>(getDetailsListFromResultSet(result));
+    }
+
+    /**
+     * Maps a <code>ResultSet</code> of treatments to an <code>ArrayList</code> with objects of class
+     * <code>TreatmentDetails</code>.
+     *
+     * @param result ResultSet with all rows. The columns will be mapped to objects of class
+     *               <code>TreatmentDetails</code>.
+     * @return <code>ArrayList</code> with objects of class <code>TreatmentDetails</code> of all rows in the
+     * <code>ResultSet</code>.
+     */
+    private ArrayList<TreatmentDetails> getDetailsListFromResultSet(ResultSet result) throws SQLException {
+        ArrayList<TreatmentDetails> list = new ArrayList<>();
         while (result.next()) {
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(4));
-            LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(5));
-            LocalTime end = DateConverter.convertStringToLocalTime(result.getString(6));
-            Treatment treatment = new Treatment(result.getLong(1), result.getLong(2), result.getLong(3),
-                    date, begin, end, result.getString(7), result.getString(8));
-            list.add(treatment);
+            list.add(getInstanceFromResultSet(result));
         }
         return list;
     }
@@ -132,8 +298,8 @@ public class TreatmentDao extends DaoImp<Treatment> {
     private PreparedStatement getReadAllTreatmentsOfOnePatientByPid(long pid) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM treatment WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            final String SQL = SELECT_DETAILS + " WHERE t.pid = ?";
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -149,8 +315,8 @@ public class TreatmentDao extends DaoImp<Treatment> {
     private PreparedStatement getReadAllTreatmentsOfOneCaregiverByCgID(long cgID) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM treatment WHERE cgID = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            final String SQL = SELECT_DETAILS + " WHERE t.cgID = ?";
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, cgID);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -168,8 +334,8 @@ public class TreatmentDao extends DaoImp<Treatment> {
     private PreparedStatement getReadAllTreatmentsOfOnePatientByPidAndOneCaregiverByCgID(long pid, long cgID) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM treatment WHERE pid = ? AND cgID = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            final String SQL = SELECT_DETAILS + " WHERE t.pid = ? AND t.cgID = ?";
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, pid);
             preparedStatement.setLong(2, cgID);
         } catch (SQLException exception) {
@@ -180,47 +346,452 @@ public class TreatmentDao extends DaoImp<Treatment> {
 
     /**
      * Queries all treatments of a given patient id (pid) and maps the results to an <code>ArrayList</code> with
-     * objects of class <code>Treatment</code>.
+     * objects of class <code>TreatmentDetails</code>.
      *
      * @param pid Patient id to query all treatments referencing this id.
-     * @return <code>ArrayList</code> with objects of class <code>Treatment</code> of all rows in the
+     * @return <code>ArrayList</code> with objects of class <code>TreatmentDetails</code> of all rows in the
      * <code>ResultSet</code>.
      */
-    public List<Treatment> readTreatmentsByPid(long pid) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOnePatientByPid(pid).executeQuery();
-        return getListFromResultSet(result);
+    public List<TreatmentDetails> readTreatmentsByPid(long pid) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadAllTreatmentsOfOnePatientByPid(pid).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
     }
 
     /**
      * Queries all treatments of a given caregiver id (cgID) and maps the results to an <code>ArrayList</code> with
-     * objects of class <code>Treatment</code>.
+     * objects of class <code>TreatmentDetails</code>.
      *
      * @param cgID Caregiver id to query all treatments referencing this id.
-     * @return <code>ArrayList</code> with objects of class <code>Treatment</code> of all rows in the
+     * @return <code>ArrayList</code> with objects of class <code>TreatmentDetails</code> of all rows in the
      * <code>ResultSet</code>.
      */
-    public List<Treatment> readTreatmentsByCgID(long cgID) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOneCaregiverByCgID(cgID).executeQuery();
-        return getListFromResultSet(result);
+    public List<TreatmentDetails> readTreatmentsByCgID(long cgID) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadAllTreatmentsOfOneCaregiverByCgID(cgID).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
     }
 
     /**
      * Queries all treatments of a given patient id (pid) and a given caregiver id (cgID) and maps the results to an <code>ArrayList</code> with
-     * objects of class <code>Treatment</code>.
+     * objects of class <code>TreatmentDetails</code>.
      *
      * @param pid Patient id to query all treatments referencing this id.
      * @param cgID Caregiver id to query all treatments referencing this id.
-     * @return <code>ArrayList</code> with objects of class <code>Treatment</code> of all rows in the
+     * @return <code>ArrayList</code> with objects of class <code>TreatmentDetails</code> of all rows in the
      * <code>ResultSet</code>.
      */
-    public List<Treatment> readTreatmentsByPidAndCgID(long pid, long cgID) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOnePatientByPidAndOneCaregiverByCgID(pid,cgID).executeQuery();
-        return getListFromResultSet(result);
+    public List<TreatmentDetails> readTreatmentsByPidAndCgID(long pid, long cgID) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadAllTreatmentsOfOnePatientByPidAndOneCaregiverByCgID(pid,cgID).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all treatments within a date range, ordered by date and
+     * begin. The range is compared on the numeric column <code>treatment_epoch_day</code>.
+     *
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>PreparedStatement</code> to query the treatments of the range.
+     */
+    private PreparedStatement getReadTreatmentsBetweenStatement(LocalDate from, LocalDate to) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.treatment_epoch_day BETWEEN ? AND ? " +
+                    "ORDER BY t.treatment_epoch_day, t.begin_minute";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, from.toEpochDay());
+            preparedStatement.setLong(2, to.toEpochDay());
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Queries all treatments with a treatment date between <code>from</code> and <code>to</code>, both inclusive, and
+     * maps the results to a <code>List</code> with objects of class <code>TreatmentDetails</code>.
+     *
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>List</code> with objects of class <code>TreatmentDetails</code>, ordered by date and begin.
+     */
+    public List<TreatmentDetails> readTreatmentsBetween(LocalDate from, LocalDate to) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadTreatmentsBetweenStatement(from, to).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all treatments of a patient with a given patient id (pid)
+     * within a date range, ordered by date and begin. The range is compared on the numeric column
+     * <code>treatment_epoch_day</code>.
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>PreparedStatement</code> to query the treatments of the range.
+     */
+    private PreparedStatement getReadTreatmentsByPidBetweenStatement(long pid, LocalDate from, LocalDate to) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.pid = ? AND t.treatment_epoch_day BETWEEN ? AND ? " +
+                    "ORDER BY t.treatment_epoch_day, t.begin_minute";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, pid);
+            preparedStatement.setLong(2, from.toEpochDay());
+            preparedStatement.setLong(3, to.toEpochDay());
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Queries all treatments of a given patient id (pid) with a treatment date between <code>from</code> and
+     * <code>to</code>, both inclusive, and maps the results to a <code>List</code> with objects of class
+     * <code>TreatmentDetails</code>.
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>List</code> with objects of class <code>TreatmentDetails</code>, ordered by date and begin.
+     */
+    public List<TreatmentDetails> readTreatmentsByPidBetween(long pid, LocalDate from, LocalDate to)
+            throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadTreatmentsByPidBetweenStatement(pid, from, to).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all treatments of a caregiver with a given caregiver id
+     * (cgID) within a date range, ordered by date and begin. The range is compared on the numeric column
+     * <code>treatment_epoch_day</code>.
+     *
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>PreparedStatement</code> to query the treatments of the range.
+     */
+    private PreparedStatement getReadTreatmentsByCgIDBetweenStatement(long cgID, LocalDate from, LocalDate to) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.cgID = ? AND t.treatment_epoch_day BETWEEN ? AND ? " +
+                    "ORDER BY t.treatment_epoch_day, t.begin_minute";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, cgID);
+            preparedStatement.setLong(2, from.toEpochDay());
+            preparedStatement.setLong(3, to.toEpochDay());
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Queries all treatments of a given caregiver id (cgID) with a treatment date between <code>from</code> and
+     * <code>to</code>, both inclusive, and maps the results to a <code>List</code> with objects of class
+     * <code>TreatmentDetails</code>.
+     *
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>List</code> with objects of class <code>TreatmentDetails</code>, ordered by date and begin.
+     */
+    public List<TreatmentDetails> readTreatmentsByCgIDBetween(long cgID, LocalDate from, LocalDate to)
+            throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadTreatmentsByCgIDBetweenStatement(cgID, from, to).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all treatments of a patient with a given patient id (pid) and
+     * a caregiver with a given caregiver id (cgID) within a date range, ordered by date and begin. The range is
+     * compared on the numeric column <code>treatment_epoch_day</code>.
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>PreparedStatement</code> to query the treatments of the range.
+     */
+    private PreparedStatement getReadTreatmentsByPidAndCgIDBetweenStatement(long pid, long cgID, LocalDate from,
+                                                                            LocalDate to) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.pid = ? AND t.cgID = ? " +
+                    "AND t.treatment_epoch_day BETWEEN ? AND ? ORDER BY t.treatment_epoch_day, t.begin_minute";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, pid);
+            preparedStatement.setLong(2, cgID);
+            preparedStatement.setLong(3, from.toEpochDay());
+            preparedStatement.setLong(4, to.toEpochDay());
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Queries all treatments of a given patient id (pid) and a given caregiver id (cgID) with a treatment date between
+     * <code>from</code> and <code>to</code>, both inclusive, and maps the results to a <code>List</code> with objects
+     * of class <code>TreatmentDetails</code>.
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param from First day of the range.
+     * @param to Last day of the range.
+     * @return <code>List</code> with objects of class <code>TreatmentDetails</code>, ordered by date and begin.
+     */
+    public List<TreatmentDetails> readTreatmentsByPidAndCgIDBetween(long pid, long cgID, LocalDate from, LocalDate to)
+            throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadTreatmentsByPidAndCgIDBetweenStatement(pid, cgID, from, to).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query one page of treatments ordered by treatment id (tid). The
+     * page starts after the given treatment id, so the database seeks to it via the primary key instead of skipping
+     * rows like <code>OFFSET</code> would.
+     *
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>PreparedStatement</code> to query the page.
+     */
+    private PreparedStatement getReadPageStatement(long afterTid, int limit) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.tid > ? ORDER BY t.tid LIMIT ?";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, afterTid);
+            preparedStatement.setInt(2, limit);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query one page of treatments of a patient with a given patient
+     * id (pid), ordered by treatment id (tid).
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>PreparedStatement</code> to query the page.
+     */
+    private PreparedStatement getReadPageByPidStatement(long pid, long afterTid, int limit) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.pid = ? AND t.tid > ? ORDER BY t.tid LIMIT ?";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, pid);
+            preparedStatement.setLong(2, afterTid);
+            preparedStatement.setInt(3, limit);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query one page of treatments of a caregiver with a given
+     * caregiver id (cgID), ordered by treatment id (tid).
+     *
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>PreparedStatement</code> to query the page.
+     */
+    private PreparedStatement getReadPageByCgIDStatement(long cgID, long afterTid, int limit) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.cgID = ? AND t.tid > ? ORDER BY t.tid LIMIT ?";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, cgID);
+            preparedStatement.setLong(2, afterTid);
+            preparedStatement.setInt(3, limit);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query one page of treatments of a patient with a given patient
+     * id (pid) and a caregiver with a given caregiver id (cgID), ordered by treatment id (tid).
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>PreparedStatement</code> to query the page.
+     */
+    private PreparedStatement getReadPageByPidAndCgIDStatement(long pid, long cgID, long afterTid, int limit) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = SELECT_DETAILS + " WHERE t.pid = ? AND t.cgID = ? AND t.tid > ? " +
+                    "ORDER BY t.tid LIMIT ?";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setLong(1, pid);
+            preparedStatement.setLong(2, cgID);
+            preparedStatement.setLong(3, afterTid);
+            preparedStatement.setInt(4, limit);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Queries one page of treatments ordered by treatment id (tid). To read the following page, pass the id of the
+     * last treatment of this page as <code>afterTid</code>.
+     *
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>List</code> with at most <code>limit</code> objects of class <code>TreatmentDetails</code>.
+     */
+    public List<TreatmentDetails> readPage(long afterTid, int limit) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadPageStatement(afterTid, limit).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Queries one page of treatments of a given patient id (pid) ordered by treatment id (tid).
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>List</code> with at most <code>limit</code> objects of class <code>TreatmentDetails</code>.
+     */
+    public List<TreatmentDetails> readPageByPid(long pid, long afterTid, int limit) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadPageByPidStatement(pid, afterTid, limit).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Queries one page of treatments of a given caregiver id (cgID) ordered by treatment id (tid).
+     *
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>List</code> with at most <code>limit</code> objects of class <code>TreatmentDetails</code>.
+     */
+    public List<TreatmentDetails> readPageByCgID(long cgID, long afterTid, int limit) throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadPageByCgIDStatement(cgID, afterTid, limit).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Queries one page of treatments of a given patient id (pid) and a given caregiver id (cgID) ordered by
+     * treatment id (tid).
+     *
+     * @param pid Patient id to query the treatments referencing this id.
+     * @param cgID Caregiver id to query the treatments referencing this id.
+     * @param afterTid Treatment id after which the page starts, <code>0</code> for the first page.
+     * @param limit Maximum number of treatments in the page.
+     * @return <code>List</code> with at most <code>limit</code> objects of class <code>TreatmentDetails</code>.
+     */
+    public List<TreatmentDetails> readPageByPidAndCgID(long pid, long cgID, long afterTid, int limit)
+            throws SQLException {
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getReadPageByPidAndCgIDStatement(pid, cgID, afterTid, limit).executeQuery()) {
+            return getDetailsListFromResultSet(result);
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to search the full-text index of descriptions and remarks. The
+     * results are ordered by their rank, the best match first, and include a snippet of the matching column.
+     *
+     * @param matchQuery Query in the FTS5 syntax.
+     * @param limit Maximum number of results.
+     * @return <code>PreparedStatement</code> to search the treatments.
+     */
+    private PreparedStatement getSearchStatement(String matchQuery, int limit) {
+        PreparedStatement preparedStatement = null;
+        try {
+            final String SQL = "SELECT " + DETAILS_COLUMNS + ", " +
+                    "snippet(treatment_fts, -1, '[', ']', '…', " + SNIPPET_WORDS + ") AS search_snippet, " +
+                    "f.rank AS search_rank FROM treatment_fts f JOIN treatment t ON t.tid = f.rowid" + DETAILS_JOINS +
+                    " WHERE treatment_fts MATCH ? ORDER BY f.rank LIMIT ?";
+            preparedStatement = this.prepareStatement(SQL);
+            preparedStatement.setString(1, matchQuery);
+            preparedStatement.setInt(2, limit);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Searches the descriptions and remarks of all treatments for the words of the given text. A treatment matches
+     * if it contains every word, or a word starting with it; case and diacritics are ignored. The text is not
+     * interpreted as FTS5 syntax, so any input is a valid search.
+     *
+     * @param text Words to search for, separated by whitespace.
+     * @param limit Maximum number of results.
+     * @return <code>List</code> with at most <code>limit</code> objects of class <code>TreatmentSearchResult</code>,
+     * the best match first; empty if the text contains no words.
+     */
+    public List<TreatmentSearchResult> search(String text, int limit) throws SQLException {
+        String matchQuery = toMatchQuery(text);
+        List<TreatmentSearchResult> results = new ArrayList<>();
+        if (matchQuery.isEmpty()) {
+            return results;
+        }
+        try (ConnectionPool.Lease lease = leaseReader();
+             ResultSet result = getSearchStatement(matchQuery, limit).executeQuery()) {
+            while (result.next()) {
+                results.add(new TreatmentSearchResult(getInstanceFromResultSet(result),
+                        result.getString("search_snippet"), result.getDouble("search_rank")));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Converts the words of a search text to an FTS5 query. Every word is quoted, so characters with a meaning in
+     * the FTS5 syntax are searched literally, and marked as prefix. The words are combined with AND.
+     *
+     * @param text Words to search for, separated by whitespace.
+     * @return The FTS5 query, empty if the text contains no words.
+     */
+    private static String toMatchQuery(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder query = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            if (!word.isEmpty()) {
+                query.append(query.isEmpty() ? "" : " ").append('"').append(word.replace("\"", "\"\""))
+                        .append("\"*");
+            }
+        }
+        return query.toString();
     }
 
     /**
      * Generates a <code>PreparedStatement</code> to update the given treatment, identified
-     * by the id of the treatment (tid).
+     * by the id of the treatment (tid). Only the columns of the modified fields are written, including the
+     * numeric columns derived from them. The patient and the caregiver of a treatment cannot be changed.
      *
      * @param treatment Treatment object to update.
      * @return <code>PreparedStatement</code> to update the given treatment.
@@ -229,31 +800,47 @@ public class TreatmentDao extends DaoImp<Treatment> {
     protected PreparedStatement getUpdateStatement(Treatment treatment) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL =
-                    "UPDATE treatment SET " +
-                            "pid = ?, " +
-                            "cgID = ?, " +
-                            "treatment_date = ?, " +
-                            "begin = ?, " +
-                            "end = ?, " +
-                            "description = ?, " +
-                            "remark = ? " +
-                            "WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, treatment.getPid());
-            preparedStatement.setLong(2, treatment.getCgID());
-            preparedStatement.setString(3, treatment.getDate());
-            preparedStatement.setString(4, treatment.getBegin());
-            preparedStatement.setString(5, treatment.getEnd());
-            preparedStatement.setString(6, treatment.getDescription());
-            preparedStatement.setString(7, treatment.getRemarks());
-            preparedStatement.setLong(8, treatment.getTid());
+            Set<String> fields = treatment.getDirtyFields().beginWrite();
+            boolean dateModified = fields.contains(Treatment.DATE);
+            boolean beginModified = fields.contains(Treatment.BEGIN);
+            boolean endModified = fields.contains(Treatment.END);
+            preparedStatement = new PartialUpdate("treatment")
+                    .set(dateModified, "treatment_date", treatment.getDate())
+                    .set(beginModified, "begin", treatment.getBegin())
+                    .set(endModified, "end", treatment.getEnd())
+                    .set(fields.contains(Treatment.DESCRIPTION), "description", treatment.getDescription())
+                    .set(fields.contains(Treatment.REMARKS), "remark", treatment.getRemarks())
+                    .set(dateModified, "treatment_epoch_day", treatment.getLocalDate().toEpochDay())
+                    .set(beginModified, "begin_minute", toMinuteOfDay(treatment.getLocalBegin()))
+                    .set(endModified, "end_minute", toMinuteOfDay(treatment.getLocalEnd()))
+                    .prepare(this, "tid", treatment.getTid());
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
         return preparedStatement;
     }
 
+    /**
+     * Returns whether fields of the given treatment were modified since it was read or written.
+     *
+     * @param treatment Treatment object to update.
+     * @return <code>true</code> if the treatment has to be written, <code>false</code> otherwise
+     */
+    @Override
+    protected boolean hasChanges(Treatment treatment) {
+        return treatment.getDirtyFields().isDirty();
+    }
+
+    /**
+     * Unmarks the written fields of the given treatment.
+     *
+     * @param treatment the updated treatment
+     */
+    @Override
+    protected void updated(Treatment treatment) {
+        treatment.getDirtyFields().endWrite();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to delete a treatment with the given id.
      *
@@ -266,7 +853,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
         try {
             final String SQL =
                     "DELETE FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepareStatement(SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
             exception.printStackTrace();
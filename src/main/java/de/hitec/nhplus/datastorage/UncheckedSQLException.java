@@ -0,0 +1,33 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a {@link SQLException} in an unchecked exception. <br>
+ * <br>
+ * Used where a database error has to pass an API that does not allow checked exceptions, for example while a
+ * {@link java.util.stream.Stream} returned by {@link Dao#streamAll()} is consumed.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new exception wrapping the given <code>SQLException</code>.
+     *
+     * @param cause the database error
+     */
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Returns the wrapped database error.
+     *
+     * @return the <code>SQLException</code> that caused this exception
+     */
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -12,6 +12,8 @@ import java.util.ArrayList;
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
  * to execute the specific SQL Statements.
  */
+// the lease of readByUsername is held in try-with-resources only to return the connection to the pool
+@SuppressWarnings("try")
 public class UserDao extends DaoImp<User> {
     /**
      * The constructor initiates an object of <code>UserDao</code> and passes the connection to its super class.
@@ -22,6 +24,16 @@ public class UserDao extends DaoImp<User> {
         super(connection);
     }
 
+    /**
+     * The constructor initiates an object of <code>UserDao</code> that leases a connection from the given pool for
+     * every operation.
+     *
+     * @param connectionPool Object of <code>ConnectionPool</code> to lease the connections from.
+     */
+    public UserDao(ConnectionPool connectionPool) {
+        super(connectionPool);
+    }
+
     /**
      * Maps a <code>ResultSet</code> of one user to an object of <code>User</code>.
      *
@@ -65,7 +77,7 @@ public class UserDao extends DaoImp<User> {
 
         try {
             final String sql = "INSERT INTO users (username, password)" + "VALUES (?,?)";
-            preparedStatement = this.connection.prepareStatement(sql);
+            preparedStatement = this.prepareStatement(sql);
             preparedStatement.setString(1, user.getUsername());
             preparedStatement.setString(2, user.getPassword());
         } catch (SQLException exception) {
@@ -74,6 +86,17 @@ public class UserDao extends DaoImp<User> {
         return preparedStatement;
     }
 
+    /**
+     * Sets the user id generated for a newly created <code>User</code>.
+     *
+     * @param user Object of <code>User</code> that was persisted.
+     * @param key Generated id of the user.
+     */
+    @Override
+    protected void setGeneratedKey(User user, long key) {
+        user.setUid(key);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query a user by a given user id (uid).
      *
@@ -86,7 +109,7 @@ public class UserDao extends DaoImp<User> {
 
         try {
             final String sql = "SELECT * FROM users WHERE uid = ?";
-            preparedStatement = this.connection.prepareStatement(sql);
+            preparedStatement = this.prepareStatement(sql);
             preparedStatement.setLong(1, uid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -105,7 +128,7 @@ public class UserDao extends DaoImp<User> {
 
         try {
             final String sql = "SELECT * FROM users";
-            preparedStatement = this.connection.prepareStatement(sql);
+            preparedStatement = this.prepareStatement(sql);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -124,11 +147,11 @@ public class UserDao extends DaoImp<User> {
         PreparedStatement preparedStatement = null;
 
         try {
-            final String sql = "UPDATE users SET uid = ?, username = ?, password = ?";
-            preparedStatement = this.connection.prepareStatement(sql);
-            preparedStatement.setLong(1, user.getUid());
-            preparedStatement.setString(2, user.getUsername());
-            preparedStatement.setString(3, user.getPassword());
+            final String sql = "UPDATE users SET username = ?, password = ? WHERE uid = ?";
+            preparedStatement = this.prepareStatement(sql);
+            preparedStatement.setString(1, user.getUsername());
+            preparedStatement.setString(2, user.getPassword());
+            preparedStatement.setLong(3, user.getUid());
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -147,7 +170,7 @@ public class UserDao extends DaoImp<User> {
 
         try {
             final String sql = "DELETE FROM users WHERE uid = ?";
-            preparedStatement = this.connection.prepareStatement(sql);
+            preparedStatement = this.prepareStatement(sql);
             preparedStatement.setLong(1, uid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -165,12 +188,13 @@ public class UserDao extends DaoImp<User> {
         PreparedStatement preparedStatement = null;
         User user = null;
 
-        try {
+        try (ConnectionPool.Lease lease = leaseReader()) {
             final String sql = "SELECT * FROM users WHERE username = ?";
-            preparedStatement = this.connection.prepareStatement(sql);
+            preparedStatement = this.prepareStatement(sql);
             preparedStatement.setString(1, username);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            user = new User(resultSet.getLong("uid"), resultSet.getString("username"), resultSet.getString("password"));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                user = new User(resultSet.getLong("uid"), resultSet.getString("username"), resultSet.getString("password"));
+            }
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
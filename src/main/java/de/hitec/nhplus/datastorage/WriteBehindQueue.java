@@ -0,0 +1,233 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.DirtyFields;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Buffers changed entities and writes them behind the user's back. <br>
+ * <br>
+ * Editing several cells of a row one after another would otherwise issue one <code>UPDATE</code>, and one commit,
+ * per cell. Instead every changed entity is {@link #submit(Object) submitted} to this queue. Submitting the same
+ * entity again before it is written only keeps it once, so successive edits are coalesced. A short time after the
+ * first submit all pending entities are written with {@link Dao#updateAll(List)} in a single transaction. Callers
+ * may {@link #flush()} earlier, e.g. when the view is left. <br>
+ * <br>
+ * An entity is submitted on the thread that edits it, usually the JavaFX application thread. The queue keeps a
+ * snapshot of its current values and moves the marks of its modified fields to the snapshot, so the entity may be
+ * edited further while the snapshot is written on another thread. <br>
+ * <br>
+ * Flushes run one after another on the executor of the {@link DaoExecutor}, so the writes keep their order. If a
+ * flush fails, none of its entities is written and the {@link FailureHandler} is notified on a background thread;
+ * the edited entities are no longer marked as modified then and should be read again.
+ *
+ * @param <T> Type of the entity.
+ */
+public final class WriteBehindQueue<T> {
+
+    /**
+     * The default number of milliseconds between the first submit and the flush of the pending entities.
+     */
+    public static final long DEFAULT_DELAY_MILLIS = 500;
+
+    /**
+     * The maximum number of seconds {@link #flushAll()} waits for the pending writes.
+     */
+    private static final long FLUSH_ALL_TIMEOUT_SECONDS = 5;
+
+    /**
+     * All queues that may still hold pending entities; weakly referenced, so unused queues can be collected.
+     */
+    private static final Set<WriteBehindQueue<?>> QUEUES = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * Notified if pending entities could not be written.
+     *
+     * @param <T> Type of the entity.
+     */
+    @FunctionalInterface
+    public interface FailureHandler<T> {
+        /**
+         * Called on a background thread after a flush failed and was rolled back.
+         *
+         * @param entities the snapshots of the entities that were not written
+         * @param exception the database error
+         */
+        void writeFailed(List<T> entities, SQLException exception);
+    }
+
+    private final AsyncDao<T, ? extends Dao<T>> dao;
+    private final ToLongFunction<T> keyExtractor;
+    private final UnaryOperator<T> snapshot;
+    private final Function<T, DirtyFields> dirtyFields;
+    private final long delayMillis;
+    private final Map<Long, T> pending = new LinkedHashMap<>();
+    private FailureHandler<T> failureHandler = (entities, exception) -> exception.printStackTrace();
+    private boolean flushScheduled;
+    private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+
+    /**
+     * Constructs a new queue flushing {@value #DEFAULT_DELAY_MILLIS} milliseconds after the first submit.
+     *
+     * @param dao the DAO to write the entities with
+     * @param keyExtractor returns the ID of an entity, entities with the same ID are coalesced
+     * @param snapshot returns a copy of the current values of an entity without modified fields
+     * @param dirtyFields returns the modified fields of an entity
+     */
+    public WriteBehindQueue(AsyncDao<T, ? extends Dao<T>> dao, ToLongFunction<T> keyExtractor,
+                            UnaryOperator<T> snapshot, Function<T, DirtyFields> dirtyFields) {
+        this(dao, keyExtractor, snapshot, dirtyFields, DEFAULT_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructs a new queue.
+     *
+     * @param dao the DAO to write the entities with
+     * @param keyExtractor returns the ID of an entity, entities with the same ID are coalesced
+     * @param snapshot returns a copy of the current values of an entity without modified fields
+     * @param dirtyFields returns the modified fields of an entity
+     * @param delayMillis the number of milliseconds between the first submit and the flush
+     */
+    public WriteBehindQueue(AsyncDao<T, ? extends Dao<T>> dao, ToLongFunction<T> keyExtractor,
+                            UnaryOperator<T> snapshot, Function<T, DirtyFields> dirtyFields, long delayMillis) {
+        this.dao = dao;
+        this.keyExtractor = keyExtractor;
+        this.snapshot = snapshot;
+        this.dirtyFields = dirtyFields;
+        this.delayMillis = delayMillis;
+        QUEUES.add(this);
+    }
+
+    /**
+     * Sets the handler notified if pending entities could not be written. By default the error is printed.
+     *
+     * @param failureHandler the handler to notify
+     */
+    public void setFailureHandler(FailureHandler<T> failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Marks the entity as changed. A snapshot of its current values is written with the next flush, together with
+     * all other pending entities. Must be called on the thread that edits the entity.
+     *
+     * @param entity the changed entity
+     */
+    public synchronized void submit(T entity) {
+        T snapshot = this.snapshot.apply(entity);
+        DirtyFields modified = this.dirtyFields.apply(snapshot);
+        T previous = this.pending.put(this.keyExtractor.applyAsLong(entity), snapshot);
+        if (previous != null) {
+            // the fields of the previous edits are not written yet
+            this.dirtyFields.apply(previous).moveTo(modified);
+        }
+        this.dirtyFields.apply(entity).moveTo(modified);
+        if (!this.flushScheduled) {
+            this.flushScheduled = true;
+            CompletableFuture.runAsync(this::flush, CompletableFuture.delayedExecutor(this.delayMillis,
+                    TimeUnit.MILLISECONDS, DaoExecutor.getExecutor()));
+        }
+    }
+
+    /**
+     * Drops the pending changes of the entity with the given ID, e.g. because it is deleted.
+     *
+     * @param key the ID of the entity
+     */
+    public synchronized void discard(long key) {
+        this.pending.remove(key);
+    }
+
+    /**
+     * Returns the number of entities waiting to be written.
+     *
+     * @return the number of pending entities
+     */
+    public synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Writes all pending entities in a single transaction, after the previous flushes are finished.
+     *
+     * @return a future completed when the pending entities are written, failing if they could not be written
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        this.flushScheduled = false;
+        if (this.pending.isEmpty()) {
+            return this.lastFlush;
+        }
+        List<T> entities = new ArrayList<>(this.pending.values());
+        this.pending.clear();
+        this.lastFlush = this.lastFlush
+                .handle((result, error) -> null)
+                .thenCompose(previous -> this.dao.updateAll(entities))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        this.failureHandler.writeFailed(entities, toSQLException(error));
+                    }
+                });
+        return this.lastFlush;
+    }
+
+    /**
+     * Flushes all queues and waits up to {@value #FLUSH_ALL_TIMEOUT_SECONDS} seconds for the writes, e.g. before the
+     * application is closed. Failed writes are reported to the handlers of their queues.
+     */
+    public static void flushAll() {
+        List<WriteBehindQueue<?>> queues;
+        synchronized (QUEUES) {
+            queues = new ArrayList<>(QUEUES);
+        }
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        for (WriteBehindQueue<?> queue : queues) {
+            flushes.add(queue.flush());
+        }
+        try {
+            CompletableFuture.allOf(flushes.toArray(new CompletableFuture<?>[0]))
+                    .get(FLUSH_ALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException exception) {
+            // already reported to the failure handlers
+        } catch (TimeoutException exception) {
+            System.out.println("Änderungen wurden nicht rechtzeitig gespeichert!");
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Extracts the database error from the error of a failed flush.
+     *
+     * @param error the error of the future
+     * @return the original <code>SQLException</code>, or a new one wrapping any other error
+     */
+    private static SQLException toSQLException(Throwable error) {
+        Throwable cause = error;
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof UncheckedSQLException unchecked) {
+            return unchecked.getCause();
+        }
+        if (cause instanceof SQLException exception) {
+            return exception;
+        }
+        return new SQLException(cause);
+    }
+}
@@ -9,7 +9,17 @@ import javafx.beans.property.SimpleStringProperty;
  * This class extends {@link Person} and adds caregiver-specific attributes such as
  * telephone number, activity status, and a unique caregiver identifier (cgID).
  */
-public class Caregiver extends Person{
+public final class Caregiver extends Person{
+
+    /**
+     * Name of the telephone field in the {@link DirtyFields}.
+     */
+    public static final String TELEPHONE = "telephone";
+
+    /**
+     * Name of the active field in the {@link DirtyFields}.
+     */
+    public static final String ACTIVE = "active";
 
     /**
      * The unique ID of the caregiver.
@@ -39,6 +49,7 @@ public class Caregiver extends Person{
         super(firstName, surname);
         this.telephone = new SimpleStringProperty(telephone);
         this.active = active;
+        trackChanges(this.telephone, TELEPHONE);
     }
 
     /**
@@ -56,6 +67,30 @@ public class Caregiver extends Person{
         this.cgID = new SimpleLongProperty(cgID);
         this.telephone = new SimpleStringProperty(telephone);
         this.active = active;
+        trackChanges(this.telephone, TELEPHONE);
+    }
+
+    /**
+     * Copy constructor, use {@link #snapshot()}.
+     *
+     * @param caregiver Caregiver to copy.
+     */
+    private Caregiver(Caregiver caregiver) {
+        super(caregiver.getFirstName(), caregiver.getSurname());
+        this.cgID = caregiver.cgID == null ? null : new SimpleLongProperty(caregiver.getCgID());
+        this.telephone = new SimpleStringProperty(caregiver.getTelephone());
+        this.active = caregiver.isActive();
+        trackChanges(this.telephone, TELEPHONE);
+    }
+
+    /**
+     * Returns a copy of this caregiver with its current values, e.g. to write them on another thread while this
+     * caregiver is edited further. No field of the copy is marked as modified.
+     *
+     * @return a new caregiver with the values of this caregiver
+     */
+    public Caregiver snapshot() {
+        return new Caregiver(this);
     }
 
     /**
@@ -67,6 +102,19 @@ public class Caregiver extends Person{
         return cgID.get();
     }
 
+    /**
+     * Sets the caregiver ID, e.g. after the caregiver was persisted.
+     *
+     * @param cgID the caregiver's unique ID
+     */
+    public void setCgID(long cgID) {
+        if (this.cgID == null) {
+            this.cgID = new SimpleLongProperty(cgID);
+        } else {
+            this.cgID.set(cgID);
+        }
+    }
+
     /**
      * Returns the <code>SimpleLongProperty</code> representing the caregiver ID.
      *
@@ -118,6 +166,9 @@ public class Caregiver extends Person{
      * @param active <code>true</code> to mark as active; <code>false</code> otherwise
      */
     public void setActive(boolean active) {
+        if (this.active != active) {
+            getDirtyFields().mark(ACTIVE);
+        }
         this.active = active;
     }
 
@@ -0,0 +1,102 @@
+package de.hitec.nhplus.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the fields of an entity that were modified since it was read from or written to the database. <br>
+ * <br>
+ * A DAO asks for the modified fields with {@link #beginWrite()}, writes only their columns and calls
+ * {@link #endWrite()} once the write succeeded. Fields modified again while the write was running stay marked, so
+ * their new values are written with the next update. If the write fails, all fields stay marked.
+ */
+public class DirtyFields {
+
+    /**
+     * The modified fields, mapped to the number of the modification that marked them last.
+     */
+    private final Map<String, Long> modifiedFields = new LinkedHashMap<>();
+
+    /**
+     * The modified fields at the start of the running write.
+     */
+    private Map<String, Long> writtenFields = Map.of();
+
+    private long modificationCount;
+
+    /**
+     * Marks the given field as modified.
+     *
+     * @param field the name of the modified field
+     */
+    public synchronized void mark(String field) {
+        this.modifiedFields.put(field, ++this.modificationCount);
+    }
+
+    /**
+     * Returns whether the given field was modified since the last write.
+     *
+     * @param field the name of the field
+     * @return <code>true</code> if the field was modified, <code>false</code> otherwise
+     */
+    public synchronized boolean isModified(String field) {
+        return this.modifiedFields.containsKey(field);
+    }
+
+    /**
+     * Returns whether any field was modified since the last write.
+     *
+     * @return <code>true</code> if at least one field was modified, <code>false</code> otherwise
+     */
+    public synchronized boolean isDirty() {
+        return !this.modifiedFields.isEmpty();
+    }
+
+    /**
+     * Returns the names of the modified fields and remembers them as being written.
+     *
+     * @return an unmodifiable set of the names of the modified fields
+     */
+    public synchronized Set<String> beginWrite() {
+        this.writtenFields = new HashMap<>(this.modifiedFields);
+        return Set.copyOf(this.writtenFields.keySet());
+    }
+
+    /**
+     * Unmarks the fields returned by the last {@link #beginWrite()} after they were written, unless they were
+     * modified again in the meantime.
+     */
+    public synchronized void endWrite() {
+        this.writtenFields.forEach(this.modifiedFields::remove);
+        this.writtenFields = Map.of();
+    }
+
+    /**
+     * Moves the marks of all modified fields to the given fields, e.g. of a copy of the entity that is written
+     * instead of it. No field of this object is marked afterwards.
+     *
+     * @param target the fields to mark
+     */
+    public void moveTo(DirtyFields target) {
+        List<String> fields;
+        synchronized (this) {
+            fields = new ArrayList<>(this.modifiedFields.keySet());
+            clear();
+        }
+        for (String field : fields) {
+            target.mark(field);
+        }
+    }
+
+    /**
+     * Unmarks all fields, e.g. after the whole entity was written.
+     */
+    public synchronized void clear() {
+        this.modifiedFields.clear();
+        this.writtenFields = Map.of();
+    }
+}
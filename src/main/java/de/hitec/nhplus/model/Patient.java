@@ -14,7 +14,22 @@ import java.util.List;
  * This class extends {@link Person} and adds patient-specific attributes such as
  * date of birth, care level, room number and a unique identifier (pid).
  */
-public class Patient extends Person {
+public final class Patient extends Person {
+    /**
+     * Name of the date of birth field in the {@link DirtyFields}.
+     */
+    public static final String DATE_OF_BIRTH = "dateOfBirth";
+
+    /**
+     * Name of the care level field in the {@link DirtyFields}.
+     */
+    public static final String CARE_LEVEL = "careLevel";
+
+    /**
+     * Name of the room number field in the {@link DirtyFields}.
+     */
+    public static final String ROOM_NUMBER = "roomNumber";
+
     /**
      * Unique identifier for the patient.
      */
@@ -55,6 +70,7 @@ public class Patient extends Person {
         this.dateOfBirth = new SimpleStringProperty(DateConverter.convertLocalDateToString(dateOfBirth));
         this.careLevel = new SimpleStringProperty(careLevel);
         this.roomNumber = new SimpleStringProperty(roomNumber);
+        trackPatientChanges();
     }
 
     /**
@@ -74,6 +90,40 @@ public class Patient extends Person {
         this.dateOfBirth = new SimpleStringProperty(DateConverter.convertLocalDateToString(dateOfBirth));
         this.careLevel = new SimpleStringProperty(careLevel);
         this.roomNumber = new SimpleStringProperty(roomNumber);
+        trackPatientChanges();
+    }
+
+    /**
+     * Copy constructor, use {@link #snapshot()}.
+     *
+     * @param patient Patient to copy.
+     */
+    private Patient(Patient patient) {
+        super(patient.getFirstName(), patient.getSurname());
+        this.pid = patient.pid == null ? null : new SimpleLongProperty(patient.getPid());
+        this.dateOfBirth = new SimpleStringProperty(patient.getDateOfBirth());
+        this.careLevel = new SimpleStringProperty(patient.getCareLevel());
+        this.roomNumber = new SimpleStringProperty(patient.getRoomNumber());
+        trackPatientChanges();
+    }
+
+    /**
+     * Returns a copy of this patient with its current values, e.g. to write them on another thread while this
+     * patient is edited further. No field of the copy is marked as modified.
+     *
+     * @return a new patient with the values of this patient
+     */
+    public Patient snapshot() {
+        return new Patient(this);
+    }
+
+    /**
+     * Records changes of the patient-specific properties in the {@link DirtyFields}.
+     */
+    private void trackPatientChanges() {
+        trackChanges(this.dateOfBirth, DATE_OF_BIRTH);
+        trackChanges(this.careLevel, CARE_LEVEL);
+        trackChanges(this.roomNumber, ROOM_NUMBER);
     }
 
     /**
@@ -85,6 +135,19 @@ public class Patient extends Person {
         return pid.get();
     }
 
+    /**
+     * Sets the patient ID, e.g. after the patient was persisted.
+     *
+     * @param pid the unique patient ID
+     */
+    public void setPid(long pid) {
+        if (this.pid == null) {
+            this.pid = new SimpleLongProperty(pid);
+        } else {
+            this.pid.set(pid);
+        }
+    }
+
     /**
      * Returns the JavaFX property for the patient ID.
      *
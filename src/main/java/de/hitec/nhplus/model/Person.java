@@ -1,14 +1,26 @@
 package de.hitec.nhplus.model;
 
 import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
 
 /**
  * Abstract base class representing a person with a first name and a surname. <br>
  * <br>
  * Provides basic getter, setter, and JavaFX property methods.
  * This class is intended to be extended by more specific person types.
+ * Changes of the properties are recorded in {@link DirtyFields}, so only modified columns need to be written.
  */
 public abstract class Person {
+    /**
+     * Name of the first name field in the {@link DirtyFields}.
+     */
+    public static final String FIRST_NAME = "firstName";
+
+    /**
+     * Name of the surname field in the {@link DirtyFields}.
+     */
+    public static final String SURNAME = "surname";
+
     /**
      * The person's first name.
      */
@@ -19,6 +31,11 @@ public abstract class Person {
      */
     private final SimpleStringProperty surname;
 
+    /**
+     * The fields modified since the person was read or written.
+     */
+    private final DirtyFields dirtyFields = new DirtyFields();
+
     /**
      * Constructs a new <code>Person</code> instance with the specified first name and surname.
      *
@@ -28,6 +45,27 @@ public abstract class Person {
     protected Person(String firstName, String surname) {
         this.firstName = new SimpleStringProperty(firstName);
         this.surname = new SimpleStringProperty(surname);
+        trackChanges(this.firstName, FIRST_NAME);
+        trackChanges(this.surname, SURNAME);
+    }
+
+    /**
+     * Marks the given field as modified whenever the value of its property changes.
+     *
+     * @param property the property of the field
+     * @param field the name of the field in the {@link DirtyFields}
+     */
+    protected final void trackChanges(ObservableValue<?> property, String field) {
+        property.addListener((observable, oldValue, newValue) -> this.dirtyFields.mark(field));
+    }
+
+    /**
+     * Returns the fields modified since the person was read from or written to the database.
+     *
+     * @return the modified fields
+     */
+    public DirtyFields getDirtyFields() {
+        return dirtyFields;
     }
 
 
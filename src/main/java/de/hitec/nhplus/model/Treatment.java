@@ -4,8 +4,18 @@ import de.hitec.nhplus.utils.DateConverter;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Objects;
 
 public class Treatment {
+    /**
+     * Names of the fields in the {@link DirtyFields}.
+     */
+    public static final String DATE = "date";
+    public static final String BEGIN = "begin";
+    public static final String END = "end";
+    public static final String DESCRIPTION = "description";
+    public static final String REMARKS = "remarks";
+
     private long tid;
     private final long pid;
     private long cgID;
@@ -14,6 +24,7 @@ public class Treatment {
     private LocalTime end;
     private String description;
     private String remarks;
+    private final DirtyFields dirtyFields = new DirtyFields();
 
     /**
      * Constructor to initiate an object of class <code>Treatment</code> with the given parameter. Use this constructor
@@ -67,6 +78,10 @@ public class Treatment {
         return tid;
     }
 
+    public void setTid(long tid) {
+        this.tid = tid;
+    }
+
     public long getPid() {
         return this.pid;
     }
@@ -87,16 +102,28 @@ public class Treatment {
         return end.toString();
     }
 
+    public LocalDate getLocalDate() {
+        return date;
+    }
+
+    public LocalTime getLocalBegin() {
+        return begin;
+    }
+
+    public LocalTime getLocalEnd() {
+        return end;
+    }
+
     public void setDate(String date) {
-        this.date = DateConverter.convertStringToLocalDate(date);
+        this.date = track(DATE, this.date, DateConverter.convertStringToLocalDate(date));
     }
 
     public void setBegin(String begin) {
-        this.begin = DateConverter.convertStringToLocalTime(begin);;
+        this.begin = track(BEGIN, this.begin, DateConverter.convertStringToLocalTime(begin));
     }
 
     public void setEnd(String end) {
-        this.end = DateConverter.convertStringToLocalTime(end);;
+        this.end = track(END, this.end, DateConverter.convertStringToLocalTime(end));
     }
 
     public String getDescription() {
@@ -104,7 +131,7 @@ public class Treatment {
     }
 
     public void setDescription(String description) {
-        this.description = description;
+        this.description = track(DESCRIPTION, this.description, description);
     }
 
     public String getRemarks() {
@@ -112,7 +139,32 @@ public class Treatment {
     }
 
     public void setRemarks(String remarks) {
-        this.remarks = remarks;
+        this.remarks = track(REMARKS, this.remarks, remarks);
+    }
+
+    /**
+     * Returns the fields modified since the treatment was read from or written to the database.
+     *
+     * @return the modified fields
+     */
+    public DirtyFields getDirtyFields() {
+        return dirtyFields;
+    }
+
+    /**
+     * Marks the field as modified if the new value differs from the old one.
+     *
+     * @param field the name of the field in the {@link DirtyFields}
+     * @param oldValue the current value of the field
+     * @param newValue the value to set
+     * @param <V> Type of the field.
+     * @return the new value
+     */
+    private <V> V track(String field, V oldValue, V newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            this.dirtyFields.mark(field);
+        }
+        return newValue;
     }
 
     public String toString() {
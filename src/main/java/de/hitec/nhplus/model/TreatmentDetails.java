@@ -0,0 +1,156 @@
+package de.hitec.nhplus.model;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Represents a treatment together with the data of its patient and caregiver that is shown alongside it <br>
+ * <br>
+ * This class extends {@link Treatment} by the names of the patient and the caregiver, the care level of the patient
+ * and the telephone number of the caregiver. The <code>TreatmentDao</code> reads all of them with a single query
+ * joining the three tables, so showing the names of many treatments needs no further query per treatment. The
+ * additional fields are read-only; changes of the patient or caregiver are shown after the treatment was read again.
+ */
+public class TreatmentDetails extends Treatment {
+
+    /**
+     * The first name of the treated patient.
+     */
+    private final String patientFirstName;
+
+    /**
+     * The surname of the treated patient.
+     */
+    private final String patientSurname;
+
+    /**
+     * The care level of the treated patient.
+     */
+    private final String careLevel;
+
+    /**
+     * The first name of the caregiver.
+     */
+    private final String caregiverFirstName;
+
+    /**
+     * The surname of the caregiver.
+     */
+    private final String caregiverSurname;
+
+    /**
+     * The telephone number of the caregiver.
+     */
+    private final String caregiverTelephone;
+
+    /**
+     * Constructor to initiate an object of class <code>TreatmentDetails</code> with the given parameter. Use this
+     * constructor to initiate objects, which are not persisted yet, because it will not have a treatment id (tid).
+     *
+     * @param patient The treated patient.
+     * @param caregiver The caregiver.
+     * @param date Date of the Treatment.
+     * @param begin Time of the start of the treatment.
+     * @param end Time of the end of the treatment.
+     * @param description Description of the treatment.
+     * @param remarks Remarks to the treatment.
+     */
+    public TreatmentDetails(Patient patient, Caregiver caregiver, LocalDate date, LocalTime begin, LocalTime end,
+                            String description, String remarks) {
+        super(patient.getPid(), caregiver.getCgID(), date, begin, end, description, remarks);
+        this.patientFirstName = patient.getFirstName();
+        this.patientSurname = patient.getSurname();
+        this.careLevel = patient.getCareLevel();
+        this.caregiverFirstName = caregiver.getFirstName();
+        this.caregiverSurname = caregiver.getSurname();
+        this.caregiverTelephone = caregiver.getTelephone();
+    }
+
+    /**
+     * Constructor to initiate an object of class <code>TreatmentDetails</code> with the given parameter. Use this
+     * constructor to initiate objects, which are already persisted and have a treatment id (tid).
+     *
+     * @param tid Id of the treatment.
+     * @param pid Id of the treated patient.
+     * @param cgID Id of the caregiver.
+     * @param date Date of the Treatment.
+     * @param begin Time of the start of the treatment.
+     * @param end Time of the end of the treatment.
+     * @param description Description of the treatment.
+     * @param remarks Remarks to the treatment.
+     * @param patientFirstName First name of the treated patient.
+     * @param patientSurname Surname of the treated patient.
+     * @param careLevel Care level of the treated patient.
+     * @param caregiverFirstName First name of the caregiver.
+     * @param caregiverSurname Surname of the caregiver.
+     * @param caregiverTelephone Telephone number of the caregiver.
+     */
+    public TreatmentDetails(long tid, long pid, long cgID, LocalDate date, LocalTime begin, LocalTime end,
+                            String description, String remarks, String patientFirstName, String patientSurname,
+                            String careLevel, String caregiverFirstName, String caregiverSurname,
+                            String caregiverTelephone) {
+        super(tid, pid, cgID, date, begin, end, description, remarks);
+        this.patientFirstName = patientFirstName;
+        this.patientSurname = patientSurname;
+        this.careLevel = careLevel;
+        this.caregiverFirstName = caregiverFirstName;
+        this.caregiverSurname = caregiverSurname;
+        this.caregiverTelephone = caregiverTelephone;
+    }
+
+    public String getPatientFirstName() {
+        return patientFirstName;
+    }
+
+    public String getPatientSurname() {
+        return patientSurname;
+    }
+
+    /**
+     * Returns the name of the patient as shown in tables and labels.
+     *
+     * @return the name in the format "surname, first name", or an empty string if the patient is unknown
+     */
+    public String getPatientName() {
+        return formatName(patientSurname, patientFirstName);
+    }
+
+    public String getCareLevel() {
+        return careLevel;
+    }
+
+    public String getCaregiverFirstName() {
+        return caregiverFirstName;
+    }
+
+    public String getCaregiverSurname() {
+        return caregiverSurname;
+    }
+
+    /**
+     * Returns the name of the caregiver as shown in tables and labels.
+     *
+     * @return the name in the format "surname, first name", or an empty string if the caregiver is unknown
+     */
+    public String getCaregiverName() {
+        return formatName(caregiverSurname, caregiverFirstName);
+    }
+
+    public String getCaregiverTelephone() {
+        return caregiverTelephone;
+    }
+
+    /**
+     * Joins surname and first name of a person.
+     *
+     * @param surname the surname, <code>null</code> if the person is unknown
+     * @param firstName the first name, <code>null</code> if the person is unknown
+     * @return the name in the format "surname, first name", or an empty string if the person is unknown
+     */
+    private static String formatName(String surname, String firstName) {
+        if (surname == null && firstName == null) {
+            return "";
+        }
+        return surname + ", " + firstName;
+    }
+}
@@ -0,0 +1,44 @@
+package de.hitec.nhplus.model;
+
+/**
+ * Represents a treatment found by a full-text search <br>
+ * <br>
+ * This class extends {@link TreatmentDetails} by a snippet of the matching description or remarks and the rank of
+ * the match, so search results can be shown in the same table as all other treatments.
+ */
+public class TreatmentSearchResult extends TreatmentDetails {
+
+    /**
+     * The part of the description or remarks matching the search, with the search terms in square brackets.
+     */
+    private final String snippet;
+
+    /**
+     * The rank of the match; lower values are better matches.
+     */
+    private final double rank;
+
+    /**
+     * Constructor to initiate an object of class <code>TreatmentSearchResult</code> for a found treatment.
+     *
+     * @param details The found treatment with the data of its patient and caregiver.
+     * @param snippet The part of the description or remarks matching the search.
+     * @param rank The rank of the match, lower values are better matches.
+     */
+    public TreatmentSearchResult(TreatmentDetails details, String snippet, double rank) {
+        super(details.getTid(), details.getPid(), details.getCgID(), details.getLocalDate(), details.getLocalBegin(),
+                details.getLocalEnd(), details.getDescription(), details.getRemarks(), details.getPatientFirstName(),
+                details.getPatientSurname(), details.getCareLevel(), details.getCaregiverFirstName(),
+                details.getCaregiverSurname(), details.getCaregiverTelephone());
+        this.snippet = snippet;
+        this.rank = rank;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public double getRank() {
+        return rank;
+    }
+}
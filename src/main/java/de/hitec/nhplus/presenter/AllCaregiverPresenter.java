@@ -1,13 +1,18 @@
 package de.hitec.nhplus.presenter;
 
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.ChangeSet;
 import de.hitec.nhplus.datastorage.CaregiverDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
 import de.hitec.nhplus.model.Caregiver;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -16,11 +21,12 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The <code>AllCareGiverPresenter</code> contains the entire logic of the caregiver view. It determines which data is displayed and how to react to events.
  */
-public class AllCaregiverPresenter {
+public class AllCaregiverPresenter implements ViewRegistry.Refreshable {
 
     @FXML
     private TableView<Caregiver> tableView;
@@ -53,7 +59,13 @@ public class AllCaregiverPresenter {
     private Button btnDelete;
 
     private final ObservableList<Caregiver> caregivers = FXCollections.observableArrayList();
-    private CaregiverDao dao;
+    private final AsyncDao<Caregiver, CaregiverDao> dao = DaoFactory.getDaoFactory().createAsyncCaregiverDao();
+    private WriteBehindQueue<Caregiver> updateQueue;
+
+    /**
+     * The version of the change log the shown caregivers were read at, <code>-1</code> while they are loaded.
+     */
+    private long changeVersion = -1;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. At this point of the lifecycle of the Presenter, the fields can be accessed and
@@ -62,6 +74,16 @@ public class AllCaregiverPresenter {
     @FXML
     private void initialize(){
         readAllAndShowInTableView();
+        this.updateQueue = new WriteBehindQueue<>(this.dao, Caregiver::getCgID, Caregiver::snapshot,
+                Caregiver::getDirtyFields);
+        this.updateQueue.setFailureHandler((failed, exception) ->
+                Platform.runLater(() -> handleUpdateFailure(exception)));
+        // writes pending edits as soon as the view is replaced by another one
+        this.tableView.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene == null) {
+                this.updateQueue.flush();
+            }
+        });
 
         this.colID.setCellValueFactory(new PropertyValueFactory<>("cgID"));
 
@@ -93,16 +115,42 @@ public class AllCaregiverPresenter {
     }
 
     /**
-     * Loads all caregivers from the database and displays them in the table view.
+     * Loads all caregivers from the database in the background and displays them in the table view. The table shows
+     * a progress indicator until they arrive.
      */
     private void readAllAndShowInTableView() {
         this.caregivers.clear();
-        this.dao = DaoFactory.getDaoFactory().createCaregiverDao();
-        try {
-            this.caregivers.addAll(this.dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        this.changeVersion = -1;
+        FxAsync.onFxThread(FxAsync.showLoading(this.tableView, this.dao.call(CaregiverDao::readAllWithChangeVersion)),
+                this::applyChanges);
+    }
+
+    /**
+     * Shows the changes of the caregivers since they were read, e.g. when the view is shown again. Pending edits are
+     * written first; then only the inserted, updated and deleted caregivers are read by {@link CaregiverDao} in the
+     * background and applied to the table, so the table keeps its selection and scroll position. Does nothing while
+     * the caregivers are loaded.
+     */
+    @Override
+    public void refresh() {
+        if (this.changeVersion < 0) {
+            return;
         }
+        long version = this.changeVersion;
+        CompletableFuture<ChangeSet<Caregiver>> changes = this.updateQueue.flush()
+                .handle((result, error) -> null)
+                .thenCompose(flushed -> this.dao.call(dao -> dao.readChangesSince(version)));
+        FxAsync.onFxThread(changes, this::applyChanges);
+    }
+
+    /**
+     * Applies read changes to the list of all caregivers, which is the data source of the <code>TableView</code>.
+     *
+     * @param changes all caregivers or the changes since the last read
+     */
+    private void applyChanges(ChangeSet<Caregiver> changes) {
+        changes.applyTo(this.caregivers, Caregiver::getCgID);
+        this.changeVersion = Math.max(this.changeVersion, changes.getVersion());
     }
 
     /**
@@ -148,23 +196,21 @@ public class AllCaregiverPresenter {
     }
 
     /**
-     * Deletes the selected caregiver from the database and table view.
+     * Deletes the selected caregiver from the database in the background and removes it from the table view once it
+     * is deleted.
      */
     @FXML
     public void handleDelete(){
         Caregiver caregiverSelection = tableView.getSelectionModel().getSelectedItem();
         if (caregiverSelection != null) {
-            try {
-                DaoFactory.getDaoFactory().createCaregiverDao().deleteById(caregiverSelection.getCgID());
-                this.tableView.getItems().remove(caregiverSelection);
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
+            this.updateQueue.discard(caregiverSelection.getCgID());
+            FxAsync.onFxThread(this.dao.deleteById(caregiverSelection.getCgID()),
+                    deleted -> this.tableView.getItems().remove(caregiverSelection));
         }
     }
 
     /**
-     * Adds a new caregiver to the database and refreshes the table view.
+     * Adds a new caregiver to the database in the background and shows it in the table view once it is stored.
      */
     @FXML
     public void handleAdd(){
@@ -172,12 +218,7 @@ public class AllCaregiverPresenter {
         String firstName = txfFirstname.getText();
         String telephone = txfTelephone.getText();
 
-        try {
-            this.dao.create(new Caregiver(surname, firstName, telephone, true));
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        readAllAndShowInTableView();
+        FxAsync.onFxThread(this.dao.create(new Caregiver(surname, firstName, telephone, true)), this.caregivers::add);
         clearTextFields();
     }
 
@@ -191,16 +232,29 @@ public class AllCaregiverPresenter {
     }
 
     /**
-     * Updates a caregiver in the database with the edited values.
+     * Queues the edited caregiver to be updated in the database. Successive edits are written together in a single
+     * transaction by the {@link WriteBehindQueue}.
      *
      * @param event Cell edit event
      */
     private void doUpdate(TableColumn.CellEditEvent<Caregiver, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        this.updateQueue.submit(event.getRowValue());
+    }
+
+    /**
+     * Informs the user that edited caregivers could not be saved and reloads the table, so it shows the stored data
+     * again.
+     *
+     * @param exception the database error
+     */
+    private void handleUpdateFailure(SQLException exception) {
+        exception.printStackTrace();
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Fehler");
+        alert.setHeaderText("Änderungen konnten nicht gespeichert werden!");
+        alert.setContentText("Die Tabelle zeigt wieder die gespeicherten Daten.");
+        alert.showAndWait();
+        readAllAndShowInTableView();
     }
 
 }
@@ -1,12 +1,17 @@
 package de.hitec.nhplus.presenter;
 
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.ChangeSet;
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
 import de.hitec.nhplus.datastorage.PatientDao;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -17,13 +22,14 @@ import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 import java.time.LocalDate;
 
 
 /**
  * The <code>AllPatientPresenter</code> contains the entire logic of the patient view. It determines which data is displayed and how to react to events.
  */
-public class AllPatientPresenter {
+public class AllPatientPresenter implements ViewRegistry.Refreshable {
 
     @FXML
     private TableView<Patient> tableView;
@@ -68,7 +74,13 @@ public class AllPatientPresenter {
     private TextField textFieldRoomNumber;
 
     private final ObservableList<Patient> patients = FXCollections.observableArrayList();
-    private PatientDao dao;
+    private final AsyncDao<Patient, PatientDao> dao = DaoFactory.getDaoFactory().createAsyncPatientDao();
+    private WriteBehindQueue<Patient> updateQueue;
+
+    /**
+     * The version of the change log the shown patients were read at, <code>-1</code> while they are loaded.
+     */
+    private long changeVersion = -1;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. At this point of the lifecycle of the Presenter, the fields can be accessed and
@@ -76,6 +88,16 @@ public class AllPatientPresenter {
      */
     public void initialize() {
         this.readAllAndShowInTableView();
+        this.updateQueue = new WriteBehindQueue<>(this.dao, Patient::getPid, Patient::snapshot,
+                Patient::getDirtyFields);
+        this.updateQueue.setFailureHandler((failed, exception) ->
+                Platform.runLater(() -> handleUpdateFailure(exception)));
+        // writes pending edits as soon as the view is replaced by another one
+        this.tableView.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene == null) {
+                this.updateQueue.flush();
+            }
+        });
 
         this.columnId.setCellValueFactory(new PropertyValueFactory<>("pid"));
 
@@ -173,54 +195,90 @@ public class AllPatientPresenter {
     }
 
     /**
-     * Updates a patient by calling the method <code>update()</code> of {@link PatientDao}.
+     * Queues the changed patient to be updated by {@link PatientDao}. Successive edits are written together in a
+     * single transaction by the {@link WriteBehindQueue}.
      *
      * @param event Event including the changed object and the change.
      */
     private void doUpdate(TableColumn.CellEditEvent<Patient, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        this.updateQueue.submit(event.getRowValue());
+    }
+
+    /**
+     * Informs the user that edited patients could not be saved and reloads the table, so it shows the stored data
+     * again.
+     *
+     * @param exception the database error
+     */
+    private void handleUpdateFailure(SQLException exception) {
+        exception.printStackTrace();
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Fehler");
+        alert.setHeaderText("Änderungen konnten nicht gespeichert werden!");
+        alert.setContentText("Die Tabelle zeigt wieder die gespeicherten Daten.");
+        alert.showAndWait();
+        readAllAndShowInTableView();
     }
 
     /**
      * Reloads all patients to the table by clearing the list of all patients and filling it again by all persisted
-     * patients, delivered by {@link PatientDao}.
+     * patients, delivered by {@link PatientDao} in the background. The table shows a progress indicator until they
+     * arrive.
      */
     private void readAllAndShowInTableView() {
         this.patients.clear();
-        this.dao = DaoFactory.getDaoFactory().createPatientDAO();
-        try {
-            this.patients.addAll(this.dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        this.changeVersion = -1;
+        FxAsync.onFxThread(FxAsync.showLoading(this.tableView, this.dao.call(PatientDao::readAllWithChangeVersion)),
+                this::applyChanges);
+    }
+
+    /**
+     * Shows the changes of the patients since they were read, e.g. when the view is shown again. Pending edits are
+     * written first; then only the inserted, updated and deleted patients are read by {@link PatientDao} in the
+     * background and applied to the table, so the table keeps its selection and scroll position. Does nothing while
+     * the patients are loaded.
+     */
+    @Override
+    public void refresh() {
+        if (this.changeVersion < 0) {
+            return;
         }
+        long version = this.changeVersion;
+        CompletableFuture<ChangeSet<Patient>> changes = this.updateQueue.flush()
+                .handle((result, error) -> null)
+                .thenCompose(flushed -> this.dao.call(dao -> dao.readChangesSince(version)));
+        FxAsync.onFxThread(changes, this::applyChanges);
+    }
+
+    /**
+     * Applies read changes to the list of all patients, which is the data source of the <code>TableView</code>.
+     *
+     * @param changes all patients or the changes since the last read
+     */
+    private void applyChanges(ChangeSet<Patient> changes) {
+        changes.applyTo(this.patients, Patient::getPid);
+        this.changeVersion = Math.max(this.changeVersion, changes.getVersion());
     }
 
     /**
      * This method handles events fired by the button to delete patients. It calls {@link PatientDao} to delete the
-     * patient from the database and removes the object from the list, which is the data source of the
-     * <code>TableView</code>.
+     * patient from the database in the background and removes the object from the list, which is the data source of
+     * the <code>TableView</code>, once it is deleted.
      */
     @FXML
     public void handleDelete() {
         Patient selectedItem = this.tableView.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
-            try {
-                DaoFactory.getDaoFactory().createPatientDAO().deleteById(selectedItem.getPid());
-                this.tableView.getItems().remove(selectedItem);
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
+            this.updateQueue.discard(selectedItem.getPid());
+            FxAsync.onFxThread(this.dao.deleteById(selectedItem.getPid()),
+                    deleted -> this.tableView.getItems().remove(selectedItem));
         }
     }
 
     /**
      * This method handles the events fired by the button to add a patient. It collects the data from the
      * <code>TextField</code>s, creates an object of class <code>Patient</code> of it and passes the object to
-     * {@link PatientDao} to persist the data.
+     * {@link PatientDao} to persist the data in the background. The patient is shown once it is stored.
      */
     @FXML
     public void handleAdd() {
@@ -230,12 +288,8 @@ public class AllPatientPresenter {
         LocalDate date = DateConverter.convertStringToLocalDate(birthday);
         String careLevel = this.textFieldCareLevel.getText();
         String roomNumber = this.textFieldRoomNumber.getText();
-        try {
-            this.dao.create(new Patient(firstName, surname, date, careLevel, roomNumber));
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        readAllAndShowInTableView();
+        FxAsync.onFxThread(this.dao.create(new Patient(firstName, surname, date, careLevel, roomNumber)),
+                this.patients::add);
         clearTextfields();
     }
 
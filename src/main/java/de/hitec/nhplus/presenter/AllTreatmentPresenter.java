@@ -1,6 +1,7 @@
 package de.hitec.nhplus.presenter;
 
 import de.hitec.nhplus.Main;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.CaregiverDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.PatientDao;
@@ -17,71 +18,153 @@ import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.TreatmentDetails;
+import de.hitec.nhplus.model.TreatmentSearchResult;
+import javafx.beans.property.SimpleStringProperty;
+import de.hitec.nhplus.utils.DateConverter;
+import javafx.util.StringConverter;
 
 import java.io.IOException;
-import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * The <code>AllTreatmentPresenter</code> contains the entire logic of the treatment view. It determines which data is displayed and how to react to events.
  */
-public class AllTreatmentPresenter {
+public class AllTreatmentPresenter implements ViewRegistry.Refreshable {
+
+    /**
+     * The entry of the combo boxes for all patients or caregivers. Generated ids start at 1, so it is no valid id.
+     */
+    private static final long ALL = 0;
+
+    /**
+     * The maximum number of treatments shown as search results.
+     */
+    private static final int SEARCH_LIMIT = 100;
+
+    @FXML
+    private TableView<TreatmentDetails> tableView;
+
+    @FXML
+    private TableColumn<TreatmentDetails, Integer> columnId;
+
+    @FXML
+    private TableColumn<TreatmentDetails, Integer> columnPid;
+
+    @FXML
+    private TableColumn<TreatmentDetails, String> columnPatientName;
 
     @FXML
-    private TableView<Treatment> tableView;
+    private TableColumn<TreatmentDetails, String> columnCaregiverName;
 
     @FXML
-    private TableColumn<Treatment, Integer> columnId;
+    private TableColumn<TreatmentDetails, String> columnDate;
 
     @FXML
-    private TableColumn<Treatment, Integer> columnPid;
+    private TableColumn<TreatmentDetails, String> columnBegin;
 
     @FXML
-    private TableColumn<Treatment, String> columnDate;
+    private TableColumn<TreatmentDetails, String> columnEnd;
 
     @FXML
-    private TableColumn<Treatment, String> columnBegin;
+    private TableColumn<TreatmentDetails, String> columnDescription;
 
     @FXML
-    private TableColumn<Treatment, String> columnEnd;
+    private TableColumn<TreatmentDetails, String> columnSnippet;
 
     @FXML
-    private TableColumn<Treatment, String> columnDescription;
+    private ComboBox<Long> comboBoxPatientSelection;
 
     @FXML
-    private ComboBox<String> comboBoxPatientSelection;
+    public ComboBox<Long> comboBoxCaregiverSelection;
 
     @FXML
-    public ComboBox<String> comboBoxCaregiverSelection;
+    private DatePicker datePickerFrom;
+
+    @FXML
+    private DatePicker datePickerTo;
 
     @FXML
     private Button buttonDelete;
 
-    private final ObservableList<Treatment> treatments = FXCollections.observableArrayList();
-    private TreatmentDao dao;
-    private final ObservableList<String> patientSelection = FXCollections.observableArrayList();
-    private final ObservableList<String> caregiverSelection = FXCollections.observableArrayList();
-    private ArrayList<Patient> patientList;
-    private ArrayList<Caregiver> caregiverList;
+    @FXML
+    private TextField textFieldSearch;
+
+    private final ObservableList<TreatmentDetails> treatments = FXCollections.observableArrayList();
+    private PagedTableLoader<TreatmentDetails> treatmentLoader;
+    private AsyncDao<Treatment, TreatmentDao> dao;
+
+    /**
+     * The ids of the entries of the combo boxes, starting with {@link #ALL} and sorted by surname and first name.
+     */
+    private final ObservableList<Long> patientSelection = FXCollections.observableArrayList();
+    private final ObservableList<Long> caregiverSelection = FXCollections.observableArrayList();
+
+    /**
+     * The patients and caregivers of the combo boxes by their id.
+     */
+    private final Map<Long, Patient> patientIndex = new HashMap<>();
+    private final Map<Long, Caregiver> caregiverIndex = new HashMap<>();
+
+    /**
+     * The filter of the treatments shown in the table, <code>null</code> if none or search results are shown.
+     */
+    private TreatmentFilter shownFilter;
+
+    /**
+     * Whether the filter controls are reset by code, so their events must not read treatments.
+     */
+    private boolean resettingFilter;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. At this point of the lifecycle of the Presenter, the fields can be accessed and
      * configured.
      */
     public void initialize() {
+        this.treatmentLoader = new PagedTableLoader<>(this.tableView, this.treatments, TreatmentDetails::getTid);
+        StringConverter<LocalDate> dateConverter = new StringConverter<>() {
+            @Override
+            public String toString(LocalDate localDate) {
+                return (localDate == null) ? "" : DateConverter.convertLocalDateToString(localDate);
+            }
+
+            @Override
+            public LocalDate fromString(String localDate) {
+                if (localDate == null || localDate.isBlank()) {
+                    return null;
+                }
+                return DateConverter.convertStringToLocalDate(localDate);
+            }
+        };
+        this.datePickerFrom.setConverter(dateConverter);
+        this.datePickerTo.setConverter(dateConverter);
         readAllAndShowInTableView();
+        comboBoxPatientSelection.setConverter(createSelectionConverter(this.patientIndex,
+                patient -> patient.getSurname() + ", " + patient.getFirstName()));
         comboBoxPatientSelection.setItems(patientSelection);
         comboBoxPatientSelection.getSelectionModel().select(0);
 
+        comboBoxCaregiverSelection.setConverter(createSelectionConverter(this.caregiverIndex,
+                caregiver -> caregiver.getSurname() + ", " + caregiver.getFirstName()));
         comboBoxCaregiverSelection.setItems(caregiverSelection);
         comboBoxCaregiverSelection.getSelectionModel().select(0);
 
         this.columnId.setCellValueFactory(new PropertyValueFactory<>("tid"));
         this.columnPid.setCellValueFactory(new PropertyValueFactory<>("pid"));
+        this.columnPatientName.setCellValueFactory(new PropertyValueFactory<>("patientName"));
+        this.columnCaregiverName.setCellValueFactory(new PropertyValueFactory<>("caregiverName"));
         this.columnDate.setCellValueFactory(new PropertyValueFactory<>("date"));
         this.columnBegin.setCellValueFactory(new PropertyValueFactory<>("begin"));
         this.columnEnd.setCellValueFactory(new PropertyValueFactory<>("end"));
         this.columnDescription.setCellValueFactory(new PropertyValueFactory<>("description"));
+        this.columnSnippet.setCellValueFactory(cellData -> new SimpleStringProperty(
+                cellData.getValue() instanceof TreatmentSearchResult result ? result.getSnippet() : ""));
         this.tableView.setItems(this.treatments);
 
         // Disabling the button to delete treatments as long, as no treatment was selected.
@@ -94,124 +177,284 @@ public class AllTreatmentPresenter {
     }
 
     /**
-     * Loads all treatments from the database and displays them in the table view.
+     * Displays the first page of all treatments in the table view. Further pages are loaded while scrolling. Each
+     * page is read together with the names of patients and caregivers in a single query.
      */
     public void readAllAndShowInTableView() {
-        this.treatments.clear();
-        comboBoxPatientSelection.getSelectionModel().select(0);
-        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        endSearch();
+        this.resettingFilter = true;
         try {
-            this.treatments.addAll(dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+            this.datePickerFrom.setValue(null);
+            this.datePickerTo.setValue(null);
+            comboBoxPatientSelection.getSelectionModel().select(ALL);
+            comboBoxCaregiverSelection.getSelectionModel().select(ALL);
+        } finally {
+            this.resettingFilter = false;
+        }
+        this.shownFilter = new TreatmentFilter(ALL, ALL, null, null);
+        this.dao = DaoFactory.getDaoFactory().createAsyncTreatmentDao();
+        this.treatmentLoader.load(this.dao.getDao()::readPage);
+    }
+
+    /**
+     * Shows the changes made since the view was shown last. The entries of the combo boxes are read again, keeping
+     * the selection, and the treatments of the current filter or search are read again. Treatments are read in full,
+     * because they show the names of patients and caregivers, which may have been changed in the other views.
+     */
+    @Override
+    public void refresh() {
+        createComboBoxData();
+        if (this.shownFilter == null) {
+            handleSearch();
+            return;
+        }
+        this.shownFilter = null;
+        handleComboBox();
+    }
+
+    /**
+     * Shows a newly created treatment without reading the treatments again. The treatment belongs to the selected
+     * patient and caregiver, so it matches the current filter. While search results are shown, it is not added.
+     *
+     * @param treatment the created treatment with its generated id
+     */
+    public void addTreatment(TreatmentDetails treatment) {
+        if (this.shownFilter == null) {
+            return;
+        }
+        if (!isDateRangeSelected() || (!treatment.getLocalDate().isBefore(getSelectedFrom())
+                && !treatment.getLocalDate().isAfter(getSelectedTo()))) {
+            this.treatmentLoader.add(treatment);
         }
     }
 
     /**
      * Populates the patient and caregiver combo boxes with all entries from the database.
-     * Adds an "alle" (all) option to each ComboBox for global filtering.
+     * Adds an "alle" (all) option to each ComboBox for global filtering. Both lists are read in the background and
+     * shown as soon as they arrive; after the first visit they usually come from the entity caches of the DAOs. <br>
+     * <br>
+     * The combo boxes hold the ids of the entries, sorted by surname and first name, and show their names. The
+     * entities are indexed by their id, so a selection is resolved without searching, even if two patients or
+     * caregivers share a surname.
      */
     private void createComboBoxData() {
-        PatientDao pDao = DaoFactory.getDaoFactory().createPatientDAO();
-        CaregiverDao cgDao = DaoFactory.getDaoFactory().createCaregiverDao();
+        AsyncDao<Patient, PatientDao> pDao = DaoFactory.getDaoFactory().createAsyncPatientDao();
+        AsyncDao<Caregiver, CaregiverDao> cgDao = DaoFactory.getDaoFactory().createAsyncCaregiverDao();
+        FxAsync.onFxThread(pDao.readAll(), patients -> {
+            List<Patient> sorted = new ArrayList<>(patients);
+            sorted.sort(Comparator.comparing(Patient::getSurname).thenComparing(Patient::getFirstName));
+            this.patientIndex.clear();
+            List<Long> selection = new ArrayList<>(sorted.size() + 1);
+            selection.add(ALL);
+            for (Patient patient : sorted) {
+                this.patientIndex.put(patient.getPid(), patient);
+                selection.add(patient.getPid());
+            }
+            fillSelection(this.comboBoxPatientSelection, this.patientSelection, selection);
+        });
+        FxAsync.onFxThread(cgDao.readAll(), caregivers -> {
+            List<Caregiver> sorted = new ArrayList<>(caregivers);
+            sorted.sort(Comparator.comparing(Caregiver::getSurname).thenComparing(Caregiver::getFirstName));
+            this.caregiverIndex.clear();
+            List<Long> selection = new ArrayList<>(sorted.size() + 1);
+            selection.add(ALL);
+            for (Caregiver caregiver : sorted) {
+                this.caregiverIndex.put(caregiver.getCgID(), caregiver);
+                selection.add(caregiver.getCgID());
+            }
+            fillSelection(this.comboBoxCaregiverSelection, this.caregiverSelection, selection);
+        });
+    }
+
+    /**
+     * Replaces the entries of a combo box and selects the entry for all, unless an entry is selected.
+     *
+     * @param comboBox the combo box
+     * @param items the entries of the combo box
+     * @param ids the ids of the new entries
+     */
+    private void fillSelection(ComboBox<Long> comboBox, ObservableList<Long> items, List<Long> ids) {
+        this.resettingFilter = true;
         try {
-            patientList = (ArrayList<Patient>) pDao.readAll();
-            this.patientSelection.add("alle");
-            for (Patient patient : patientList) {
-                this.patientSelection.add(patient.getSurname());
+            Long selected = comboBox.getValue();
+            items.setAll(ids);
+            comboBox.getSelectionModel().select(selected != null && ids.contains(selected) ? selected : ALL);
+        } finally {
+            this.resettingFilter = false;
+        }
+    }
+
+    /**
+     * Creates the converter showing the name of the entity with the id of a combo box entry.
+     *
+     * @param index the entities by their id
+     * @param name returns the name to show for an entity
+     * @param <E> Type of the entity.
+     * @return the converter
+     */
+    private static <E> StringConverter<Long> createSelectionConverter(Map<Long, E> index, Function<E, String> name) {
+        return new StringConverter<>() {
+            @Override
+            public String toString(Long id) {
+                if (id == null) {
+                    return "";
+                }
+                if (id == ALL) {
+                    return "alle";
+                }
+                E entity = index.get(id);
+                return entity == null ? "" : name.apply(entity);
             }
 
-            caregiverList = (ArrayList<Caregiver>) cgDao.readAll();
-            this.caregiverSelection.add("alle");
-            for (Caregiver caregiver : caregiverList) {
-                this.caregiverSelection.add(caregiver.getSurname());
+            @Override
+            public Long fromString(String text) {
+                // the combo boxes are not editable
+                return null;
             }
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        };
     }
 
     /**
-     * Handles filtering treatments based on the selected patient and caregiver from the combo boxes.
-     * Loads filtered data from the database and updates the TableView.
+     * Handles filtering treatments based on the selected patient and caregiver from the combo boxes and the date
+     * range from the date pickers. Without a date range, the first page of the filtered treatments is displayed and
+     * further pages are loaded while scrolling. With a date range, only the treatments of the range are read. The
+     * treatments are only read if the filter differs from the filter of the shown treatments.
      */
     @FXML
     private void handleComboBox() {
-        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        this.treatments.clear();
+        if (this.resettingFilter) {
+            return;
+        }
+        endSearch();
+        long pid = getSelectedId(this.comboBoxPatientSelection);
+        long cgID = getSelectedId(this.comboBoxCaregiverSelection);
+        TreatmentFilter filter = new TreatmentFilter(pid, cgID, this.datePickerFrom.getValue(),
+                this.datePickerTo.getValue());
+        if (filter.equals(this.shownFilter)) {
+            return;
+        }
+        this.shownFilter = filter;
 
-        String selectedPatient = comboBoxPatientSelection.getSelectionModel().getSelectedItem();
-        String selectedCaregiver = comboBoxCaregiverSelection.getSelectionModel().getSelectedItem();
+        this.dao = DaoFactory.getDaoFactory().createAsyncTreatmentDao();
+        TreatmentDao treatmentDao = this.dao.getDao();
 
-        try {
-            if ("alle".equals(selectedPatient) && "alle".equals(selectedCaregiver)) {
-                this.treatments.addAll(this.dao.readAll());
-            } else if (!"alle".equals(selectedPatient) && "alle".equals(selectedCaregiver)) {
-                Patient patient = searchInPatientList(selectedPatient);
-                if (patient != null) {
-                    this.treatments.addAll(this.dao.readTreatmentsByPid(patient.getPid()));
-                }
-            } else if ("alle".equals(selectedPatient)) {
-                Caregiver caregiver = searchInCaregiverList(selectedCaregiver);
-                if (caregiver != null) {
-                    this.treatments.addAll(this.dao.readTreatmentsByCgID(caregiver.getCgID()));
-                }
-            } else {
-               Patient patient = searchInPatientList(selectedPatient);
-               Caregiver caregiver = searchInCaregiverList(selectedCaregiver);
-               if (patient != null && caregiver != null) {
-                   this.treatments.addAll(this.dao.readTreatmentsByPidAndCgID(patient.getPid(),caregiver.getCgID()));
-               }
-            }
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        if (isDateRangeSelected()) {
+            showTreatmentsOfDateRange(treatmentDao, pid, cgID);
+            return;
+        }
+
+        if (pid == ALL && cgID == ALL) {
+            this.treatmentLoader.load(treatmentDao::readPage);
+        } else if (cgID == ALL) {
+            this.treatmentLoader.load((afterTid, limit) -> treatmentDao.readPageByPid(pid, afterTid, limit));
+        } else if (pid == ALL) {
+            this.treatmentLoader.load((afterTid, limit) -> treatmentDao.readPageByCgID(cgID, afterTid, limit));
+        } else {
+            this.treatmentLoader.load((afterTid, limit) ->
+                    treatmentDao.readPageByPidAndCgID(pid, cgID, afterTid, limit));
         }
     }
 
     /**
-     * Searches for a patient in the loaded patient list by surname.
-     *
-     * @param surname the surname to search for
-     * @return the matching Patient object, or null if not found
+     * Searches the descriptions and remarks of all treatments for the words entered in the search field and shows the
+     * best matches, ignoring the selected patient, caregiver and date range. The matching part of each treatment is
+     * shown in an additional column. With an empty search field, the treatments of the selected filter are shown
+     * again.
      */
-    private Patient searchInPatientList(String surname) {
-        for (Patient patient : this.patientList) {
-            if (patient.getSurname().equals(surname)) {
-                return patient;
-            }
+    @FXML
+    private void handleSearch() {
+        String text = this.textFieldSearch.getText();
+        if (text == null || text.isBlank()) {
+            this.shownFilter = null;
+            handleComboBox();
+            return;
         }
-        return null;
+        this.shownFilter = null;
+        this.columnSnippet.setVisible(true);
+        this.dao = DaoFactory.getDaoFactory().createAsyncTreatmentDao();
+        TreatmentDao treatmentDao = this.dao.getDao();
+        this.treatmentLoader.loadAll(() -> new ArrayList<>(treatmentDao.search(text, SEARCH_LIMIT)));
     }
 
     /**
-     * Searches for a caregiver in the loaded caregiver list by surname.
+     * Hides the search results column and clears the search field, before the treatments of a filter are shown.
+     */
+    private void endSearch() {
+        this.columnSnippet.setVisible(false);
+        this.textFieldSearch.clear();
+    }
+
+    /**
+     * Displays all treatments of the selected date range, filtered by the selected patient and caregiver. The
+     * treatments are read in the background in a single step.
      *
-     * @param surname the surname to search for
-     * @return the matching Caregiver object, or null if not found
+     * @param treatmentDao the DAO to read the treatments with
+     * @param pid the id of the selected patient, {@link #ALL} for all patients
+     * @param cgID the id of the selected caregiver, {@link #ALL} for all caregivers
      */
-    private Caregiver searchInCaregiverList(String surname) {
-        for (Caregiver caregiver : this.caregiverList) {
-            if (caregiver.getSurname().equals(surname)) {
-                return caregiver;
-            }
+    private void showTreatmentsOfDateRange(TreatmentDao treatmentDao, long pid, long cgID) {
+        LocalDate from = getSelectedFrom();
+        LocalDate to = getSelectedTo();
+        if (pid != ALL && cgID != ALL) {
+            this.treatmentLoader.loadAll(() -> treatmentDao.readTreatmentsByPidAndCgIDBetween(pid, cgID, from, to));
+        } else if (pid != ALL) {
+            this.treatmentLoader.loadAll(() -> treatmentDao.readTreatmentsByPidBetween(pid, from, to));
+        } else if (cgID != ALL) {
+            this.treatmentLoader.loadAll(() -> treatmentDao.readTreatmentsByCgIDBetween(cgID, from, to));
+        } else {
+            this.treatmentLoader.loadAll(() -> treatmentDao.readTreatmentsBetween(from, to));
         }
-        return null;
+    }
+
+    /**
+     * Returns whether a start or an end date is selected in the date pickers.
+     *
+     * @return <code>true</code> if the treatments are filtered by date, <code>false</code> otherwise
+     */
+    private boolean isDateRangeSelected() {
+        return this.datePickerFrom.getValue() != null || this.datePickerTo.getValue() != null;
+    }
+
+    /**
+     * Returns the first day of the selected date range.
+     *
+     * @return the selected start date, or <code>LocalDate.MIN</code> if none is selected
+     */
+    private LocalDate getSelectedFrom() {
+        return this.datePickerFrom.getValue() != null ? this.datePickerFrom.getValue() : LocalDate.MIN;
+    }
+
+    /**
+     * Returns the last day of the selected date range.
+     *
+     * @return the selected end date, or <code>LocalDate.MAX</code> if none is selected
+     */
+    private LocalDate getSelectedTo() {
+        return this.datePickerTo.getValue() != null ? this.datePickerTo.getValue() : LocalDate.MAX;
+    }
+
+    /**
+     * Returns the id of the entry selected in a combo box.
+     *
+     * @param comboBox the patient or caregiver combo box
+     * @return the selected id, {@link #ALL} if "alle" or nothing is selected
+     */
+    private static long getSelectedId(ComboBox<Long> comboBox) {
+        Long id = comboBox.getValue();
+        return id == null ? ALL : id;
     }
 
     /**
      * Deletes the selected treatment from both the TableView and the database.
-     * Triggered by the delete button.
+     * Triggered by the delete button. The treatment is removed from the TableView at once and deleted from the
+     * database in the background.
      */
     @FXML
     public void handleDelete() {
         int index = this.tableView.getSelectionModel().getSelectedIndex();
         Treatment t = this.treatments.remove(index);
-        TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            dao.deleteById(t.getTid());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        AsyncDao<Treatment, TreatmentDao> dao = DaoFactory.getDaoFactory().createAsyncTreatmentDao();
+        FxAsync.onFxThread(dao.deleteById(t.getTid()), deleted -> {});
     }
 
     /**
@@ -222,10 +465,8 @@ public class AllTreatmentPresenter {
     @FXML
     public void handleNewTreatment() {
         try {
-            String selectedPatient = this.comboBoxPatientSelection.getSelectionModel().getSelectedItem();
-            String selectedCaregiver = this.comboBoxCaregiverSelection.getSelectionModel().getSelectedItem();
-            Patient patient = searchInPatientList(selectedPatient);
-            Caregiver caregiver = searchInCaregiverList(selectedCaregiver);
+            Patient patient = this.patientIndex.get(getSelectedId(this.comboBoxPatientSelection));
+            Caregiver caregiver = this.caregiverIndex.get(getSelectedId(this.comboBoxCaregiverSelection));
             newTreatmentWindow(patient, caregiver);
         } catch (NullPointerException exception) {
             Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -245,7 +486,7 @@ public class AllTreatmentPresenter {
         tableView.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2 && (tableView.getSelectionModel().getSelectedItem() != null)) {
                 int index = this.tableView.getSelectionModel().getSelectedIndex();
-                Treatment treatment = this.treatments.get(index);
+                TreatmentDetails treatment = this.treatments.get(index);
                 treatmentWindow(treatment);
             }
         });
@@ -282,7 +523,7 @@ public class AllTreatmentPresenter {
      *
      * @param treatment the treatment to view or edit
      */
-    public void treatmentWindow(Treatment treatment) {
+    public void treatmentWindow(TreatmentDetails treatment) {
         try {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/TreatmentView.fxml"));
             AnchorPane pane = loader.load();
@@ -300,4 +541,15 @@ public class AllTreatmentPresenter {
             exception.printStackTrace();
         }
     }
+
+    /**
+     * The selection the shown treatments are filtered by.
+     *
+     * @param pid id of the selected patient, {@link #ALL} for all patients
+     * @param cgID id of the selected caregiver, {@link #ALL} for all caregivers
+     * @param from selected first day, <code>null</code> if none is selected
+     * @param to selected last day, <code>null</code> if none is selected
+     */
+    private record TreatmentFilter(long pid, long cgID, LocalDate from, LocalDate to) {
+    }
 }
@@ -0,0 +1,154 @@
+package de.hitec.nhplus.presenter;
+
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.UncheckedSQLException;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TableView;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Hands the results of background database work, e.g. of an {@link AsyncDao}, to the JavaFX application thread. <br>
+ * <br>
+ * Presenters never wait for a future. They pass a callback, which is run on the JavaFX application thread once the
+ * future is completed. While a table waits for its rows, a <code>ProgressIndicator</code> is shown as its
+ * placeholder.
+ */
+public class FxAsync {
+
+    /**
+     * Executor running tasks on the JavaFX application thread.
+     */
+    public static final Executor FX_THREAD = Platform::runLater;
+
+    /**
+     * Key of the number of running loads in the properties of a table.
+     */
+    private static final String LOADING_COUNT = "nhplus.loadingCount";
+
+    /**
+     * Key of the placeholder shown while a table is not loading in the properties of a table.
+     */
+    private static final String IDLE_PLACEHOLDER = "nhplus.idlePlaceholder";
+
+    /**
+     * Runs the given action with the result of the future on the JavaFX application thread. If the future fails, the
+     * error is printed instead.
+     *
+     * @param future the background work
+     * @param action the action to run with the result
+     * @param <R> Type of the result.
+     * @return a future completed after the action
+     */
+    public static <R> CompletableFuture<Void> onFxThread(CompletableFuture<R> future, Consumer<R> action) {
+        return onFxThread(future, action, () -> {});
+    }
+
+    /**
+     * Runs the given action with the result of the future on the JavaFX application thread. If the future fails, the
+     * error is printed and <code>onFailure</code> is run instead.
+     *
+     * @param future the background work
+     * @param action the action to run with the result
+     * @param onFailure the action to run if the work failed
+     * @param <R> Type of the result.
+     * @return a future completed after the action
+     */
+    public static <R> CompletableFuture<Void> onFxThread(CompletableFuture<R> future, Consumer<R> action,
+                                                         Runnable onFailure) {
+        return future.handleAsync((result, error) -> {
+            try {
+                if (error != null) {
+                    printError(error);
+                    onFailure.run();
+                } else {
+                    action.accept(result);
+                }
+            } catch (RuntimeException exception) {
+                exception.printStackTrace();
+            }
+            return null;
+        }, FX_THREAD);
+    }
+
+    /**
+     * Shows a <code>ProgressIndicator</code> as placeholder of the table until the future is completed. Must be
+     * called on the JavaFX application thread.
+     *
+     * @param tableView the table waiting for the work
+     * @param future the background work
+     * @param <R> Type of the result.
+     * @return the given future
+     */
+    public static <R> CompletableFuture<R> showLoading(TableView<?> tableView, CompletableFuture<R> future) {
+        setLoading(tableView, true);
+        future.whenCompleteAsync((result, error) -> setLoading(tableView, false), FX_THREAD);
+        return future;
+    }
+
+    /**
+     * Disables the node until the future is completed, e.g. to prevent a button from being pressed twice. Must be
+     * called on the JavaFX application thread.
+     *
+     * @param node the node to disable
+     * @param future the background work
+     * @param <R> Type of the result.
+     * @return the given future
+     */
+    public static <R> CompletableFuture<R> disableWhileRunning(Node node, CompletableFuture<R> future) {
+        node.setDisable(true);
+        future.whenCompleteAsync((result, error) -> node.setDisable(false), FX_THREAD);
+        return future;
+    }
+
+    /**
+     * Marks the table as loading or not loading. Loads may overlap, the placeholder of the table is restored after
+     * the last one ended. Must be called on the JavaFX application thread.
+     *
+     * @param tableView the table
+     * @param loading <code>true</code> when a load starts, <code>false</code> when it ended
+     */
+    public static void setLoading(TableView<?> tableView, boolean loading) {
+        Map<Object, Object> properties = tableView.getProperties();
+        int count = (Integer) properties.getOrDefault(LOADING_COUNT, 0);
+        if (loading) {
+            if (count == 0) {
+                properties.put(IDLE_PLACEHOLDER, tableView.getPlaceholder());
+                ProgressIndicator indicator = new ProgressIndicator();
+                indicator.setMaxSize(40, 40);
+                tableView.setPlaceholder(indicator);
+            }
+            properties.put(LOADING_COUNT, count + 1);
+        } else if (count > 0) {
+            if (count == 1) {
+                tableView.setPlaceholder((Node) properties.remove(IDLE_PLACEHOLDER));
+                properties.remove(LOADING_COUNT);
+            } else {
+                properties.put(LOADING_COUNT, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Prints the error of failed background work. Wrapping exceptions of the future and the DAO are removed, so the
+     * original database error is printed.
+     *
+     * @param error the error of the future
+     */
+    public static void printError(Throwable error) {
+        Throwable cause = error;
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof UncheckedSQLException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        cause.printStackTrace();
+    }
+}
@@ -1,71 +1,74 @@
 package de.hitec.nhplus.presenter;
 
-import de.hitec.nhplus.Main;
-import de.hitec.nhplus.datastorage.ConnectionBuilder;
-import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
-import javafx.stage.Stage;
 
 import java.io.IOException;
 
 /**
  * The <code>MainWindowPresenter</code> class controls the main window layout and navigation.<br>
  * <br>
- * It handles user actions from the main menu and loads the first view (patients, treatments, caregivers)
- * into the center of the main {@link BorderPane}.
+ * It handles user actions from the main menu and shows the first view (patients, treatments, caregivers)
+ * in the center of the main {@link BorderPane}. The views are kept by the {@link ViewRegistry} of the application,
+ * which usually preloads them while the login window is shown.
  */
 public class MainWindowPresenter {
 
     @FXML
     private BorderPane mainBorderPane;
 
+    private ViewRegistry viewRegistry;
+
+    /**
+     * Injects the registry holding the views and preloads the views that are not loaded yet.
+     *
+     * @param viewRegistry the view registry of the application
+     */
+    public void setViewRegistry(ViewRegistry viewRegistry) {
+        this.viewRegistry = viewRegistry;
+        viewRegistry.preload();
+    }
+
     /**
-     * Loads and displays the view showing all patients.
+     * Displays the view showing all patients.
      *
      * @param event the triggering {@link ActionEvent}
      */
     @FXML
     private void handleShowAllPatient(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllPatientView.fxml"));
-        try {
-            mainBorderPane.setCenter(loader.load());
-        } catch (IOException exception) {
-            exception.printStackTrace();
-        }
+        show(ViewRegistry.View.PATIENTS);
     }
 
     /**
-     * Loads and displays the view showing all treatments.
+     * Displays the view showing all treatments.
      *
      * @param event the triggering {@link ActionEvent}
      */
     @FXML
     private void handleShowAllTreatments(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllTreatmentView.fxml"));
-        try {
-            mainBorderPane.setCenter(loader.load());
-        } catch (IOException exception) {
-            exception.printStackTrace();
-        }
+        show(ViewRegistry.View.TREATMENTS);
     }
 
     /**
-     * Loads and displays the view showing all caregivers.
+     * Displays the view showing all caregivers.
      *
      * @param actionEvent the triggering {@link ActionEvent}
      */
     public void handleShowAllCaregivers(ActionEvent actionEvent) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllCaregiverView.fxml"));
+        show(ViewRegistry.View.CAREGIVERS);
+    }
+
+    /**
+     * Shows the given view in the center of the main window. A view that is shown already is refreshed.
+     *
+     * @param view the view to show
+     */
+    private void show(ViewRegistry.View view) {
         try {
-            mainBorderPane.setCenter(loader.load());
+            this.mainBorderPane.setCenter(this.viewRegistry.show(view));
         } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
-
-    }
-
+}
@@ -1,5 +1,6 @@
 package de.hitec.nhplus.presenter;
 
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.TreatmentDao;
 import de.hitec.nhplus.model.Caregiver;
@@ -9,12 +10,14 @@ import javafx.scene.control.*;
 import javafx.stage.Stage;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.TreatmentDetails;
 import de.hitec.nhplus.utils.DateConverter;
 import javafx.util.StringConverter;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The <code>NewTreatmentPresenter</code> contains the entire logic of the new treatment view. It determines which data is displayed and how to react to events.
@@ -99,8 +102,9 @@ public class NewTreatmentPresenter {
     }
 
     /**
-     * Handles the "Add" button event. Validates the input, creates a new {@link Treatment},
-     * stores it in the database, updates the table view, and closes the window.
+     * Handles the "Add" button event. Validates the input, creates a new {@link TreatmentDetails} with the names of
+     * the selected patient and caregiver, stores it in the database, updates the table view, and closes the window. The button stays disabled while
+     * the treatment is stored in the background.
      */
     @FXML
     public void handleAdd(){
@@ -109,24 +113,23 @@ public class NewTreatmentPresenter {
         LocalTime end = DateConverter.convertStringToLocalTime(textFieldEnd.getText());
         String description = textFieldDescription.getText();
         String remarks = textAreaRemarks.getText();
-        Treatment treatment = new Treatment(patient.getPid(), caregiver.getCgID(), date, begin, end, description, remarks);
-        createTreatment(treatment);
-        controller.readAllAndShowInTableView();
-        stage.close();
+        TreatmentDetails treatment = new TreatmentDetails(patient, caregiver, date, begin, end, description, remarks);
+        FxAsync.onFxThread(FxAsync.disableWhileRunning(this.buttonAdd, createTreatment(treatment)), created -> {
+            controller.addTreatment(created);
+            stage.close();
+        }, stage::close);
     }
 
     /**
-     * Saves the new treatment to the database using the {@link TreatmentDao}.
+     * Saves the new treatment to the database in the background using the {@link TreatmentDao}. The treatment gets
+     * its generated id.
      *
      * @param treatment the treatment to be stored
+     * @return a future of the stored treatment, failing with the {@link SQLException} if it could not be stored
      */
-    private void createTreatment(Treatment treatment) {
-        TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            dao.create(treatment);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    private CompletableFuture<TreatmentDetails> createTreatment(TreatmentDetails treatment) {
+        AsyncDao<Treatment, TreatmentDao> dao = DaoFactory.getDaoFactory().createAsyncTreatmentDao();
+        return dao.create(treatment).thenApply(created -> treatment);
     }
 
     /**
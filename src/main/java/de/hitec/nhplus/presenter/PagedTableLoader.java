@@ -0,0 +1,357 @@
+package de.hitec.nhplus.presenter;
+
+import de.hitec.nhplus.datastorage.DaoExecutor;
+import de.hitec.nhplus.datastorage.UncheckedSQLException;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
+
+/**
+ * Fills the items of a <code>TableView</code> page by page while the user scrolls. <br>
+ * <br>
+ * Pages are read with keyset pagination: every page starts after the key of the last loaded row. Only the first
+ * page is read when a {@link PageSource} is loaded. As soon as a page is shown, the following page is prefetched,
+ * so it can be appended without waiting when the user scrolls close to the end of the table. <br>
+ * <br>
+ * All pages are read on the executor of the {@link DaoExecutor} and added to the table on the JavaFX application
+ * thread; meanwhile the table shows a <code>ProgressIndicator</code> if it is empty. Pages arriving after the source
+ * was replaced are dropped. All public methods must be called on the JavaFX application thread.
+ *
+ * @param <T> Type of the rows.
+ */
+public final class PagedTableLoader<T> {
+
+    /**
+     * The default number of rows per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The relative scroll position from which the next page gets appended.
+     */
+    private static final double LOAD_THRESHOLD = 0.9;
+
+    /**
+     * Reads one page of rows.
+     *
+     * @param <T> Type of the rows.
+     */
+    @FunctionalInterface
+    public interface PageSource<T> {
+        /**
+         * Reads the page of rows following the given key.
+         *
+         * @param afterKey key of the last loaded row, <code>0</code> for the first page
+         * @param limit maximum number of rows in the page
+         * @return the rows of the page, ordered by their key
+         * @throws SQLException if a database access error occurs
+         */
+        List<T> readPage(long afterKey, int limit) throws SQLException;
+    }
+
+    /**
+     * Reads all rows at once, for lists that are not ordered by a key.
+     *
+     * @param <T> Type of the rows.
+     */
+    @FunctionalInterface
+    public interface ListSource<T> {
+        /**
+         * Reads all rows.
+         *
+         * @return all rows in the order they are shown
+         * @throws SQLException if a database access error occurs
+         */
+        List<T> readAll() throws SQLException;
+    }
+
+    private final TableView<T> tableView;
+    private final ObservableList<T> items;
+    private final ToLongFunction<T> keyExtractor;
+    private final int pageSize;
+    private final Executor executor;
+
+    private PageSource<T> source;
+    private List<T> prefetchedPage;
+    private long lastKey;
+    private boolean exhausted = true;
+    private ScrollBar scrollBar;
+
+    /**
+     * Whether the current source delivers all rows with its first page.
+     */
+    private boolean singlePage;
+
+    /**
+     * Incremented whenever the source changes, so pages read for a former source are recognized.
+     */
+    private int generation;
+
+    /**
+     * Whether a page of the current source is being read.
+     */
+    private boolean reading;
+
+    /**
+     * Whether the page being read is shown as soon as it arrives instead of being kept as prefetched page.
+     */
+    private boolean appendOnArrival;
+
+    /**
+     * Rows added while a page was being read; they are appended if that page turns out to be the last one and does
+     * not contain them.
+     */
+    private final List<T> addedWhileReading = new ArrayList<>();
+
+    /**
+     * Constructs a new loader with the default page size.
+     *
+     * @param tableView the table to observe for scrolling
+     * @param items the list shown by the table, it is filled by this loader
+     * @param keyExtractor returns the key the pages are ordered by
+     */
+    public PagedTableLoader(TableView<T> tableView, ObservableList<T> items, ToLongFunction<T> keyExtractor) {
+        this(tableView, items, keyExtractor, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Constructs a new loader.
+     *
+     * @param tableView the table to observe for scrolling
+     * @param items the list shown by the table, it is filled by this loader
+     * @param keyExtractor returns the key the pages are ordered by
+     * @param pageSize the number of rows per page
+     */
+    public PagedTableLoader(TableView<T> tableView, ObservableList<T> items, ToLongFunction<T> keyExtractor,
+                            int pageSize) {
+        this.tableView = tableView;
+        this.items = items;
+        this.keyExtractor = keyExtractor;
+        this.pageSize = pageSize;
+        this.executor = DaoExecutor.getExecutor();
+        this.tableView.skinProperty().addListener(
+                (observable, oldSkin, newSkin) -> Platform.runLater(this::attachScrollBar));
+    }
+
+    /**
+     * Replaces the rows of the table with the first page of the given source.
+     *
+     * @param source the source to read the pages from
+     */
+    public void load(PageSource<T> source) {
+        reset(source);
+        this.singlePage = false;
+        readPage(true);
+    }
+
+    /**
+     * Replaces the rows of the table with all rows of the given source, read in a single step.
+     *
+     * @param source the source to read the rows from
+     */
+    public void loadAll(ListSource<T> source) {
+        reset((afterKey, limit) -> source.readAll());
+        this.singlePage = true;
+        readPage(true);
+    }
+
+    /**
+     * Removes all rows from the table and forgets the current source.
+     */
+    public void clear() {
+        reset(null);
+        this.exhausted = true;
+    }
+
+    /**
+     * Adds a newly created row of the current source without reading a page again. New rows have the highest key,
+     * so the row is only appended once all pages are loaded; otherwise it arrives with a later page. If a page is
+     * being read, the row is appended after it unless the page already contains it.
+     *
+     * @param row the created row
+     */
+    public void add(T row) {
+        if (this.source == null) {
+            return;
+        }
+        long key = this.keyExtractor.applyAsLong(row);
+        if (this.reading) {
+            // the page being read may have been read before the row was committed
+            this.addedWhileReading.add(row);
+        } else if (this.prefetchedPage != null && this.exhausted) {
+            List<T> page = new ArrayList<>(this.prefetchedPage);
+            page.add(row);
+            this.prefetchedPage = page;
+            this.lastKey = Math.max(this.lastKey, key);
+        } else if (isExhausted()) {
+            this.items.add(row);
+            this.lastKey = Math.max(this.lastKey, key);
+        }
+    }
+
+    /**
+     * Returns whether all rows of the current source are loaded.
+     *
+     * @return <code>true</code> if there are no further pages, <code>false</code> otherwise
+     */
+    public boolean isExhausted() {
+        return this.exhausted && this.prefetchedPage == null && !this.reading;
+    }
+
+    /**
+     * Appends the next page to the table, if there is one. A prefetched page is used without reading it again, a
+     * page being prefetched is appended as soon as it arrives.
+     */
+    public void loadNextPage() {
+        if (this.source == null || isExhausted()) {
+            return;
+        }
+        if (this.prefetchedPage != null) {
+            List<T> page = this.prefetchedPage;
+            this.prefetchedPage = null;
+            appendPage(page);
+        } else if (this.reading) {
+            this.appendOnArrival = true;
+        } else {
+            readPage(true);
+        }
+    }
+
+    /**
+     * Switches to the given source and drops all rows and pages of the former one.
+     *
+     * @param source the new source, <code>null</code> for none
+     */
+    private void reset(PageSource<T> source) {
+        if (this.reading) {
+            FxAsync.setLoading(this.tableView, false);
+        }
+        this.generation++;
+        this.source = source;
+        this.prefetchedPage = null;
+        this.lastKey = 0;
+        this.exhausted = false;
+        this.reading = false;
+        this.appendOnArrival = false;
+        this.addedWhileReading.clear();
+        this.items.clear();
+    }
+
+    /**
+     * Adds the page to the table and starts the prefetch of the following page.
+     *
+     * @param page the page to add
+     */
+    private void appendPage(List<T> page) {
+        this.items.addAll(page);
+        if (!this.exhausted) {
+            readPage(false);
+        }
+    }
+
+    /**
+     * Reads the page following the last read row of the current source in the background.
+     *
+     * @param append <code>true</code> to show the page on arrival, <code>false</code> to keep it as prefetched page
+     */
+    private void readPage(boolean append) {
+        if (this.reading) {
+            return;
+        }
+        this.reading = true;
+        this.appendOnArrival = append;
+        FxAsync.setLoading(this.tableView, true);
+        int readGeneration = this.generation;
+        PageSource<T> readSource = this.source;
+        long afterKey = this.lastKey;
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return readSource.readPage(afterKey, this.pageSize);
+            } catch (SQLException exception) {
+                throw new UncheckedSQLException(exception);
+            }
+        }, this.executor).whenCompleteAsync((page, error) -> {
+            if (readGeneration == this.generation) {
+                pageArrived(page, error);
+            }
+        }, FxAsync.FX_THREAD);
+    }
+
+    /**
+     * Shows or keeps a page read for the current source.
+     *
+     * @param page the read page, <code>null</code> if it could not be read
+     * @param error the error while reading, <code>null</code> if the page was read
+     */
+    private void pageArrived(List<T> page, Throwable error) {
+        this.reading = false;
+        FxAsync.setLoading(this.tableView, false);
+        if (error != null) {
+            FxAsync.printError(error);
+            this.exhausted = true;
+            this.addedWhileReading.clear();
+            return;
+        }
+        if (this.singlePage || page.size() < this.pageSize) {
+            this.exhausted = true;
+        }
+        if (!page.isEmpty()) {
+            this.lastKey = this.keyExtractor.applyAsLong(page.get(page.size() - 1));
+        }
+        if (this.exhausted && !this.addedWhileReading.isEmpty()) {
+            Set<Long> readKeys = new HashSet<>();
+            for (T row : page) {
+                readKeys.add(this.keyExtractor.applyAsLong(row));
+            }
+            List<T> completed = new ArrayList<>(page);
+            for (T row : this.addedWhileReading) {
+                long key = this.keyExtractor.applyAsLong(row);
+                if (!readKeys.contains(key)) {
+                    completed.add(row);
+                    this.lastKey = Math.max(this.lastKey, key);
+                }
+            }
+            page = completed;
+        }
+        this.addedWhileReading.clear();
+        if (this.appendOnArrival) {
+            this.appendOnArrival = false;
+            appendPage(page);
+        } else {
+            this.prefetchedPage = page;
+        }
+    }
+
+    /**
+     * Looks up the vertical scroll bar of the table once its skin exists and appends the next page whenever the
+     * user scrolls close to the end.
+     */
+    private void attachScrollBar() {
+        if (this.scrollBar != null) {
+            return;
+        }
+        for (Node node : this.tableView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL) {
+                this.scrollBar = bar;
+                bar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= bar.getMax() * LOAD_THRESHOLD) {
+                        loadNextPage();
+                    }
+                });
+                return;
+            }
+        }
+    }
+}
@@ -1,19 +1,18 @@
 package de.hitec.nhplus.presenter;
 
-import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
-import de.hitec.nhplus.datastorage.PatientDao;
 import de.hitec.nhplus.datastorage.TreatmentDao;
-import de.hitec.nhplus.model.Caregiver;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
-import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.TreatmentDetails;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The <code>TreatmentPresenter</code> contains the entire logic of the treatment view. It determines which data is displayed and how to react to events.
@@ -49,38 +48,29 @@ public class TreatmentPresenter {
 
     private AllTreatmentPresenter controller;
     private Stage stage;
-    private Patient patient;
-    private Treatment treatment;
-    private Caregiver caregiver;
+    private TreatmentDetails treatment;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. For example from the FXMLLoader
      * after loading an FXML-File. At this point of the lifecycle of the Presenter, the fields can be accessed and
-     * configured.
+     * configured. The treatment was read together with the data of its patient and caregiver, so it is shown without
+     * reading them again.
      */
-    public void initialize(AllTreatmentPresenter controller, Stage stage, Treatment treatment) {
+    public void initialize(AllTreatmentPresenter controller, Stage stage, TreatmentDetails treatment) {
         this.stage = stage;
         this.controller= controller;
-        PatientDao pDao = DaoFactory.getDaoFactory().createPatientDAO();
-        CaregiverDao cgDao = DaoFactory.getDaoFactory().createCaregiverDao();
-        try {
-            this.patient = pDao.read((int) treatment.getPid());
-            this.caregiver = cgDao.read(treatment.getCgID());
-            this.treatment = treatment;
-            showData();
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        this.treatment = treatment;
+        showData();
     }
 
     /**
      * Displays existing treatment, patient, and caregiver data in the corresponding form fields. <br>
      */
     private void showData(){
-        this.labelPatientName.setText(patient.getSurname() + ", " + patient.getFirstName());
-        this.labelCareLevel.setText(patient.getCareLevel());
-        this.labelCaregiverName.setText(caregiver.getSurname() + ", " + caregiver.getFirstName());
-        this.labelCaregiverTelephone.setText(caregiver.getTelephone());
+        this.labelPatientName.setText(treatment.getPatientName());
+        this.labelCareLevel.setText(treatment.getCareLevel());
+        this.labelCaregiverName.setText(treatment.getCaregiverName());
+        this.labelCaregiverTelephone.setText(treatment.getCaregiverTelephone());
         LocalDate date = DateConverter.convertStringToLocalDate(treatment.getDate());
         this.datePicker.setValue(date);
         this.textFieldBegin.setText(this.treatment.getBegin());
@@ -95,7 +85,7 @@ public class TreatmentPresenter {
      * This method collects the modified treatment data from the form,
      * updates the corresponding {@link Treatment} object, persists the changes
      * to the database, refreshes the treatment table in the main view,
-     * and closes the current window.
+     * and closes the current window once the changes are persisted.
      */
     @FXML
     public void handleChange(){
@@ -104,25 +94,24 @@ public class TreatmentPresenter {
         this.treatment.setEnd(textFieldEnd.getText());
         this.treatment.setDescription(textFieldDescription.getText());
         this.treatment.setRemarks(textAreaRemarks.getText());
-        doUpdate();
-        controller.readAllAndShowInTableView();
-        stage.close();
+        FxAsync.onFxThread(doUpdate(), updated -> {
+            controller.readAllAndShowInTableView();
+            stage.close();
+        }, stage::close);
     }
 
     /**
-     * Updates the current treatment in the database. <br>
+     * Updates the current treatment in the database in the background. <br>
      * <br>
      * This method uses the {@link TreatmentDao} to persist the changes
      * made to the {@link Treatment} object. If a {@link SQLException} occurs,
-     * it will be printed to the console.
+     * the returned future fails with it.
+     *
+     * @return a future completed when the treatment is updated
      */
-    private void doUpdate(){
-        TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            dao.update(treatment);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    private CompletableFuture<Void> doUpdate(){
+        AsyncDao<Treatment, TreatmentDao> dao = DaoFactory.getDaoFactory().createAsyncTreatmentDao();
+        return dao.update(treatment);
     }
 
     /**
@@ -1,6 +1,7 @@
 package de.hitec.nhplus.presenter;
 
 import de.hitec.nhplus.Main;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.UserDao;
 import de.hitec.nhplus.model.User;
@@ -9,10 +10,6 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * The <code>UserLoginPresenter</code> contains the entire logic of the User Login view. It verifies user credentials and triggers the transition to the main application window upon successful login..
  */
@@ -28,23 +25,22 @@ public class UserLoginPresenter {
     @FXML
     public Button btnLogin;
 
-    private UserDao dao;
+    private AsyncDao<User, UserDao> dao;
 
     /**
      * Initializes the presenter by setting up the {@link UserDao} and verifying if user data is accessible. <br>
      * <br>
-     * If the database connection fails or users cannot be read, a warning alert is shown to the user.
+     * The users are read in the background, so the window is shown at once. If the database connection fails or
+     * users cannot be read, a warning alert is shown to the user.
      */
     public void initialize(){
-        this.dao = DaoFactory.getDaoFactory().createUserDao();
-
-        List<User> users = new ArrayList<>();
+        this.dao = DaoFactory.getDaoFactory().createAsyncUserDao();
 
-        try {
-            users = dao.readAll();
-        } catch (SQLException exception) {
-            showLoginAlert("Bitte richte zuerst die Datenbank ein.");
-        }
+        this.dao.readAll().whenCompleteAsync((users, error) -> {
+            if (error != null) {
+                showLoginAlert("Bitte richte zuerst die Datenbank ein.");
+            }
+        }, FxAsync.FX_THREAD);
     }
 
     /**
@@ -53,6 +49,7 @@ public class UserLoginPresenter {
      * Validates the entered username and password against stored user records.
      * If the login is successful, the main window is shown.
      * If credentials are invalid or fields are empty, an error alert is shown.
+     * The user is looked up in the background while the login button is disabled.
      */
     @FXML
     public void handleLogin() {
@@ -65,8 +62,19 @@ public class UserLoginPresenter {
             return;
         }
 
-        User user = dao.readByUsername(usernameInput);
+        FxAsync.onFxThread(FxAsync.disableWhileRunning(btnLogin,
+                dao.call(userDao -> userDao.readByUsername(usernameInput))),
+                user -> checkPassword(user, passwordInput));
+    }
 
+    /**
+     * Compares the entered password with the password of the looked up user and shows the main window if they
+     * match.
+     *
+     * @param user the user with the entered username, <code>null</code> if there is none
+     * @param passwordInput the entered password
+     */
+    private void checkPassword(User user, String passwordInput) {
         if (user == null) {
             showLoginAlert("Ungültige Anmeldedaten!");
             clearTextFields();
@@ -0,0 +1,142 @@
+package de.hitec.nhplus.presenter;
+
+import de.hitec.nhplus.Main;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Holds the views shown in the center of the main window. <br>
+ * <br>
+ * Every view is parsed from its FXML file only once. Its node and presenter are kept, so showing the view again just
+ * re-attaches the node; presenters implementing {@link Refreshable} are asked to show the changes made in the
+ * meantime. The views can be preloaded while the login window is shown, so the first click on a menu button does
+ * not wait for the FXML parsing either. <br>
+ * <br>
+ * JavaFX controls must be created on the JavaFX application thread, so all methods have to be called there. The
+ * preloading yields after every view, which keeps the shown window responsive; the presenters read their data in
+ * the background anyway.
+ */
+public class ViewRegistry {
+
+    /**
+     * The views shown in the center of the main window.
+     */
+    public enum View {
+        PATIENTS("/de/hitec/nhplus/AllPatientView.fxml"),
+        TREATMENTS("/de/hitec/nhplus/AllTreatmentView.fxml"),
+        CAREGIVERS("/de/hitec/nhplus/AllCaregiverView.fxml");
+
+        private final String resource;
+
+        View(String resource) {
+            this.resource = resource;
+        }
+    }
+
+    /**
+     * Implemented by presenters that update their view when it is shown again.
+     */
+    @FunctionalInterface
+    public interface Refreshable {
+        /**
+         * Updates the view with the changes since it was shown last, e.g. changes made in other views.
+         */
+        void refresh();
+    }
+
+    private final Map<View, LoadedView> views = new EnumMap<>(View.class);
+
+    /**
+     * Returns the node of the given view to show it. The view is loaded on its first call; on every further call its
+     * presenter is refreshed if it implements {@link Refreshable}.
+     *
+     * @param view the view to show
+     * @return the root node of the view
+     * @throws IOException if the FXML file of the view cannot be loaded
+     */
+    public Parent show(View view) throws IOException {
+        LoadedView loaded = this.views.get(view);
+        if (loaded == null) {
+            return load(view).node();
+        }
+        if (loaded.presenter() instanceof Refreshable refreshable) {
+            refreshable.refresh();
+        }
+        return loaded.node();
+    }
+
+    /**
+     * Loads all views that are not loaded yet, one after another in later runs of the JavaFX application thread, so
+     * user input is handled in between.
+     *
+     * @return a future completed when all views are loaded
+     */
+    public CompletableFuture<Void> preload() {
+        CompletableFuture<Void> preloaded = new CompletableFuture<>();
+        preload(0, preloaded);
+        return preloaded;
+    }
+
+    /**
+     * Returns whether the given view is already loaded.
+     *
+     * @param view the view
+     * @return <code>true</code> if the view is loaded, <code>false</code> otherwise
+     */
+    public boolean isLoaded(View view) {
+        return this.views.containsKey(view);
+    }
+
+    /**
+     * Loads the view with the given index and schedules the next one.
+     *
+     * @param index the index of the view in {@link View#values()}
+     * @param preloaded the future to complete after the last view
+     */
+    private void preload(int index, CompletableFuture<Void> preloaded) {
+        View[] all = View.values();
+        if (index >= all.length) {
+            preloaded.complete(null);
+            return;
+        }
+        Platform.runLater(() -> {
+            if (!isLoaded(all[index])) {
+                try {
+                    load(all[index]);
+                } catch (IOException exception) {
+                    exception.printStackTrace();
+                }
+            }
+            preload(index + 1, preloaded);
+        });
+    }
+
+    /**
+     * Parses the FXML file of the view, which also initializes its presenter, and keeps node and presenter.
+     *
+     * @param view the view to load
+     * @return the loaded view
+     * @throws IOException if the FXML file of the view cannot be loaded
+     */
+    private LoadedView load(View view) throws IOException {
+        FXMLLoader loader = new FXMLLoader(Main.class.getResource(view.resource));
+        LoadedView loaded = new LoadedView(loader.load(), loader.getController());
+        this.views.put(view, loaded);
+        return loaded;
+    }
+
+    /**
+     * A loaded view.
+     *
+     * @param node the root node of the view
+     * @param presenter the presenter of the view
+     */
+    private record LoadedView(Parent node, Object presenter) {
+    }
+}
@@ -2,6 +2,8 @@ package de.hitec.nhplus.utils;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 
 
@@ -13,7 +15,10 @@ import java.time.format.DateTimeFormatter;
  *     <li>Date format: <code>yyyy-MM-dd</code></li>
  *     <li>Time format: <code>HH:mm</code></li>
  * </ul>
- *
+ * The fixed formats are parsed and formatted by hand, because the conversions run for every row read from the
+ * database and for every rendered table cell. Input the fast path does not accept, e.g. an invalid day of month or
+ * a year beyond four digits, is passed to a shared <code>DateTimeFormatter</code>, so results and exceptions are the
+ * same as with the formatter alone.
  */
 public class DateConverter {
 
@@ -27,6 +32,16 @@ public class DateConverter {
      */
     private static final String TIME_FORMAT = "HH:mm";
 
+    /**
+     * The formatter for dates not handled by the fast path. Formatters are immutable and thread-safe.
+     */
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
+
+    /**
+     * The formatter for times not handled by the fast path.
+     */
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern(TIME_FORMAT);
+
     /**
      * Converts a date string to a {@link LocalDate} using the predefined date format.
      *
@@ -35,7 +50,16 @@ public class DateConverter {
      * @throws java.time.format.DateTimeParseException if the input string is not properly formatted
      */
     public static LocalDate convertStringToLocalDate(String date) {
-        return LocalDate.parse(date, DateTimeFormatter.ofPattern(DATE_FORMAT));
+        if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-') {
+            int year = parseDigits(date, 0, 4);
+            int month = parseDigits(date, 5, 7);
+            int day = parseDigits(date, 8, 10);
+            if (year >= 1 && month >= 1 && month <= 12 && day >= 1
+                    && day <= Month.of(month).length(Year.isLeap(year))) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(date, DATE_FORMATTER);
     }
 
     /**
@@ -46,7 +70,14 @@ public class DateConverter {
      * @throws java.time.format.DateTimeParseException if the input string is not properly formatted
      */
     public static LocalTime convertStringToLocalTime(String time) {
-        return LocalTime.parse(time, DateTimeFormatter.ofPattern(TIME_FORMAT));
+        if (time.length() == 5 && time.charAt(2) == ':') {
+            int hour = parseDigits(time, 0, 2);
+            int minute = parseDigits(time, 3, 5);
+            if (hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59) {
+                return LocalTime.of(hour, minute);
+            }
+        }
+        return LocalTime.parse(time, TIME_FORMATTER);
     }
 
     /**
@@ -56,7 +87,17 @@ public class DateConverter {
      * @return the formatted date string in the format <code>yyyy-MM-dd</code>
      */
     public static String convertLocalDateToString(LocalDate date) {
-        return date.format(DateTimeFormatter.ofPattern(DATE_FORMAT));
+        int year = date.getYear();
+        if (year < 1 || year > 9999) {
+            return date.format(DATE_FORMATTER);
+        }
+        char[] chars = new char[10];
+        writeDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        writeDigits(chars, 5, date.getMonthValue(), 2);
+        chars[7] = '-';
+        writeDigits(chars, 8, date.getDayOfMonth(), 2);
+        return new String(chars);
     }
 
     /**
@@ -66,6 +107,45 @@ public class DateConverter {
      * @return the formatted time string in the format <code>HH:mm</code>
      */
     public static String convertLocalTimeToString(LocalTime time) {
-        return time.format(DateTimeFormatter.ofPattern(TIME_FORMAT));
+        char[] chars = new char[5];
+        writeDigits(chars, 0, time.getHour(), 2);
+        chars[2] = ':';
+        writeDigits(chars, 3, time.getMinute(), 2);
+        return new String(chars);
+    }
+
+    /**
+     * Parses the decimal digits between the given indexes.
+     *
+     * @param text the text to parse
+     * @param from index of the first digit
+     * @param to index after the last digit
+     * @return the parsed number, or <code>-1</code> if a character is not a digit
+     */
+    private static int parseDigits(String text, int from, int to) {
+        int value = 0;
+        for (int index = from; index < to; index++) {
+            int digit = text.charAt(index) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Writes the given non-negative number as zero-padded decimal digits.
+     *
+     * @param chars the target array
+     * @param offset index of the first digit
+     * @param value the number to write
+     * @param width the number of digits
+     */
+    private static void writeDigits(char[] chars, int offset, int value, int width) {
+        for (int index = offset + width - 1; index >= offset; index--) {
+            chars[index] = (char) ('0' + value % 10);
+            value /= 10;
+        }
     }
 }
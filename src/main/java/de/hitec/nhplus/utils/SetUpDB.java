@@ -8,6 +8,8 @@ import de.hitec.nhplus.model.Treatment;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
 
 import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalDate;
 import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalTime;
@@ -16,7 +18,11 @@ import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalTime;
  * Call static class provides to static methods to set up and wipe the database. It uses the class ConnectionBuilder
  * and its path to build up the connection to the database. The class is executable. Executing the class will build
  * up a connection to the database and calls setUpDb() to wipe the database, build up a clean database and fill the
- * database with some test data.
+ * database with some test data. <br>
+ * <br>
+ * Given arguments, the database is filled with generated data of the given size instead, see
+ * {@link TestDataGenerator}: <code>seed patients caregivers treatmentsPerPatientPerDay yearsOfHistory [lastDay]</code>.
+ * The last day defaults to today, so it has to be given to generate the same data on another day.
  */
 public class SetUpDB {
 
@@ -27,20 +33,41 @@ public class SetUpDB {
     public static void setUpDb() {
         Connection connection = ConnectionBuilder.getConnection();
         SetUpDB.wipeDb(connection);
-        SetUpDB.setUpTablePatient(connection);
-        SetUpDB.setUpTableTreatment(connection);
-        SetUpDB.setUpTableCaregiver(connection);
-        SetUpDB.setUpTableUsers(connection);
+        SetUpDB.setUpTables(connection);
+        SetUpDB.migrate();
         SetUpDB.setUpPatients();
         SetUpDB.setUpTreatments();
         SetUpDB.setUpCaregivers();
     }
 
     /**
-     * This method wipes the database by dropping the tables.
+     * This method wipes the database and builds it up from scratch like {@link #setUpDb()}, but fills it with the
+     * data of the given generator instead of the hard coded test data.
+     *
+     * @param generator the generator of the data
+     */
+    public static void setUpDb(TestDataGenerator generator) {
+        Connection connection = ConnectionBuilder.getConnection();
+        SetUpDB.wipeDb(connection);
+        SetUpDB.setUpTables(connection);
+        SetUpDB.migrate();
+        try {
+            generator.generate(ConnectionBuilder.getConnectionPool());
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * This method wipes the database by dropping the tables. The recorded schema version, the full-text index and the
+     * change log are dropped as well, so the migrations are applied again to the new tables.
      */
     public static void wipeDb(Connection connection) {
         try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS schema_version");
+            statement.execute("DROP TABLE IF EXISTS treatment_fts");
+            statement.execute("DROP TABLE IF EXISTS change_log");
+            statement.execute("DROP TABLE IF EXISTS change_counter");
             statement.execute("DROP TABLE patient");
             statement.execute("DROP TABLE treatment");
         } catch (SQLException exception) {
@@ -48,6 +75,19 @@ public class SetUpDB {
         }
     }
 
+    /**
+     * Creates the tables of patients, treatments, caregivers and users if they do not already exist. The indexes,
+     * triggers and the other tables are added by the migrations of the {@link SchemaMigrator}.
+     *
+     * @param connection the active database connection
+     */
+    public static void setUpTables(Connection connection) {
+        SetUpDB.setUpTablePatient(connection);
+        SetUpDB.setUpTableTreatment(connection);
+        SetUpDB.setUpTableCaregiver(connection);
+        SetUpDB.setUpTableUsers(connection);
+    }
+
     /**
      * Creates the <code>patient</code> table if it does not already exist.
      *
@@ -135,52 +175,70 @@ public class SetUpDB {
     }
 
     /**
-     * Inserts predefined sample patients into the database.
+     * Applies the migrations of the {@link SchemaMigrator}, which add the indexes, the full-text index and its
+     * triggers to the new tables.
+     */
+    private static void migrate() {
+        try {
+            new SchemaMigrator(ConnectionBuilder.getConnectionPool()).migrate();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Inserts predefined sample patients into the database within a single transaction.
      */
     private static void setUpPatients() {
         try {
             PatientDao dao = DaoFactory.getDaoFactory().createPatientDAO();
-            dao.create(new Patient("Seppl", "Herberger", convertStringToLocalDate("1945-12-01"), "4", "202"));
-            dao.create(new Patient("Martina", "Gerdsen", convertStringToLocalDate("1954-08-12"), "5", "010"));
-            dao.create(new Patient("Gertrud", "Franzen", convertStringToLocalDate("1949-04-16"), "3", "002"));
-            dao.create(new Patient("Ahmet", "Yilmaz", convertStringToLocalDate("1941-02-22"), "3", "013"));
-            dao.create(new Patient("Hans", "Neumann", convertStringToLocalDate("1955-12-12"), "2", "001"));
-            dao.create(new Patient("Elisabeth", "Müller", convertStringToLocalDate("1958-03-07"), "5", "110"));
+            dao.createAll(List.of(
+                    new Patient("Seppl", "Herberger", convertStringToLocalDate("1945-12-01"), "4", "202"),
+                    new Patient("Martina", "Gerdsen", convertStringToLocalDate("1954-08-12"), "5", "010"),
+                    new Patient("Gertrud", "Franzen", convertStringToLocalDate("1949-04-16"), "3", "002"),
+                    new Patient("Ahmet", "Yilmaz", convertStringToLocalDate("1941-02-22"), "3", "013"),
+                    new Patient("Hans", "Neumann", convertStringToLocalDate("1955-12-12"), "2", "001"),
+                    new Patient("Elisabeth", "Müller", convertStringToLocalDate("1958-03-07"), "5", "110")
+            ));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
     }
 
     /**
-     * Inserts predefined sample treatments into the database.
+     * Inserts predefined sample treatments into the database within a single transaction.
      */
     private static void setUpTreatments() {
         try {
             TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-            dao.create(new Treatment(1, 1, 2, convertStringToLocalDate("2023-06-03"), convertStringToLocalTime("11:00"), convertStringToLocalTime("15:00"), "Gespräch", "Der Patient hat enorme Angstgefühle und glaubt, er sei überfallen worden. Ihm seien alle Wertsachen gestohlen worden.\nPatient beruhigt sich erst, als alle Wertsachen im Zimmer gefunden worden sind."));
-            dao.create(new Treatment(2, 1,2, convertStringToLocalDate("2023-06-05"), convertStringToLocalTime("11:00"), convertStringToLocalTime("12:30"), "Gespräch", "Patient irrt auf der Suche nach gestohlenen Wertsachen durch die Etage und bezichtigt andere Bewohner des Diebstahls.\nPatient wird in seinen Raum zurückbegleitet und erhält Beruhigungsmittel."));
-            dao.create(new Treatment(3, 2, 2, convertStringToLocalDate("2023-06-04"), convertStringToLocalTime("07:30"), convertStringToLocalTime("08:00"), "Waschen", "Patient mit Waschlappen gewaschen und frisch angezogen. Patient gewendet."));
-            dao.create(new Treatment(4, 1, 2, convertStringToLocalDate("2023-06-06"), convertStringToLocalTime("15:10"), convertStringToLocalTime("16:00"), "Spaziergang", "Spaziergang im Park, Patient döst  im Rollstuhl ein"));
-            dao.create(new Treatment(8, 1, 2, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("16:00"), "Spaziergang", "Parkspaziergang; Patient ist heute lebhafter und hat klare Momente; erzählt von seiner Tochter"));
-            dao.create(new Treatment(9, 2, 8, convertStringToLocalDate("2023-06-07"), convertStringToLocalTime("11:00"), convertStringToLocalTime("11:30"), "Waschen", "Waschen per Dusche auf einem Stuhl; Patientin gewendet;"));
-            dao.create(new Treatment(12, 5, 10, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("15:30"), "Physiotherapie", "Übungen zur Stabilisation und Mobilisierung der Rückenmuskulatur"));
-            dao.create(new Treatment(14, 4,2, convertStringToLocalDate("2023-08-24"), convertStringToLocalTime("09:30"), convertStringToLocalTime("10:15"), "KG", "Lympfdrainage"));
-            dao.create(new Treatment(16,  6,2, convertStringToLocalDate("2023-08-31"), convertStringToLocalTime("13:30"), convertStringToLocalTime("13:45"), "Toilettengang", "Hilfe beim Toilettengang; Patientin klagt über Schmerzen beim Stuhlgang. Gabe von Iberogast"));
-            dao.create(new Treatment(17, 6, 9, convertStringToLocalDate("2023-09-01"), convertStringToLocalTime("16:00"), convertStringToLocalTime("17:00"), "KG", "Massage der Extremitäten zur Verbesserung der Durchblutung"));
+            dao.createAll(List.of(
+                    new Treatment(1, 1, 2, convertStringToLocalDate("2023-06-03"), convertStringToLocalTime("11:00"), convertStringToLocalTime("15:00"), "Gespräch", "Der Patient hat enorme Angstgefühle und glaubt, er sei überfallen worden. Ihm seien alle Wertsachen gestohlen worden.\nPatient beruhigt sich erst, als alle Wertsachen im Zimmer gefunden worden sind."),
+                    new Treatment(2, 1,2, convertStringToLocalDate("2023-06-05"), convertStringToLocalTime("11:00"), convertStringToLocalTime("12:30"), "Gespräch", "Patient irrt auf der Suche nach gestohlenen Wertsachen durch die Etage und bezichtigt andere Bewohner des Diebstahls.\nPatient wird in seinen Raum zurückbegleitet und erhält Beruhigungsmittel."),
+                    new Treatment(3, 2, 2, convertStringToLocalDate("2023-06-04"), convertStringToLocalTime("07:30"), convertStringToLocalTime("08:00"), "Waschen", "Patient mit Waschlappen gewaschen und frisch angezogen. Patient gewendet."),
+                    new Treatment(4, 1, 2, convertStringToLocalDate("2023-06-06"), convertStringToLocalTime("15:10"), convertStringToLocalTime("16:00"), "Spaziergang", "Spaziergang im Park, Patient döst  im Rollstuhl ein"),
+                    new Treatment(8, 1, 2, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("16:00"), "Spaziergang", "Parkspaziergang; Patient ist heute lebhafter und hat klare Momente; erzählt von seiner Tochter"),
+                    new Treatment(9, 2, 8, convertStringToLocalDate("2023-06-07"), convertStringToLocalTime("11:00"), convertStringToLocalTime("11:30"), "Waschen", "Waschen per Dusche auf einem Stuhl; Patientin gewendet;"),
+                    new Treatment(12, 5, 10, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("15:30"), "Physiotherapie", "Übungen zur Stabilisation und Mobilisierung der Rückenmuskulatur"),
+                    new Treatment(14, 4,2, convertStringToLocalDate("2023-08-24"), convertStringToLocalTime("09:30"), convertStringToLocalTime("10:15"), "KG", "Lympfdrainage"),
+                    new Treatment(16,  6,2, convertStringToLocalDate("2023-08-31"), convertStringToLocalTime("13:30"), convertStringToLocalTime("13:45"), "Toilettengang", "Hilfe beim Toilettengang; Patientin klagt über Schmerzen beim Stuhlgang. Gabe von Iberogast"),
+                    new Treatment(17, 6, 9, convertStringToLocalDate("2023-09-01"), convertStringToLocalTime("16:00"), convertStringToLocalTime("17:00"), "KG", "Massage der Extremitäten zur Verbesserung der Durchblutung")
+            ));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
     }
 
     /**
-     * Inserts predefined sample caregivers into the database.
+     * Inserts predefined sample caregivers into the database within a single transaction.
      */
     private static void setUpCaregivers() {
         try {
             CaregiverDao dao = DaoFactory.getDaoFactory().createCaregiverDao();
-            dao.create(new Caregiver(1, "Rosenbaum", "Ben", "0152 024538351", true));
-            dao.create(new Caregiver(2, "Meiling", "Marvin", "0177 462065485", true));
-            dao.create(new Caregiver(3, "Baum", "Hans", "1486 5625872368", true));
+            dao.createAll(List.of(
+                    new Caregiver(1, "Rosenbaum", "Ben", "0152 024538351", true),
+                    new Caregiver(2, "Meiling", "Marvin", "0177 462065485", true),
+                    new Caregiver(3, "Baum", "Hans", "1486 5625872368", true)
+            ));
         }catch (SQLException exception){
             exception.printStackTrace();
         }
@@ -188,8 +246,22 @@ public class SetUpDB {
 
     /**
     * Main method to execute the database setup.
+    *
+    * @param args no arguments for the hard coded test data, otherwise the arguments of the generated data:
+    *             <code>seed patients caregivers treatmentsPerPatientPerDay yearsOfHistory [lastDay]</code>
     */
     public static void main(String[] args) {
-        SetUpDB.setUpDb();
+        if (args.length == 0) {
+            SetUpDB.setUpDb();
+            return;
+        }
+        if (args.length < 5) {
+            System.out.println("Aufruf: SetUpDB [seed patienten pflegekräfte behandlungenProPatientUndTag jahre "
+                    + "[letzterTag]]");
+            return;
+        }
+        LocalDate lastDay = args.length > 5 ? convertStringToLocalDate(args[5]) : LocalDate.now();
+        SetUpDB.setUpDb(new TestDataGenerator(Long.parseLong(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Double.parseDouble(args[3]), Integer.parseInt(args[4]), lastDay));
     }
 }
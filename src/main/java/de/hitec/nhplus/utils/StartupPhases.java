@@ -0,0 +1,147 @@
+package de.hitec.nhplus.utils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the phases of the application startup and logs how long each of them took. <br>
+ * <br>
+ * Phases run on the given executor as soon as the phases they depend on are finished, so independent phases run in
+ * parallel. A failed phase is logged and counts as finished, so the following phases are still tried, as the
+ * application also starts when the database is not set up yet. Besides the duration of a phase, the log shows when
+ * it finished, measured from the start of the process, which is the time the user waits since launching the
+ * application.
+ */
+public class StartupPhases {
+
+    /**
+     * The work of one startup phase.
+     */
+    @FunctionalInterface
+    public interface Phase {
+        /**
+         * Runs the phase.
+         *
+         * @throws Exception if the phase fails
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * The start of the process, or the creation of this object if the start of the process is unknown.
+     */
+    private final Instant start;
+
+    /**
+     * The durations of the finished phases in milliseconds, in the order they finished.
+     */
+    private final Map<String, Long> durations = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * Constructs a new object measuring from the start of the process.
+     */
+    public StartupPhases() {
+        this.start = ProcessHandle.current().info().startInstant().orElseGet(Instant::now);
+    }
+
+    /**
+     * Runs a phase on the executor at once.
+     *
+     * @param name the name of the phase in the log
+     * @param phase the work of the phase
+     * @param executor the executor to run the phase on
+     * @return a future completed when the phase is finished, even if it failed
+     */
+    public CompletableFuture<Void> run(String name, Phase phase, Executor executor) {
+        return after(CompletableFuture.completedFuture(null), name, phase, executor);
+    }
+
+    /**
+     * Runs a phase on the executor after the given phase is finished.
+     *
+     * @param previous the phase this phase depends on
+     * @param name the name of the phase in the log
+     * @param phase the work of the phase
+     * @param executor the executor to run the phase on
+     * @return a future completed when the phase is finished, even if it failed
+     */
+    public CompletableFuture<Void> after(CompletableFuture<?> previous, String name, Phase phase, Executor executor) {
+        return previous.handle((result, error) -> null).thenRunAsync(() -> {
+            long phaseStart = System.nanoTime();
+            try {
+                phase.run();
+                finished(name, phaseStart, null);
+            } catch (Exception exception) {
+                finished(name, phaseStart, exception);
+            }
+        }, executor);
+    }
+
+    /**
+     * Measures a phase that is already running, e.g. work spread over several runs of the JavaFX application thread.
+     * The phase is measured from the call of this method.
+     *
+     * @param name the name of the phase in the log
+     * @param running the future of the running phase
+     * @return a future completed when the phase is finished, even if it failed
+     */
+    public CompletableFuture<Void> measure(String name, CompletableFuture<?> running) {
+        long phaseStart = System.nanoTime();
+        return running.handle((result, error) -> {
+            finished(name, phaseStart, error);
+            return null;
+        });
+    }
+
+    /**
+     * Logs that a point of the startup is reached, e.g. that the login window is shown.
+     *
+     * @param event the description of the point in the log
+     */
+    public void mark(String event) {
+        System.out.println(event + " nach " + getElapsedMillis() + " ms");
+    }
+
+    /**
+     * Returns the time since the start of the process.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return Duration.between(this.start, Instant.now()).toMillis();
+    }
+
+    /**
+     * Returns the durations of the finished phases.
+     *
+     * @return a copy of the durations in milliseconds by the names of the phases, in the order they finished
+     */
+    public Map<String, Long> getDurations() {
+        synchronized (this.durations) {
+            return new LinkedHashMap<>(this.durations);
+        }
+    }
+
+    /**
+     * Records and logs a finished phase.
+     *
+     * @param name the name of the phase
+     * @param phaseStart the start of the phase from {@link System#nanoTime()}
+     * @param error the error of the phase, <code>null</code> if it succeeded
+     */
+    private void finished(String name, long phaseStart, Throwable error) {
+        long millis = (System.nanoTime() - phaseStart) / 1_000_000;
+        this.durations.put(name, millis);
+        if (error == null) {
+            System.out.println("Startphase " + name + ": " + millis + " ms (fertig nach " + getElapsedMillis() + " ms)");
+        } else {
+            System.out.println("Startphase " + name + " fehlgeschlagen nach " + millis + " ms!");
+            error.printStackTrace();
+        }
+    }
+}
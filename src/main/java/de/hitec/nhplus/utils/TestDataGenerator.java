@@ -0,0 +1,329 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.datastorage.ConnectionPool;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates realistic test data of any size, e.g. the data of a nursing home after years of operation. <br>
+ * <br>
+ * The data depends only on the seed, the sizes and the last day of the history, so the same arguments always generate
+ * the same data. Patients are admitted during the history, most of them before it starts, and get the given number
+ * of treatments per day on average from their admission on. Every patient has a caregiver doing most of the
+ * treatments; some caregivers left during the history, are inactive and only treated patients before they left. <br>
+ * <br>
+ * The data is inserted through the DAOs, so the triggers of the schema keep the numeric columns and the change log up
+ * to date. Treatments are inserted in transactions of {@value #TREATMENTS_PER_TRANSACTION} rows, which keeps the
+ * number of commits low without holding the writer connection for too long. Updating the full-text index row by row
+ * would double the time of the load, so its insert trigger is dropped while loading and the index is rebuilt at once
+ * afterwards.
+ */
+public class TestDataGenerator {
+
+    /**
+     * The number of treatments inserted per transaction.
+     */
+    public static final int TREATMENTS_PER_TRANSACTION = 50_000;
+
+    /**
+     * The share of patients admitted before the history starts.
+     */
+    private static final double PATIENTS_ADMITTED_BEFORE = 0.6;
+
+    /**
+     * The share of caregivers who left during the history.
+     */
+    private static final double CAREGIVERS_LEFT = 0.1;
+
+    /**
+     * The share of treatments done by the main caregiver of the patient.
+     */
+    private static final double TREATMENTS_BY_MAIN_CAREGIVER = 0.7;
+
+    /**
+     * The trigger adding new treatments to the full-text index, suspended while loading.
+     */
+    private static final String FULL_TEXT_INSERT_TRIGGER = "treatment_fts_insert";
+
+    private static final String[] FIRST_NAMES = {"Anna", "Ahmet", "Ben", "Clara", "Dieter", "Elisabeth", "Emma",
+            "Felix", "Gertrud", "Greta", "Hans", "Helga", "Ingrid", "Jonas", "Karl", "Karin", "Lukas", "Maria",
+            "Martina", "Marvin", "Noah", "Olga", "Paul", "Renate", "Rosa", "Seppl", "Stefan", "Theresa", "Ursula",
+            "Walter"};
+    private static final String[] SURNAMES = {"Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer",
+            "Wagner", "Becker", "Schulz", "Hoffmann", "Koch", "Richter", "Klein", "Wolf", "Neumann", "Schwarz",
+            "Yilmaz", "Herberger", "Gerdsen", "Franzen", "Rosenbaum", "Meiling", "Baum", "Krüger", "Zimmermann"};
+    private static final String[] CARE_LEVELS = {"1", "2", "2", "3", "3", "3", "4", "4", "5"};
+
+    private static final Activity[] ACTIVITIES = {
+            new Activity("Waschen", 30,
+                    "Patient mit Waschlappen gewaschen und frisch angezogen. Patient gewendet.",
+                    "Waschen per Dusche auf einem Stuhl; Patientin gewendet;",
+                    "Haare gewaschen und Haut eingecremt."),
+            new Activity("Gespräch", 45,
+                    "Patient beruhigt sich erst, als alle Wertsachen im Zimmer gefunden worden sind.",
+                    "Patientin erzählt von ihrer Tochter und ist heute gut gelaunt.",
+                    "Patient hat Angstgefühle; Gespräch über den Tagesablauf."),
+            new Activity("Spaziergang", 60,
+                    "Spaziergang im Park, Patient döst im Rollstuhl ein",
+                    "Parkspaziergang; Patient ist heute lebhafter und hat klare Momente",
+                    "Kurzer Spaziergang im Garten wegen Regen abgebrochen."),
+            new Activity("Physiotherapie", 30,
+                    "Übungen zur Stabilisation und Mobilisierung der Rückenmuskulatur",
+                    "Gangübungen mit dem Rollator im Flur."),
+            new Activity("KG", 45,
+                    "Lympfdrainage",
+                    "Massage der Extremitäten zur Verbesserung der Durchblutung"),
+            new Activity("Toilettengang", 15,
+                    "Hilfe beim Toilettengang.",
+                    "Hilfe beim Toilettengang; Patientin klagt über Schmerzen beim Stuhlgang. Gabe von Iberogast"),
+            new Activity("Medikamentengabe", 15,
+                    "Tabletten nach Plan gegeben.",
+                    "Patient verweigert zunächst die Tabletten, nimmt sie nach Gespräch."),
+            new Activity("Verbandswechsel", 20,
+                    "Wunde am Unterschenkel gereinigt und neu verbunden; Wundheilung gut.",
+                    "Verband gewechselt, leichte Rötung am Wundrand."),
+            new Activity("Essen reichen", 30,
+                    "Mittagessen gereicht, Patient hat gut gegessen.",
+                    "Patientin isst nur wenig, Trinkmenge dokumentiert.")
+    };
+
+    private final long seed;
+    private final int patients;
+    private final int caregivers;
+    private final double treatmentsPerPatientPerDay;
+    private final int yearsOfHistory;
+    private final LocalDate lastDay;
+
+    /**
+     * Constructs a new generator.
+     *
+     * @param seed the seed of the random data
+     * @param patients the number of patients
+     * @param caregivers the number of caregivers
+     * @param treatmentsPerPatientPerDay the average number of treatments per patient and day
+     * @param yearsOfHistory the number of years with treatments, at least one
+     * @param lastDay the last day with treatments
+     */
+    public TestDataGenerator(long seed, int patients, int caregivers, double treatmentsPerPatientPerDay,
+                             int yearsOfHistory, LocalDate lastDay) {
+        if (patients < 0 || caregivers < 1 || treatmentsPerPatientPerDay < 0 || yearsOfHistory < 1) {
+            throw new IllegalArgumentException("Invalid sizes: " + patients + " patients, " + caregivers
+                    + " caregivers, " + treatmentsPerPatientPerDay + " treatments per patient per day, "
+                    + yearsOfHistory + " years");
+        }
+        this.seed = seed;
+        this.patients = patients;
+        this.caregivers = caregivers;
+        this.treatmentsPerPatientPerDay = treatmentsPerPatientPerDay;
+        this.yearsOfHistory = yearsOfHistory;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * Inserts the data into the given database, whose tables must exist and be migrated.
+     *
+     * @param connectionPool the connection pool of the database
+     * @return the number of inserted treatments
+     * @throws SQLException if the data cannot be inserted
+     */
+    public long generate(ConnectionPool connectionPool) throws SQLException {
+        long start = System.nanoTime();
+        Random random = new Random(this.seed);
+        LocalDate firstDay = this.lastDay.minusYears(this.yearsOfHistory).plusDays(1);
+
+        LocalDate[] leavingDays = new LocalDate[this.caregivers];
+        List<Integer> remaining = new ArrayList<>();
+        for (int index = 0; index < this.caregivers; index++) {
+            // the first caregiver always stays, so every day has an active caregiver
+            if (index > 0 && random.nextDouble() < CAREGIVERS_LEFT) {
+                leavingDays[index] = randomDay(random, firstDay, this.lastDay);
+            } else {
+                remaining.add(index);
+            }
+        }
+        List<Long> cgIDs = generateCaregivers(connectionPool, random, leavingDays);
+
+        List<Long> pids = generatePatients(connectionPool, random);
+        LocalDate[] admissionDays = new LocalDate[pids.size()];
+        int[] mainCaregivers = new int[pids.size()];
+        for (int index = 0; index < pids.size(); index++) {
+            admissionDays[index] = random.nextDouble() < PATIENTS_ADMITTED_BEFORE
+                    ? firstDay : randomDay(random, firstDay, this.lastDay);
+            mainCaregivers[index] = remaining.get(random.nextInt(remaining.size()));
+        }
+
+        TreatmentDao treatmentDao = new TreatmentDao(connectionPool);
+        List<Treatment> batch = new ArrayList<>(TREATMENTS_PER_TRANSACTION);
+        long treatments = 0;
+        int wholeTreatments = (int) this.treatmentsPerPatientPerDay;
+        double fraction = this.treatmentsPerPatientPerDay - wholeTreatments;
+        String fullTextTrigger = dropTrigger(connectionPool, FULL_TEXT_INSERT_TRIGGER);
+        try {
+            for (LocalDate day = firstDay; !day.isAfter(this.lastDay); day = day.plusDays(1)) {
+                for (int patient = 0; patient < pids.size(); patient++) {
+                    if (day.isBefore(admissionDays[patient])) {
+                        continue;
+                    }
+                    int count = wholeTreatments + (random.nextDouble() < fraction ? 1 : 0);
+                    for (int treatment = 0; treatment < count; treatment++) {
+                        int caregiver = random.nextDouble() < TREATMENTS_BY_MAIN_CAREGIVER
+                                ? mainCaregivers[patient] : randomCaregiver(random, leavingDays, day);
+                        batch.add(newTreatment(random, pids.get(patient), cgIDs.get(caregiver), day));
+                        if (batch.size() == TREATMENTS_PER_TRANSACTION) {
+                            treatmentDao.createAll(batch);
+                            treatments += batch.size();
+                            batch.clear();
+                        }
+                    }
+                }
+            }
+            treatmentDao.createAll(batch);
+            treatments += batch.size();
+        } finally {
+            if (fullTextTrigger != null) {
+                restoreFullTextIndex(connectionPool, fullTextTrigger);
+            }
+        }
+
+        System.out.println("Testdaten erzeugt: " + pids.size() + " Patienten, " + cgIDs.size() + " Pflegekräfte, "
+                + treatments + " Behandlungen in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return treatments;
+    }
+
+    /**
+     * Drops a trigger of the schema for the duration of the bulk load.
+     *
+     * @param connectionPool the connection pool of the database
+     * @param name the name of the trigger
+     * @return the SQL to create the trigger again, or <code>null</code> if the trigger does not exist
+     * @throws SQLException if the trigger cannot be dropped
+     */
+    private static String dropTrigger(ConnectionPool connectionPool, String name) throws SQLException {
+        try (ConnectionPool.Lease lease = connectionPool.acquireWriter();
+             PreparedStatement select = lease.getConnection().prepareStatement(
+                     "SELECT sql FROM sqlite_master WHERE type = 'trigger' AND name = ?")) {
+            select.setString(1, name);
+            String sql;
+            try (ResultSet result = select.executeQuery()) {
+                if (!result.next()) {
+                    return null;
+                }
+                sql = result.getString(1);
+            }
+            try (Statement statement = lease.getConnection().createStatement()) {
+                statement.execute("DROP TRIGGER " + name);
+            }
+            return sql;
+        }
+    }
+
+    /**
+     * Creates the insert trigger of the full-text index again and rebuilds the index from the treatments, which is
+     * much faster than updating it row by row while loading.
+     *
+     * @param connectionPool the connection pool of the database
+     * @param triggerSql the SQL creating the trigger
+     * @throws SQLException if the trigger or the index cannot be restored
+     */
+    private static void restoreFullTextIndex(ConnectionPool connectionPool, String triggerSql) throws SQLException {
+        try (ConnectionPool.Lease lease = connectionPool.acquireWriter();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.execute(triggerSql);
+            statement.execute("INSERT INTO treatment_fts (treatment_fts) VALUES ('rebuild')");
+        }
+    }
+
+    /**
+     * Inserts the caregivers, the ones who left during the history are inactive.
+     *
+     * @param connectionPool the connection pool of the database
+     * @param random the random generator
+     * @param leavingDays the days the caregivers left, <code>null</code> for the active ones
+     * @return the ids of the caregivers
+     * @throws SQLException if the caregivers cannot be inserted
+     */
+    private List<Long> generateCaregivers(ConnectionPool connectionPool, Random random, LocalDate[] leavingDays)
+            throws SQLException {
+        List<Caregiver> list = new ArrayList<>(this.caregivers);
+        for (int index = 0; index < this.caregivers; index++) {
+            list.add(new Caregiver(pick(random, SURNAMES), pick(random, FIRST_NAMES),
+                    String.format("01%d %09d", 51 + random.nextInt(29), random.nextInt(1_000_000_000)),
+                    leavingDays[index] == null));
+        }
+        return new CaregiverDao(connectionPool).createAll(list);
+    }
+
+    /**
+     * Inserts the patients, aged from 65 to 100 years at the end of the history.
+     *
+     * @param connectionPool the connection pool of the database
+     * @param random the random generator
+     * @return the ids of the patients
+     * @throws SQLException if the patients cannot be inserted
+     */
+    private List<Long> generatePatients(ConnectionPool connectionPool, Random random) throws SQLException {
+        LocalDate oldest = this.lastDay.minusYears(100);
+        LocalDate youngest = this.lastDay.minusYears(65);
+        List<Patient> list = new ArrayList<>(this.patients);
+        for (int index = 0; index < this.patients; index++) {
+            String roomNumber = String.format("%d%02d", random.nextInt(4), 1 + random.nextInt(40));
+            list.add(new Patient(pick(random, FIRST_NAMES), pick(random, SURNAMES),
+                    randomDay(random, oldest, youngest), pick(random, CARE_LEVELS), roomNumber));
+        }
+        return new PatientDao(connectionPool).createAll(list);
+    }
+
+    /**
+     * Creates a treatment of a random activity between 6:00 and 21:00.
+     */
+    private static Treatment newTreatment(Random random, long pid, long cgID, LocalDate day) {
+        Activity activity = ACTIVITIES[random.nextInt(ACTIVITIES.length)];
+        LocalTime begin = LocalTime.of(6 + random.nextInt(14), random.nextInt(4) * 15);
+        int minutes = activity.minutes() / 2 + random.nextInt(activity.minutes() + 1);
+        return new Treatment(pid, cgID, day, begin, begin.plusMinutes(minutes), activity.description(),
+                pick(random, activity.remarks()));
+    }
+
+    /**
+     * Returns the index of a random caregiver who has not left before the given day.
+     */
+    private static int randomCaregiver(Random random, LocalDate[] leavingDays, LocalDate day) {
+        int caregiver = random.nextInt(leavingDays.length);
+        while (leavingDays[caregiver] != null && leavingDays[caregiver].isBefore(day)) {
+            caregiver = random.nextInt(leavingDays.length);
+        }
+        return caregiver;
+    }
+
+    private static LocalDate randomDay(Random random, LocalDate from, LocalDate to) {
+        return from.plusDays(random.nextLong(to.toEpochDay() - from.toEpochDay() + 1));
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * A kind of treatment.
+     *
+     * @param description the description of the treatment
+     * @param minutes the typical duration in minutes
+     * @param remarks the possible remarks
+     */
+    private record Activity(String description, int minutes, String... remarks) {
+    }
+}
@@ -6,6 +6,8 @@ module de.hitec.nhplus {
     requires java.sql;
     requires org.xerial.sqlitejdbc;
     requires java.rmi;
+    requires java.management;
+    requires java.logging;
 
     opens de.hitec.nhplus to javafx.fxml;
     opens de.hitec.nhplus.presenter to javafx.fxml;
@@ -14,4 +16,5 @@ module de.hitec.nhplus {
     exports de.hitec.nhplus;
     exports de.hitec.nhplus.presenter;
     exports de.hitec.nhplus.model;
+    exports de.hitec.nhplus.datastorage to java.management;
 }
\ No newline at end of file
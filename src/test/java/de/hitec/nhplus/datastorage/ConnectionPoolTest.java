@@ -0,0 +1,74 @@
+package de.hitec.nhplus.datastorage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests how the <code>ConnectionPool</code> hands out and takes back its leases.
+ */
+class ConnectionPoolTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = new ConnectionPool("jdbc:sqlite:" + this.directory.resolve("pool.db"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.close();
+    }
+
+    @Test
+    void writerLeaseIsReentrantOnItsThread() throws SQLException {
+        try (ConnectionPool.Lease outer = this.pool.acquireWriter()) {
+            try (ConnectionPool.Lease inner = this.pool.acquireWriter()) {
+                assertSame(outer, inner);
+            }
+            assertTrue(outer.isActive());
+        }
+        assertEquals(0, this.pool.getActiveLeaseCount());
+    }
+
+    @Test
+    void writerLeaseMustBeClosedByItsOwner() throws SQLException {
+        ConnectionPool.Lease lease = this.pool.acquireWriter();
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> CompletableFuture.runAsync(lease::close).join());
+
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertTrue(lease.isActive());
+        lease.close();
+        assertFalse(lease.isActive());
+        assertEquals(0, this.pool.getActiveLeaseCount());
+    }
+
+    @Test
+    void readerLeaseMayBeClosedByAnotherThread() throws SQLException {
+        ConnectionPool.Lease lease = this.pool.acquireReader();
+
+        CompletableFuture.runAsync(lease::close).join();
+
+        assertFalse(lease.isActive());
+        assertEquals(0, this.pool.getActiveLeaseCount());
+    }
+}
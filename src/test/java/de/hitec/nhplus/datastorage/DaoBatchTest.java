@@ -0,0 +1,136 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the batch operations of <code>DaoImp</code> with the statements decorated by the <code>DaoMetrics</code>:
+ * the generated keys, updates of different columns in one batch and deletes by ID.
+ */
+class DaoBatchTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private boolean metricsEnabled;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = TestDatabase.open(this.directory);
+        this.metricsEnabled = DaoMetrics.getInstance().isEnabled();
+        DaoMetrics.getInstance().setEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DaoMetrics.getInstance().setEnabled(this.metricsEnabled);
+        this.pool.close();
+    }
+
+    @Test
+    void createAllInsertsEveryRowOfTheBatch() throws SQLException {
+        PatientDao dao = new PatientDao(this.pool);
+        List<Patient> patients = List.of(patient("Anna", "Alt"), patient("Bernd", "Bauer"), patient("Clara", "Conrad"));
+
+        List<Long> keys = dao.createAll(patients);
+
+        assertEquals(3, keys.size());
+        for (int index = 0; index < patients.size(); index++) {
+            assertEquals(keys.get(index), patients.get(index).getPid());
+            Patient stored = dao.read(keys.get(index));
+            assertEquals(patients.get(index).getFirstName(), stored.getFirstName());
+            assertEquals(patients.get(index).getSurname(), stored.getSurname());
+        }
+    }
+
+    @Test
+    void updateAllWritesEveryRowSharingTheSameStatement() throws SQLException {
+        PatientDao dao = new PatientDao(this.pool);
+        List<Patient> patients = List.of(patient("Anna", "Alt"), patient("Bernd", "Bauer"));
+        dao.createAll(patients);
+        patients.get(0).setRoomNumber("101");
+        patients.get(1).setRoomNumber("102");
+
+        dao.updateAll(patients);
+
+        assertEquals("101", dao.read(patients.get(0).getPid()).getRoomNumber());
+        assertEquals("102", dao.read(patients.get(1).getPid()).getRoomNumber());
+    }
+
+    @Test
+    void createAllReturnsContiguousKeysOfTheStoredRows() throws SQLException {
+        CaregiverDao dao = new CaregiverDao(this.pool);
+        long first = dao.create(caregiver("0421 100")).getCgID();
+        List<Caregiver> caregivers = List.of(caregiver("0421 101"), caregiver("0421 102"), caregiver("0421 103"),
+                caregiver("0421 104"));
+
+        List<Long> keys = dao.createAll(caregivers);
+
+        for (int index = 0; index < caregivers.size(); index++) {
+            assertEquals(first + 1 + index, keys.get(index));
+            assertEquals(caregivers.get(index).getTelephone(), dao.read(keys.get(index)).getTelephone());
+        }
+    }
+
+    @Test
+    void updateAllWritesRowsWithDifferentModifiedColumns() throws SQLException {
+        PatientDao dao = new PatientDao(this.pool);
+        List<Patient> patients = List.of(patient("Anna", "Alt"), patient("Bernd", "Bauer"),
+                patient("Clara", "Conrad"), patient("Dieter", "Dahl"));
+        dao.createAll(patients);
+        patients.get(0).setRoomNumber("101");
+        patients.get(1).setCareLevel("4");
+        patients.get(2).setRoomNumber("103");
+        patients.get(3).setCareLevel("5");
+        patients.get(3).setRoomNumber("104");
+
+        dao.updateAll(patients);
+
+        assertPatient(dao, patients.get(0).getPid(), "2", "101");
+        assertPatient(dao, patients.get(1).getPid(), "4", "1");
+        assertPatient(dao, patients.get(2).getPid(), "2", "103");
+        assertPatient(dao, patients.get(3).getPid(), "5", "104");
+    }
+
+    @Test
+    void deleteAllByIdDeletesOnlyTheGivenRows() throws SQLException {
+        PatientDao dao = new PatientDao(this.pool);
+        List<Long> keys = dao.createAll(List.of(patient("Anna", "Alt"), patient("Bernd", "Bauer"),
+                patient("Clara", "Conrad")));
+
+        dao.deleteAllById(List.of(keys.get(0), keys.get(2)));
+
+        assertNull(dao.read(keys.get(0)));
+        assertNotNull(dao.read(keys.get(1)));
+        assertNull(dao.read(keys.get(2)));
+    }
+
+    private static void assertPatient(PatientDao dao, long pid, String careLevel, String roomNumber)
+            throws SQLException {
+        Patient stored = dao.read(pid);
+        assertEquals(careLevel, stored.getCareLevel());
+        assertEquals(roomNumber, stored.getRoomNumber());
+    }
+
+    private static Caregiver caregiver(String telephone) {
+        return new Caregiver("Ebert", "Eva", telephone, true);
+    }
+
+    private static Patient patient(String firstName, String surname) {
+        return new Patient(firstName, surname, LocalDate.of(1940, 5, 17), "2", "1");
+    }
+}
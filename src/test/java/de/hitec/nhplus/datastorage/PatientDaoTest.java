@@ -0,0 +1,117 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the partial updates of the <code>PatientDao</code> and its handling of dates of birth.
+ */
+class PatientDaoTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private PatientDao dao;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = TestDatabase.open(this.directory);
+        this.dao = new PatientDao(this.pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.close();
+    }
+
+    @Test
+    void updateWritesOnlyModifiedColumns() throws SQLException {
+        Patient patient = this.dao.create(patient("Anna", "Alt"));
+        execute("UPDATE patient SET surname = 'Neu' WHERE pid = " + patient.getPid());
+        patient.setRoomNumber("204");
+
+        this.dao.update(patient);
+
+        Patient stored = this.dao.read(patient.getPid());
+        assertEquals("204", stored.getRoomNumber());
+        assertEquals("Neu", stored.getSurname());
+        assertFalse(patient.getDirtyFields().isDirty());
+    }
+
+    @Test
+    void updateOfDateOfBirthWritesTheNumericColumn() throws SQLException {
+        Patient patient = this.dao.create(patient("Anna", "Alt"));
+        patient.setDateOfBirth("1951-02-03");
+
+        this.dao.update(patient);
+
+        assertEquals("1951-02-03", this.dao.read(patient.getPid()).getDateOfBirth());
+        assertEquals(LocalDate.of(1951, 2, 3).toEpochDay(),
+                queryLong("SELECT birth_epoch_day FROM patient WHERE pid = " + patient.getPid()));
+    }
+
+    @Test
+    void createAllWithInvalidDateOfBirthFailsWithoutStoringAnyPatient() throws SQLException {
+        Patient invalid = patient("Bernd", "Bauer");
+        invalid.setDateOfBirth("31.02.1950");
+
+        assertThrows(SQLException.class, () -> this.dao.createAll(List.of(patient("Anna", "Alt"), invalid)));
+
+        assertTrue(this.dao.readAll().isEmpty());
+    }
+
+    @Test
+    void updateAllWithInvalidDateOfBirthFailsAndKeepsTheChanges() throws SQLException {
+        Patient patient = this.dao.create(patient("Anna", "Alt"));
+        patient.setDateOfBirth("kein Datum");
+
+        assertThrows(SQLException.class, () -> this.dao.updateAll(List.of(patient)));
+
+        assertTrue(patient.getDirtyFields().isModified(Patient.DATE_OF_BIRTH));
+        assertEquals("1940-05-17", this.dao.read(patient.getPid()).getDateOfBirth());
+    }
+
+    @Test
+    void readFallsBackToTheTextColumnIfTheNumericColumnIsEmpty() throws SQLException {
+        Patient patient = this.dao.create(patient("Anna", "Alt"));
+        execute("UPDATE patient SET birth_epoch_day = NULL WHERE pid = " + patient.getPid());
+
+        assertEquals("1940-05-17", this.dao.read(patient.getPid()).getDateOfBirth());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (ConnectionPool.Lease lease = this.pool.acquireWriter();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (ConnectionPool.Lease lease = this.pool.acquireReader();
+             Statement statement = lease.getConnection().createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            assertTrue(result.next());
+            return result.getLong(1);
+        }
+    }
+
+    private static Patient patient(String firstName, String surname) {
+        return new Patient(firstName, surname, LocalDate.of(1940, 5, 17), "2", "1");
+    }
+}
@@ -0,0 +1,99 @@
+package de.hitec.nhplus.datastorage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the <code>SchemaMigrator</code> and the indexes created by the migrations.
+ */
+class SchemaMigratorTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = TestDatabase.open(this.directory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.close();
+    }
+
+    @Test
+    void migrateAppliesEveryMigrationOnce() throws SQLException {
+        int latest = SchemaMigrator.MIGRATIONS.get(SchemaMigrator.MIGRATIONS.size() - 1).getVersion();
+
+        assertEquals(latest, new SchemaMigrator(this.pool).migrate());
+        assertEquals(latest, new SchemaMigrator(this.pool).getCurrentVersion());
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), count("SELECT count(*) FROM schema_version"));
+    }
+
+    @Test
+    void failedMigrationIsRolledBack() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(this.pool, List.of(new Migration(100, "Broken migration",
+                "CREATE TABLE broken (id INTEGER)", "CREATE TABLE broken (id INTEGER)")));
+        int version = migrator.getCurrentVersion();
+
+        assertThrows(SQLException.class, migrator::migrate);
+
+        assertEquals(version, migrator.getCurrentVersion());
+        assertEquals(0, count("SELECT count(*) FROM sqlite_master WHERE name = 'broken'"));
+    }
+
+    @Test
+    void treatmentsOfPatientAndCaregiverInRangeAreReadByOneIndex() throws SQLException {
+        List<Object> plan = query("EXPLAIN QUERY PLAN SELECT * FROM treatment WHERE pid = 1 AND cgID = 2 "
+                + "AND treatment_epoch_day BETWEEN 19000 AND 19100 ORDER BY treatment_epoch_day, begin_minute");
+
+        assertEquals(1, plan.size(), plan.toString());
+        String step = (String) plan.get(0);
+        assertTrue(step.contains("idx_treatment_pid_cgID_day"), step);
+        assertTrue(step.contains("treatment_epoch_day>? AND treatment_epoch_day<?"), step);
+        assertFalse(query("SELECT name FROM sqlite_master WHERE type = 'index'")
+                .contains("idx_treatment_pid_cgID_date"));
+    }
+
+    /**
+     * Returns the number in the first row of the given query on the writer connection.
+     */
+    private long count(String sql) throws SQLException {
+        try (Statement statement = this.pool.getWriterConnection().createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Returns the last column of every row of the given query on the writer connection.
+     */
+    private List<Object> query(String sql) throws SQLException {
+        List<Object> values = new ArrayList<>();
+        Connection connection = this.pool.getWriterConnection();
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            int column = result.getMetaData().getColumnCount();
+            while (result.next()) {
+                values.add(result.getObject(column));
+            }
+        }
+        return values;
+    }
+}
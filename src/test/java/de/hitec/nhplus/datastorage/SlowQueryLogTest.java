@@ -0,0 +1,134 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the strict mode of the <code>SlowQueryLog</code>, which fails statements scanning a large table completely,
+ * and that logged statements do not reveal their parameters.
+ */
+class SlowQueryLogTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private TreatmentDao dao;
+    private long cgID;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = TestDatabase.open(this.directory);
+        Patient patient = new PatientDao(this.pool).create(
+                new Patient("Anna", "Alt", LocalDate.of(1940, 5, 17), "2", "1"));
+        this.cgID = new CaregiverDao(this.pool).create(new Caregiver("Ebert", "Eva", "0421 100", true)).getCgID();
+        this.dao = new TreatmentDao(this.pool);
+        this.dao.createAll(List.of(treatment(patient.getPid(), 1), treatment(patient.getPid(), 2),
+                treatment(patient.getPid(), 3)));
+        SlowQueryLog.getInstance().setStrict(true, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SlowQueryLog.getInstance().setStrict(false, SlowQueryLog.DEFAULT_LARGE_TABLE_ROWS);
+        this.pool.close();
+    }
+
+    @Test
+    void strictModeAcceptsQueriesUsingAnIndex() throws SQLException {
+        assertEquals(3, this.dao.readTreatmentsByCgID(this.cgID).size());
+        assertTrue(SlowQueryLog.getInstance().getViolations().isEmpty());
+    }
+
+    @Test
+    void strictModeRejectsFullScanOfLargeTable() throws SQLException {
+        dropCaregiverIndexes();
+
+        assertThrows(SQLException.class, () -> this.dao.readTreatmentsByCgID(this.cgID));
+
+        Map<String, String> violations = SlowQueryLog.getInstance().getViolations();
+        assertEquals(1, violations.size());
+        assertTrue(violations.values().iterator().next().contains("treatment"));
+    }
+
+    @Test
+    void strictModeIgnoresSmallTablesAndQueriesWithoutWhere() throws SQLException {
+        dropCaregiverIndexes();
+        SlowQueryLog.getInstance().setStrict(true, 4);
+
+        assertEquals(3, this.dao.readTreatmentsByCgID(this.cgID).size());
+        SlowQueryLog.getInstance().setStrict(true, 1);
+        assertEquals(3, this.dao.readAll().size());
+        assertTrue(SlowQueryLog.getInstance().getViolations().isEmpty());
+    }
+
+    @Test
+    void slowStatementsAreLoggedWithoutTheValuesOfTheirParameters() throws SQLException {
+        Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+        List<String> entries = new CopyOnWriteArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                entries.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        logger.addHandler(handler);
+        SlowQueryLog.getInstance().setThresholdMillis(0);
+        try {
+            new PatientDao(this.pool).create(new Patient("Berta", "Brandt", LocalDate.of(1938, 1, 2), "3", "7"));
+        } finally {
+            SlowQueryLog.getInstance().setThresholdMillis(-1);
+            logger.removeHandler(handler);
+        }
+
+        String entry = entries.stream().filter(text -> text.contains("INSERT INTO patient")).findFirst()
+                .orElseThrow();
+        assertTrue(entry.contains("1: <String>"));
+        assertTrue(entry.contains("6: <Long>"));
+        assertFalse(entry.contains("Berta"));
+        assertFalse(entry.contains(String.valueOf(LocalDate.of(1938, 1, 2).toEpochDay())));
+    }
+
+    private void dropCaregiverIndexes() throws SQLException {
+        try (ConnectionPool.Lease lease = this.pool.acquireWriter();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("DROP INDEX idx_treatment_cgID");
+            statement.execute("DROP INDEX idx_treatment_cgID_day");
+        }
+    }
+
+    private Treatment treatment(long pid, int day) {
+        return new Treatment(pid, this.cgID, LocalDate.of(2024, 3, day), LocalTime.of(9, 0), LocalTime.of(9, 30),
+                "Waschen", "");
+    }
+}
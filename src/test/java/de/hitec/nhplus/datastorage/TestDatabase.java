@@ -0,0 +1,30 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.utils.SetUpDB;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Opens a connection pool on a new SQLite database file with the tables of <code>SetUpDB</code> and all migrations
+ * applied, for tests of the DAOs.
+ */
+final class TestDatabase {
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Creates the database in the given directory and opens a pool on it.
+     *
+     * @param directory the temporary directory of the test
+     * @return the pool, to be closed by the test
+     * @throws SQLException if the database cannot be set up
+     */
+    static ConnectionPool open(Path directory) throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + directory.resolve("test.db"));
+        SetUpDB.setUpTables(pool.getWriterConnection());
+        new SchemaMigrator(pool).migrate();
+        return pool;
+    }
+}
@@ -0,0 +1,81 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests how the <code>TreatmentDao</code> maps the numeric and the text columns of a treatment.
+ */
+class TreatmentDaoTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private TreatmentDao dao;
+    private Treatment treatment;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = TestDatabase.open(this.directory);
+        this.dao = new TreatmentDao(this.pool);
+        Patient patient = new PatientDao(this.pool).create(
+                new Patient("Anna", "Alt", LocalDate.of(1940, 5, 17), "2", "1"));
+        this.treatment = this.dao.create(new Treatment(patient.getPid(), 1, LocalDate.of(2024, 3, 4),
+                LocalTime.of(9, 15), LocalTime.of(9, 45), "Waschen", "ohne Befund"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.close();
+    }
+
+    @Test
+    void readMapsAllColumns() throws SQLException {
+        assertTreatment(this.dao.read(this.treatment.getTid()));
+    }
+
+    @Test
+    void readFallsBackToTheTextColumnsIfTheNumericColumnsAreEmpty() throws SQLException {
+        execute("UPDATE treatment SET treatment_epoch_day = NULL, begin_minute = NULL, end_minute = NULL");
+
+        assertTreatment(this.dao.read(this.treatment.getTid()));
+    }
+
+    @Test
+    void readFailsIfNeitherColumnHoldsAValidDate() throws SQLException {
+        execute("UPDATE treatment SET treatment_epoch_day = NULL, treatment_date = '31.02.2024'");
+
+        assertThrows(SQLException.class, () -> this.dao.read(this.treatment.getTid()));
+    }
+
+    private void assertTreatment(Treatment stored) {
+        assertEquals(this.treatment.getPid(), stored.getPid());
+        assertEquals(1, stored.getCgID());
+        assertEquals(LocalDate.of(2024, 3, 4), stored.getLocalDate());
+        assertEquals(LocalTime.of(9, 15), stored.getLocalBegin());
+        assertEquals(LocalTime.of(9, 45), stored.getLocalEnd());
+        assertEquals("Waschen", stored.getDescription());
+        assertEquals("ohne Befund", stored.getRemarks());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (ConnectionPool.Lease lease = this.pool.acquireWriter();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the <code>WriteBehindQueue</code> writes the values of an entity at the time it was submitted.
+ */
+class WriteBehindQueueTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private PatientDao dao;
+    private WriteBehindQueue<Patient> queue;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = TestDatabase.open(this.directory);
+        this.dao = new PatientDao(this.pool);
+        this.queue = new WriteBehindQueue<>(new AsyncDao<>(this.dao), Patient::getPid, Patient::snapshot,
+                Patient::getDirtyFields, Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.close();
+    }
+
+    @Test
+    void editsAfterSubmitAreNotWrittenByTheFlush() throws SQLException {
+        Patient patient = this.dao.create(patient());
+        patient.setRoomNumber("101");
+        this.queue.submit(patient);
+        patient.setRoomNumber("102");
+
+        this.queue.flush().join();
+
+        assertEquals("101", this.dao.read(patient.getPid()).getRoomNumber());
+        assertTrue(patient.getDirtyFields().isModified(Patient.ROOM_NUMBER));
+    }
+
+    @Test
+    void coalescedSubmitsWriteTheFieldsOfAllEdits() throws SQLException {
+        Patient patient = this.dao.create(patient());
+        patient.setRoomNumber("101");
+        this.queue.submit(patient);
+        patient.setCareLevel("4");
+        this.queue.submit(patient);
+
+        this.queue.flush().join();
+
+        Patient stored = this.dao.read(patient.getPid());
+        assertEquals("101", stored.getRoomNumber());
+        assertEquals("4", stored.getCareLevel());
+        assertEquals(0, this.queue.getPendingCount());
+        assertFalse(patient.getDirtyFields().isDirty());
+    }
+
+    private static Patient patient() {
+        return new Patient("Anna", "Alt", LocalDate.of(1940, 5, 17), "2", "1");
+    }
+}